@@ -34,8 +34,10 @@ import me.lucko.luckperms.api.PlatformType;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.api.context.MutableContextSet;
 import me.lucko.luckperms.bukkit.calculators.AutoOPListener;
+import me.lucko.luckperms.bukkit.inject.Injector;
 import me.lucko.luckperms.bukkit.model.ChildPermissionProvider;
 import me.lucko.luckperms.bukkit.model.DefaultsProvider;
+import me.lucko.luckperms.bukkit.model.LPPermissible;
 import me.lucko.luckperms.bukkit.vault.VaultHook;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.api.ApiProvider;
@@ -46,6 +48,7 @@ import me.lucko.luckperms.common.config.LPConfiguration;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.contexts.ContextManager;
 import me.lucko.luckperms.common.contexts.ServerCalculator;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Importer;
@@ -55,7 +58,8 @@ import me.lucko.luckperms.common.managers.UserManager;
 import me.lucko.luckperms.common.managers.impl.GenericGroupManager;
 import me.lucko.luckperms.common.managers.impl.GenericTrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
-import me.lucko.luckperms.common.messaging.RedisMessaging;
+import me.lucko.luckperms.common.messaging.AbstractMessagingService;
+import me.lucko.luckperms.common.messaging.MessagingFactory;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.storage.StorageFactory;
 import me.lucko.luckperms.common.tasks.ExpireTemporaryTask;
@@ -98,7 +102,7 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
     private GroupManager groupManager;
     private TrackManager trackManager;
     private Storage storage;
-    private RedisMessaging redisMessaging = null;
+    private AbstractMessagingService messagingService = null;
     private UuidCache uuidCache;
     private ApiProvider apiProvider;
     private Logger log;
@@ -107,6 +111,7 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
     private ChildPermissionProvider childPermissionProvider;
     private LocaleManager localeManager;
     private CachedStateManager cachedStateManager;
+    private final ExpiryIndex expiryIndex = new ExpiryIndex();
     private ContextManager<Player> contextManager;
     private WorldCalculator worldCalculator;
     private CalculatorFactory calculatorFactory;
@@ -130,6 +135,7 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
 
         getLog().info("Loading configuration...");
         configuration = new BukkitConfig(this);
+        debugHandler.setSampleRate(configuration.getVerboseSampleRate());
 
         // setup the Bukkit defaults hook
         defaultsProvider = new DefaultsProvider();
@@ -167,18 +173,8 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
         // initialise datastore
         storage = StorageFactory.getInstance(this, "h2");
 
-        // initialise redis
-        if (getConfiguration().isRedisEnabled()) {
-            getLog().info("Loading redis...");
-            redisMessaging = new RedisMessaging(this);
-            try {
-                redisMessaging.init(getConfiguration().getRedisAddress(), getConfiguration().getRedisPassword());
-                getLog().info("Loaded redis successfully...");
-            } catch (Exception e) {
-                getLog().info("Couldn't load redis...");
-                e.printStackTrace();
-            }
-        }
+        // initialise messaging
+        messagingService = MessagingFactory.getInstance(this);
 
         // setup the update task buffer
         updateTaskBuffer = new BufferedRequest<Void>(1000L, this::doAsync) {
@@ -225,6 +221,14 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
         contextManager.registerCalculator(worldCalculator);
         contextManager.registerCalculator(new ServerCalculator<>(getConfiguration().getServer()));
 
+        // refresh the contexts held by players permissibles
+        contextManager.registerListener((player, before, current) -> {
+            LPPermissible permissible = Injector.getPermissible(player.getUniqueId());
+            if (permissible != null) {
+                permissible.invalidateContexts();
+            }
+        });
+
         // handle server operators
         if (getConfiguration().isAutoOp()) {
             contextManager.registerListener(new AutoOPListener());
@@ -251,7 +255,7 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
         updateTaskBuffer.requestDirectly();
 
         // register tasks
-        getServer().getScheduler().runTaskTimerAsynchronously(this, new ExpireTemporaryTask(this), 60L, 60L);
+        getServer().getScheduler().runTaskTimerAsynchronously(this, new ExpireTemporaryTask(this), 20L, 20L);
 
         // register permissions
         registerPermissions(getConfiguration().isCommandsAllowOp() ? PermissionDefault.OP : PermissionDefault.FALSE);
@@ -271,14 +275,14 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
     @Override
     public void onDisable() {
         started = false;
+        if (messagingService != null) {
+            getLog().info("Closing messaging service...");
+            messagingService.close();
+        }
+
         getLog().info("Closing datastore...");
         storage.shutdown();
 
-        if (redisMessaging != null) {
-            getLog().info("Closing redis...");
-            redisMessaging.shutdown();
-        }
-
         getLog().info("Unregistering API...");
         ApiHandler.unregisterProvider();
         getServer().getServicesManager().unregisterAll(this);
@@ -27,6 +27,7 @@ import lombok.Getter;
 
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
+import me.lucko.luckperms.common.calculators.PermissionTrie;
 
 import org.bukkit.permissions.PermissionAttachmentInfo;
 
@@ -51,7 +52,7 @@ public class AttachmentProcessor implements PermissionProcessor {
     }
 
     @Override
-    public void updateBacking(Map<String, Boolean> map) {
+    public void updateBacking(Map<String, Boolean> map, PermissionTrie trie) {
         // Do nothing, this doesn't use the backing
     }
 
@@ -27,6 +27,7 @@ import lombok.RequiredArgsConstructor;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.bukkit.model.ChildPermissionProvider;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
+import me.lucko.luckperms.common.calculators.PermissionTrie;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,7 +44,7 @@ public class ChildProcessor implements PermissionProcessor {
     }
 
     @Override
-    public void updateBacking(Map<String, Boolean> map) {
+    public void updateBacking(Map<String, Boolean> map, PermissionTrie trie) {
         childPermissions.clear();
         for (Map.Entry<String, Boolean> e : map.entrySet()) {
             Map<String, Boolean> children = provider.getPermissions().get(e);
@@ -27,6 +27,7 @@ import lombok.AllArgsConstructor;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.bukkit.model.DefaultsProvider;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
+import me.lucko.luckperms.common.calculators.PermissionTrie;
 
 import org.bukkit.Bukkit;
 import org.bukkit.permissions.Permission;
@@ -50,7 +51,7 @@ public class DefaultsProcessor implements PermissionProcessor {
     }
 
     @Override
-    public void updateBacking(Map<String, Boolean> map) {
+    public void updateBacking(Map<String, Boolean> map, PermissionTrie trie) {
         // Do nothing, this doesn't use the backing
     }
 }
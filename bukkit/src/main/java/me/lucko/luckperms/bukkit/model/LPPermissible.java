@@ -22,12 +22,15 @@
 
 package me.lucko.luckperms.bukkit.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NonNull;
 
 import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.Tristate;
+import me.lucko.luckperms.api.caching.PermissionData;
 import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+import me.lucko.luckperms.common.caching.UserCache;
 import me.lucko.luckperms.common.core.model.User;
 
 import org.bukkit.Bukkit;
@@ -45,6 +48,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -66,6 +70,11 @@ public class LPPermissible extends PermissibleBase {
     private final Map<String, PermissionAttachmentInfo> attachmentPermissions = new HashMap<>();
     private final List<PermissionAttachment> attachments = new LinkedList<>();
 
+    // The permission data for the players current contexts. Replaced whenever the players contexts change, so
+    // permission checks don't need to recalculate the contexts or look up the data each time.
+    private volatile DataSnapshot snapshot = null;
+    private final AtomicInteger snapshotVersion = new AtomicInteger(0);
+
     public LPPermissible(@NonNull Player parent, User user, LPBukkitPlugin plugin) {
         super(parent);
         this.user = user;
@@ -87,8 +96,37 @@ public class LPPermissible extends PermissibleBase {
         );
     }
 
-    private boolean hasData() {
-        return user.getUserData() != null;
+    /**
+     * Marks the current contexts as out of date, they will be recalculated on the next permission check.
+     */
+    public void invalidateContexts() {
+        // can be called by the super constructor
+        if (snapshotVersion != null) {
+            snapshotVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the permission data for the players current contexts
+     *
+     * @return the permission data, or null if the user has no data loaded
+     */
+    private PermissionData getPermissionData() {
+        UserCache userData = user.getUserData();
+        if (userData == null) {
+            return null;
+        }
+
+        DataSnapshot snapshot = this.snapshot;
+        int version = snapshotVersion.get();
+        if (snapshot != null && snapshot.getVersion() == version && snapshot.getUserData() == userData) {
+            return snapshot.getPermissionData();
+        }
+
+        // the version is read before calculating, so a concurrent invalidation will not be missed
+        snapshot = new DataSnapshot(version, userData, userData.getPermissionData(calculateContexts()));
+        this.snapshot = snapshot;
+        return snapshot.getPermissionData();
     }
 
     @Override
@@ -98,7 +136,8 @@ public class LPPermissible extends PermissibleBase {
 
     @Override
     public boolean isPermissionSet(@NonNull String name) {
-        return hasData() && user.getUserData().getPermissionData(calculateContexts()).getPermissionValue(name) != Tristate.UNDEFINED;
+        PermissionData data = getPermissionData();
+        return data != null && data.getPermissionValue(name) != Tristate.UNDEFINED;
     }
 
     @Override
@@ -108,8 +147,9 @@ public class LPPermissible extends PermissibleBase {
 
     @Override
     public boolean hasPermission(@NonNull String name) {
-        if (hasData()) {
-            Tristate ts = user.getUserData().getPermissionData(calculateContexts()).getPermissionValue(name);
+        PermissionData data = getPermissionData();
+        if (data != null) {
+            Tristate ts = data.getPermissionValue(name);
             if (ts != Tristate.UNDEFINED) {
                 return ts.asBoolean();
             }
@@ -120,8 +160,9 @@ public class LPPermissible extends PermissibleBase {
 
     @Override
     public boolean hasPermission(@NonNull Permission perm) {
-        if (hasData()) {
-            Tristate ts = user.getUserData().getPermissionData(calculateContexts()).getPermissionValue(perm.getName());
+        PermissionData data = getPermissionData();
+        if (data != null) {
+            Tristate ts = data.getPermissionValue(perm.getName());
             if (ts != Tristate.UNDEFINED) {
                 return ts.asBoolean();
             }
@@ -135,9 +176,10 @@ public class LPPermissible extends PermissibleBase {
         Set<PermissionAttachmentInfo> perms = new HashSet<>();
         perms.addAll(attachmentPermissions.values());
 
-        if (hasData()) {
+        PermissionData data = getPermissionData();
+        if (data != null) {
             perms.addAll(
-                    user.getUserData().getPermissionData(calculateContexts()).getImmutableBacking().entrySet().stream()
+                    data.getImmutableBacking().entrySet().stream()
                             .map(e -> new PermissionAttachmentInfo(parent, e.getKey(), null, e.getValue()))
                             .collect(Collectors.toList())
             );
@@ -222,6 +264,9 @@ public class LPPermissible extends PermissibleBase {
 
     @Override
     public void recalculatePermissions() {
+        // the players op status may have changed
+        invalidateContexts();
+
         if (attachmentPermissions == null) {
             return;
         }
@@ -232,8 +277,9 @@ public class LPPermissible extends PermissibleBase {
             calculateChildPermissions(attachment.getPermissions(), false, attachment);
         }
 
-        if (hasData()) {
-            user.getUserData().invalidatePermissionCalculators();
+        UserCache userData = user.getUserData();
+        if (userData != null) {
+            userData.invalidatePermissionCalculators();
         }
     }
 
@@ -265,4 +311,12 @@ public class LPPermissible extends PermissibleBase {
             }
         }
     }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class DataSnapshot {
+        private final int version;
+        private final UserCache userData;
+        private final PermissionData permissionData;
+    }
 }
@@ -118,8 +118,8 @@ public class BungeeListener extends AbstractListener implements Listener {
             }
 
             // We have to make a new user on this thread whilst the connection is being held, or we get concurrency issues as the Bukkit server
-            // and the BungeeCord server try to make a new user at the same time.
-            plugin.getStorage().force().loadUser(cache.getUUID(c.getUniqueId()), c.getName()).join();
+            // and the BungeeCord server try to make a new user at the same time. Logins arriving together are loaded in one batch.
+            loginCoalescer.loadUser(cache.getUUID(c.getUniqueId()), c.getName()).join();
             User user = plugin.getUserManager().get(cache.getUUID(c.getUniqueId()));
             if (user == null) {
                 plugin.getLog().warn("Failed to load user: " + c.getName());
@@ -39,6 +39,7 @@ import me.lucko.luckperms.common.commands.sender.Sender;
 import me.lucko.luckperms.common.config.LPConfiguration;
 import me.lucko.luckperms.common.contexts.ContextManager;
 import me.lucko.luckperms.common.contexts.ServerCalculator;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Importer;
@@ -48,7 +49,8 @@ import me.lucko.luckperms.common.managers.UserManager;
 import me.lucko.luckperms.common.managers.impl.GenericGroupManager;
 import me.lucko.luckperms.common.managers.impl.GenericTrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
-import me.lucko.luckperms.common.messaging.RedisMessaging;
+import me.lucko.luckperms.common.messaging.AbstractMessagingService;
+import me.lucko.luckperms.common.messaging.MessagingFactory;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.storage.StorageFactory;
 import me.lucko.luckperms.common.tasks.ExpireTemporaryTask;
@@ -82,13 +84,14 @@ public class LPBungeePlugin extends Plugin implements LuckPermsPlugin {
     private GroupManager groupManager;
     private TrackManager trackManager;
     private Storage storage;
-    private RedisMessaging redisMessaging = null;
+    private AbstractMessagingService messagingService = null;
     private UuidCache uuidCache;
     private ApiProvider apiProvider;
     private Logger log;
     private Importer importer;
     private LocaleManager localeManager;
     private CachedStateManager cachedStateManager;
+    private final ExpiryIndex expiryIndex = new ExpiryIndex();
     private ContextManager<ProxiedPlayer> contextManager;
     private CalculatorFactory calculatorFactory;
     private BufferedRequest<Void> updateTaskBuffer;
@@ -106,6 +109,7 @@ public class LPBungeePlugin extends Plugin implements LuckPermsPlugin {
 
         getLog().info("Loading configuration...");
         configuration = new BungeeConfig(this);
+        debugHandler.setSampleRate(configuration.getVerboseSampleRate());
 
         // register events
         getProxy().getPluginManager().registerListener(this, new BungeeListener(this));
@@ -113,18 +117,8 @@ public class LPBungeePlugin extends Plugin implements LuckPermsPlugin {
         // initialise datastore
         storage = StorageFactory.getInstance(this, "h2");
 
-        // initialise redis
-        if (getConfiguration().isRedisEnabled()) {
-            getLog().info("Loading redis...");
-            redisMessaging = new RedisMessaging(this);
-            try {
-                redisMessaging.init(getConfiguration().getRedisAddress(), getConfiguration().getRedisPassword());
-                getLog().info("Loaded redis successfully...");
-            } catch (Exception e) {
-                getLog().info("Couldn't load redis...");
-                e.printStackTrace();
-            }
-        }
+        // initialise messaging
+        messagingService = MessagingFactory.getInstance(this);
 
         // setup the update task buffer
         updateTaskBuffer = new BufferedRequest<Void>(1000L, this::doAsync) {
@@ -186,21 +180,21 @@ public class LPBungeePlugin extends Plugin implements LuckPermsPlugin {
         updateTaskBuffer.requestDirectly();
 
         // register tasks
-        getProxy().getScheduler().schedule(this, new ExpireTemporaryTask(this), 3L, 3L, TimeUnit.SECONDS);
+        getProxy().getScheduler().schedule(this, new ExpireTemporaryTask(this), 1L, 1L, TimeUnit.SECONDS);
 
         getLog().info("Successfully loaded.");
     }
 
     @Override
     public void onDisable() {
+        if (messagingService != null) {
+            getLog().info("Closing messaging service...");
+            messagingService.close();
+        }
+
         getLog().info("Closing datastore...");
         storage.shutdown();
 
-        if (redisMessaging != null) {
-            getLog().info("Closing redis...");
-            redisMessaging.shutdown();
-        }
-
         getLog().info("Unregistering API...");
         ApiHandler.unregisterProvider();
     }
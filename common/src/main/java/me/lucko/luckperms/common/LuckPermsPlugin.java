@@ -33,13 +33,14 @@ import me.lucko.luckperms.common.commands.sender.Sender;
 import me.lucko.luckperms.common.config.LPConfiguration;
 import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.contexts.ContextManager;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Importer;
 import me.lucko.luckperms.common.managers.GroupManager;
 import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.managers.UserManager;
-import me.lucko.luckperms.common.messaging.RedisMessaging;
+import me.lucko.luckperms.common.messaging.AbstractMessagingService;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.BufferedRequest;
 import me.lucko.luckperms.common.utils.DebugHandler;
@@ -97,11 +98,11 @@ public interface LuckPermsPlugin {
     Storage getStorage();
 
     /**
-     * Gets the redis messaging instance if present. Could return null if redis is not enabled.
+     * Gets the messaging service if present. Could return null if messaging is not enabled.
      *
-     * @return the redis messaging service
+     * @return the messaging service
      */
-    RedisMessaging getRedisMessaging();
+    AbstractMessagingService getMessagingService();
 
     /**
      * Gets a wrapped logger instance for the platform.
@@ -153,6 +154,13 @@ public interface LuckPermsPlugin {
      */
     CachedStateManager getCachedStateManager();
 
+    /**
+     * Gets the index of when the temporary nodes of loaded holders expire
+     *
+     * @return the expiry index
+     */
+    ExpiryIndex getExpiryIndex();
+
     /**
      * Gets the class responsible for constructing PermissionCalculators on this platform.
      *
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.caching;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.UtilityClass;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Creates bounded caches, and keeps track of them so their statistics can be reported.
+ */
+@UtilityClass
+public class CacheMetrics {
+
+    /**
+     * Weighs entries by the length of their string key
+     */
+    public static final Weigher<String, Object> STRING_LENGTH = (k, v) -> 1 + k.length();
+
+    /**
+     * Cache name --> the caches registered under that name
+     */
+    private static final Map<String, Set<Cache<?, ?>>> CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * Cache name --> the size of caches which don't record statistics
+     */
+    private static final Map<String, LongSupplier> SIZES = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a new cache builder, bounded by the given weight and recording statistics
+     *
+     * @param maximumWeight the maximum total weight of the cache
+     * @param weigher the weigher to use
+     * @return a new builder
+     */
+    public static <K, V> CacheBuilder<K, V> newBuilder(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .recordStats()
+                .<K, V>weigher(weigher);
+    }
+
+    /**
+     * Registers a cache to be included in the statistics for the given name.
+     *
+     * <p>Caches are only weakly referenced, so short lived instances can be registered under a shared name.</p>
+     *
+     * @param name the name to register the cache under
+     * @param cache the cache
+     * @return the cache
+     */
+    public static <C extends Cache<?, ?>> C register(String name, C cache) {
+        CACHES.computeIfAbsent(name, n -> Collections.newSetFromMap(new MapMaker().weakKeys().makeMap())).add(cache);
+        return cache;
+    }
+
+    /**
+     * Registers a cache which doesn't record statistics, such as one kept off the hot path, so only its size is
+     * reported.
+     *
+     * @param name the name to report the cache under
+     * @param size a supplier of the number of entries in the cache
+     */
+    public static void registerSize(String name, LongSupplier size) {
+        SIZES.put(name, size);
+    }
+
+    /**
+     * Gets the combined statistics of the registered caches, by name
+     *
+     * @return the statistics of each cache name
+     */
+    public static Map<String, Summary> summarise() {
+        Map<String, Summary> ret = new TreeMap<>();
+        for (Map.Entry<String, Set<Cache<?, ?>>> e : CACHES.entrySet()) {
+            long size = 0;
+            CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+            for (Cache<?, ?> cache : e.getValue()) {
+                size += cache.size();
+                stats = stats.plus(cache.stats());
+            }
+            ret.put(e.getKey(), new Summary(size, stats));
+        }
+        for (Map.Entry<String, LongSupplier> e : SIZES.entrySet()) {
+            ret.put(e.getKey(), new Summary(e.getValue().getAsLong(), null));
+        }
+        return ImmutableMap.copyOf(ret);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Summary {
+        private final long size;
+
+        // null if the cache doesn't record statistics
+        private final CacheStats stats;
+    }
+}
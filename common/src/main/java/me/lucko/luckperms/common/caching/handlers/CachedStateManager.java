@@ -24,19 +24,30 @@ package me.lucko.luckperms.common.caching.handlers;
 
 import lombok.RequiredArgsConstructor;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ImmutableSet;
 
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.core.model.PermissionHolder;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 /**
  * Manages the cached state of all permission holders
+ *
+ * <p>The inheritance graph is indexed in both directions. Reads never block - writes are serialised, and
+ * replace the (immutable) sets held in the index.</p>
  */
 @RequiredArgsConstructor
 public class CachedStateManager {
@@ -44,44 +55,57 @@ public class CachedStateManager {
 
     private final LuckPermsPlugin plugin;
 
-    // Group --> Groups that inherit from that group. (reverse relationship)
-    private final Multimap<HolderReference, HolderReference> map = HashMultimap.create();
-    private final ReentrantLock lock = new ReentrantLock();
+    // Holder --> Groups that the holder inherits from. (forward relationship)
+    private final Map<HolderReference, ImmutableSet<HolderReference>> parents = new ConcurrentHashMap<>();
+
+    // Group --> Holders that inherit from that group. (reverse relationship)
+    private final Map<HolderReference, ImmutableSet<HolderReference>> children = new ConcurrentHashMap<>();
+
+    // Group --> All holders that inherit from that group, either directly or via other groups.
+    private final Map<HolderReference, ImmutableSet<HolderReference>> inheritances = new ConcurrentHashMap<>();
+
+    // Incremented after every change to the graph, so stale inheritances computed concurrently can be discarded
+    private final AtomicLong modCount = new AtomicLong(0);
+
+    private final ReentrantLock writeLock = new ReentrantLock();
 
     /**
      * Gets a set of holder names that inherit permissions (either directly or via other groups)
      * from the given holder name
      *
      * @param holder the holder name to query for
-     * @return a set of inherited groups
+     * @return an immutable set of inherited groups
      */
     public Set<HolderReference> getInheritances(HolderReference holder) {
-        Set<HolderReference> set = new HashSet<>();
-        set.add(holder);
-
-        lock.lock();
-        try {
-            while (true) {
-                Set<HolderReference> clone = new HashSet<>(set);
+        ImmutableSet<HolderReference> cached = inheritances.get(holder);
+        if (cached != null) {
+            return cached;
+        }
 
-                boolean work = false;
+        long expectedModCount = modCount.get();
 
-                for (HolderReference s : clone) {
-                    if (set.addAll(map.get(s))) {
-                        work = true;
-                    }
-                }
+        Set<HolderReference> set = new HashSet<>();
+        Deque<HolderReference> queue = new ArrayDeque<>();
+        queue.add(holder);
 
-                if (!work) {
-                    break;
+        while (!queue.isEmpty()) {
+            for (HolderReference child : getChildren(queue.poll())) {
+                if (set.add(child)) {
+                    queue.add(child);
                 }
             }
-        } finally {
-            lock.unlock();
         }
 
         set.remove(holder);
-        return set;
+        ImmutableSet<HolderReference> result = ImmutableSet.copyOf(set);
+
+        inheritances.put(holder, result);
+        if (modCount.get() != expectedModCount) {
+            // the graph changed whilst we were calculating, and may have been missed by the invalidation
+            inheritances.remove(holder, result);
+        }
+
+        return result;
     }
 
     /**
@@ -91,15 +115,18 @@ public class CachedStateManager {
      * @param inheritedGroups a list of groups the holder inherits from
      */
     public void putAll(HolderReference holder, Set<HolderReference> inheritedGroups) {
-        lock.lock();
-        try {
-            map.entries().removeIf(entry -> entry.getValue().equals(holder));
+        ImmutableSet<HolderReference> groups = ImmutableSet.copyOf(inheritedGroups);
 
-            for (HolderReference child : inheritedGroups) {
-                map.put(child, holder);
-            }
+        // fast path, nothing has changed
+        if (groups.equals(parents.getOrDefault(holder, ImmutableSet.of()))) {
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            setParents(holder, groups);
         } finally {
-            lock.unlock();
+            writeLock.unlock();
         }
     }
 
@@ -109,12 +136,115 @@ public class CachedStateManager {
      * @param holder the holder name to clear
      */
     public void clear(HolderReference holder) {
-        lock.lock();
+        writeLock.lock();
         try {
-            map.entries().removeIf(entry -> entry.getValue().equals(holder));
+            setParents(holder, ImmutableSet.of());
         } finally {
-            lock.unlock();
+            writeLock.unlock();
+        }
+    }
+
+    // must be called with the write lock held
+    private void setParents(HolderReference holder, ImmutableSet<HolderReference> groups) {
+        ImmutableSet<HolderReference> previous = groups.isEmpty() ? parents.remove(holder) : parents.put(holder, groups);
+        if (previous == null) {
+            previous = ImmutableSet.of();
+        }
+
+        if (previous.equals(groups)) {
+            return;
+        }
+
+        for (HolderReference group : previous) {
+            if (!groups.contains(group)) {
+                ImmutableSet<HolderReference> existing = getChildren(group);
+                Set<HolderReference> updated = new HashSet<>(existing);
+                updated.remove(holder);
+
+                if (updated.isEmpty()) {
+                    children.remove(group);
+                } else {
+                    children.put(group, ImmutableSet.copyOf(updated));
+                }
+            }
         }
+
+        for (HolderReference group : groups) {
+            if (!previous.contains(group)) {
+                children.put(group, ImmutableSet.<HolderReference>builder().addAll(getChildren(group)).add(holder).build());
+            }
+        }
+
+        modCount.incrementAndGet();
+
+        // The inheritances of every group which the holder inherits from (directly or indirectly), either before or
+        // after this change, may have changed.
+        Set<HolderReference> ancestors = new HashSet<>();
+        Deque<HolderReference> queue = new ArrayDeque<>();
+        queue.addAll(previous);
+        queue.addAll(groups);
+
+        while (!queue.isEmpty()) {
+            HolderReference group = queue.poll();
+            if (ancestors.add(group)) {
+                queue.addAll(parents.getOrDefault(group, ImmutableSet.of()));
+            }
+        }
+
+        for (HolderReference group : ancestors) {
+            inheritances.remove(group);
+        }
+    }
+
+    private ImmutableSet<HolderReference> getChildren(HolderReference holder) {
+        return children.getOrDefault(holder, ImmutableSet.of());
+    }
+
+    /**
+     * Applies a change to a single node on the given holder to the caches of all holders which inherit from it.
+     *
+     * <p>Each holder is updated after all of the holders it inherits from. Holders which cannot be ordered, due to
+     * circular inheritance, have their caches invalidated instead.</p>
+     *
+     * @param holder the holder which was changed, which should have already applied the change itself
+     * @param node   the node which was set or unset
+     */
+    public void applyInheritanceDelta(HolderReference holder, Node node) {
+        Set<HolderReference> inheritances = getInheritances(holder);
+
+        // The number of holders each holder inherits from, which have yet to be updated
+        Map<HolderReference, Integer> pending = new HashMap<>();
+        for (HolderReference hr : inheritances) {
+            pending.put(hr, 0);
+        }
+        for (HolderReference hr : inheritances) {
+            for (HolderReference child : getChildren(hr)) {
+                pending.computeIfPresent(child, (k, v) -> v + 1);
+            }
+        }
+        for (HolderReference child : getChildren(holder)) {
+            pending.computeIfPresent(child, (k, v) -> v + 1);
+        }
+
+        List<HolderReference> ordered = new ArrayList<>();
+        Deque<HolderReference> queue = new ArrayDeque<>();
+        queue.add(holder);
+
+        while (!queue.isEmpty()) {
+            HolderReference parent = queue.poll();
+            for (HolderReference child : getChildren(parent)) {
+                Integer remaining = pending.computeIfPresent(child, (k, v) -> v - 1);
+                if (remaining != null && remaining == 0) {
+                    pending.remove(child);
+                    ordered.add(child);
+                    queue.add(child);
+                }
+            }
+        }
+
+        Consumer<PermissionHolder> consumer = h -> h.applyInheritanceDelta(node);
+        ordered.forEach(hr -> hr.apply(plugin, consumer));
+        invalidateInheritances(plugin, pending.keySet());
     }
 
     public void invalidateInheritances(HolderReference holder) {
@@ -22,44 +22,70 @@
 
 package me.lucko.luckperms.common.calculators;
 
-import lombok.RequiredArgsConstructor;
-
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.collect.MapMaker;
 
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.caching.CacheMetrics;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Calculates and caches permissions
  */
-@RequiredArgsConstructor
 public class PermissionCalculator {
+    // The maximum total length of the permissions cached by all calculators. Once reached, every cache is cleared.
+    private static final long MAXIMUM_TOTAL_WEIGHT = 2000000;
+
+    // The length of every permission cached since the caches were last cleared, including those since invalidated
+    private static final AtomicLong TOTAL_WEIGHT = new AtomicLong(0);
+    private static final Set<PermissionCalculator> CALCULATORS = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+    static {
+        CacheMetrics.registerSize("permission-calculator", () -> CALCULATORS.stream().mapToLong(c -> c.cache.size()).sum());
+    }
+
     private final LuckPermsPlugin plugin;
     private final String objectName;
     private final List<PermissionProcessor> processors;
 
-    private final LoadingCache<String, Tristate> cache = CacheBuilder.newBuilder()
-            .build(new CacheLoader<String, Tristate>() {
-                @Override
-                public Tristate load(String s) {
-                    return lookupPermissionValue(s);
-                }
-            });
+    // Plain map rather than a LoadingCache, so cache hits take no locks.
+    private final Map<String, Tristate> cache = new ConcurrentHashMap<>();
+
+    public PermissionCalculator(LuckPermsPlugin plugin, String objectName, List<PermissionProcessor> processors) {
+        this.plugin = plugin;
+        this.objectName = objectName;
+        this.processors = processors;
+        CALCULATORS.add(this);
+    }
 
     public void invalidateCache() {
-        cache.invalidateAll();
+        cache.clear();
     }
 
     public Tristate getPermissionValue(String permission) {
         permission = permission.toLowerCase();
-        Tristate t = cache.getUnchecked(permission);
+        Tristate t = cache.get(permission);
+        if (t == null) {
+            t = lookupPermissionValue(permission);
+
+            // cached permissions have already been offered to the tree
+            plugin.getPermissionCache().offer(permission);
+
+            Tristate existing = cache.putIfAbsent(permission, t);
+            if (existing != null) {
+                t = existing;
+            } else if (TOTAL_WEIGHT.addAndGet(1 + permission.length()) > MAXIMUM_TOTAL_WEIGHT) {
+                clearAll();
+            }
+        }
+
         plugin.getDebugHandler().offer(objectName, permission, t);
-        plugin.getPermissionCache().offer(permission);
         return t;
     }
 
@@ -76,9 +102,24 @@ public class PermissionCalculator {
         return Tristate.UNDEFINED;
     }
 
+    /**
+     * Clears the caches of every calculator, once their total weight has reached the limit
+     */
+    private static synchronized void clearAll() {
+        if (TOTAL_WEIGHT.get() <= MAXIMUM_TOTAL_WEIGHT) {
+            return;
+        }
+
+        TOTAL_WEIGHT.set(0);
+        for (PermissionCalculator calculator : CALCULATORS) {
+            calculator.cache.clear();
+        }
+    }
+
     public synchronized void updateBacking(Map<String, Boolean> map) {
+        PermissionTrie trie = PermissionTrie.compile(map);
         for (PermissionProcessor processor : processors) {
-            processor.updateBacking(map);
+            processor.updateBacking(map, trie);
         }
     }
 }
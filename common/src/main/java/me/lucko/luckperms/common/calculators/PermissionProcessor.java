@@ -30,6 +30,12 @@ public interface PermissionProcessor {
 
     Tristate hasPermission(String permission);
 
-    void updateBacking(Map<String, Boolean> map);
+    /**
+     * Updates the backing of this processor
+     *
+     * @param map  the raw permission map
+     * @param trie the compiled form of the map
+     */
+    void updateBacking(Map<String, Boolean> map, PermissionTrie trie);
 
 }
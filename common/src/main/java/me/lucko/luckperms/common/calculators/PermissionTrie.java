@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.calculators;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import me.lucko.luckperms.api.Tristate;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable, compiled form of a permission map.
+ *
+ * <p>Permission strings are split into their dot separated segments, and stored as a tree. Lookups walk the
+ * tree once, comparing regions of the queried string against the interned segments, and never allocate.</p>
+ */
+public final class PermissionTrie {
+    private static final Interner<String> SEGMENTS = Interners.newWeakInterner();
+    private static final Node EMPTY_NODE = new Node(new String[0], new Node[0], Tristate.UNDEFINED, Tristate.UNDEFINED);
+
+    public static final PermissionTrie EMPTY = new PermissionTrie(EMPTY_NODE, Tristate.UNDEFINED, Tristate.UNDEFINED);
+
+    /**
+     * Compiles a permission map into a trie
+     *
+     * @param map the map to compile
+     * @return a new trie instance
+     */
+    public static PermissionTrie compile(Map<String, Boolean> map) {
+        if (map.isEmpty()) {
+            return EMPTY;
+        }
+
+        Builder root = new Builder();
+        Tristate quotedStar = Tristate.UNDEFINED;
+        Tristate star = Tristate.UNDEFINED;
+
+        for (Map.Entry<String, Boolean> e : map.entrySet()) {
+            String permission = e.getKey();
+            Tristate value = Tristate.fromBoolean(e.getValue());
+
+            if (permission.equals("'*'")) {
+                quotedStar = value;
+            } else if (permission.equals("*")) {
+                star = value;
+            }
+
+            root.traverse(permission, permission.length()).exact = value;
+
+            // "some.node.*" applies to everything under "some.node"
+            if (permission.length() > 2 && permission.endsWith(".*")) {
+                root.traverse(permission, permission.length() - 2).wildcard = value;
+            }
+        }
+
+        return new PermissionTrie(root.build(), quotedStar, star);
+    }
+
+    private final Node root;
+    private final Tristate quotedStar;
+    private final Tristate star;
+
+    private PermissionTrie(Node root, Tristate quotedStar, Tristate star) {
+        this.root = root;
+        this.quotedStar = quotedStar;
+        this.star = star;
+    }
+
+    /**
+     * Gets the value of a permission, only considering an exact match
+     *
+     * @param permission the permission
+     * @return the value, or {@link Tristate#UNDEFINED} if not present
+     */
+    public Tristate getExact(String permission) {
+        int length = permission.length();
+        Node node = root;
+        int start = 0;
+
+        while (true) {
+            int end = permission.indexOf('.', start);
+            if (end == -1) {
+                end = length;
+            }
+
+            node = node.getChild(permission, start, end);
+            if (node == null) {
+                return Tristate.UNDEFINED;
+            }
+
+            if (end == length) {
+                return node.exact;
+            }
+
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Gets the value of a permission from the wildcard nodes in this trie.
+     *
+     * <p>The most specific "node.*" takes priority, followed by "'*'" and then "*".</p>
+     *
+     * @param permission the permission
+     * @return the value, or {@link Tristate#UNDEFINED} if no wildcard applies
+     */
+    public Tristate getWildcard(String permission) {
+        Tristate result = Tristate.UNDEFINED;
+        Node node = root;
+        int start = 0;
+
+        while (true) {
+            int end = permission.indexOf('.', start);
+            if (end == -1) {
+                break;
+            }
+
+            node = node.getChild(permission, start, end);
+            if (node == null) {
+                break;
+            }
+
+            // deeper matches are more specific, so replace anything found so far
+            if (node.wildcard != Tristate.UNDEFINED && end != 0) {
+                result = node.wildcard;
+            }
+
+            start = end + 1;
+        }
+
+        if (result != Tristate.UNDEFINED) {
+            return result;
+        }
+
+        if (quotedStar != Tristate.UNDEFINED) {
+            return quotedStar;
+        }
+
+        return star;
+    }
+
+    /**
+     * Gets the value of the most specific parent of a permission, e.g. "some.node" for "some.node.child".
+     *
+     * @param permission the permission
+     * @return the value, or {@link Tristate#UNDEFINED} if no parent is present
+     */
+    public Tristate getParent(String permission) {
+        Tristate result = Tristate.UNDEFINED;
+        Node node = root;
+        int start = 0;
+
+        while (true) {
+            int end = permission.indexOf('.', start);
+            if (end == -1) {
+                break;
+            }
+
+            node = node.getChild(permission, start, end);
+            if (node == null) {
+                break;
+            }
+
+            if (node.exact != Tristate.UNDEFINED && end != 0) {
+                result = node.exact;
+            }
+
+            start = end + 1;
+        }
+
+        return result;
+    }
+
+    private static final class Node {
+        private final String[] segments;
+        private final Node[] children;
+
+        // the value of the permission ending at this node
+        private final Tristate exact;
+
+        // the value of the permission ending at this node, followed by ".*"
+        private final Tristate wildcard;
+
+        private Node(String[] segments, Node[] children, Tristate exact, Tristate wildcard) {
+            this.segments = segments;
+            this.children = children;
+            this.exact = exact;
+            this.wildcard = wildcard;
+        }
+
+        private Node getChild(String permission, int start, int end) {
+            int low = 0;
+            int high = segments.length - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(segments[mid], permission, start, end);
+
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+
+            return null;
+        }
+
+        // equivalent to segment.compareTo(permission.substring(start, end))
+        private static int compare(String segment, String permission, int start, int end) {
+            int len = end - start;
+            int min = Math.min(segment.length(), len);
+
+            for (int i = 0; i < min; i++) {
+                int diff = segment.charAt(i) - permission.charAt(start + i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+
+            return segment.length() - len;
+        }
+    }
+
+    private static final class Builder {
+        private final TreeMap<String, Builder> children = new TreeMap<>();
+        private Tristate exact = Tristate.UNDEFINED;
+        private Tristate wildcard = Tristate.UNDEFINED;
+
+        private Builder traverse(String permission, int length) {
+            Builder builder = this;
+            int start = 0;
+
+            while (true) {
+                int end = permission.indexOf('.', start);
+                if (end == -1 || end > length) {
+                    end = length;
+                }
+
+                builder = builder.children.computeIfAbsent(SEGMENTS.intern(permission.substring(start, end)), s -> new Builder());
+                if (end == length) {
+                    return builder;
+                }
+
+                start = end + 1;
+            }
+        }
+
+        private Node build() {
+            if (children.isEmpty() && exact == Tristate.UNDEFINED && wildcard == Tristate.UNDEFINED) {
+                return EMPTY_NODE;
+            }
+
+            String[] segments = new String[children.size()];
+            Node[] nodes = new Node[children.size()];
+
+            int i = 0;
+            for (Map.Entry<String, Builder> e : children.entrySet()) {
+                segments[i] = e.getKey();
+                nodes[i] = e.getValue().build();
+                i++;
+            }
+
+            return new Node(segments, nodes, exact, wildcard);
+        }
+    }
+}
@@ -24,22 +24,20 @@ package me.lucko.luckperms.common.calculators.processors;
 
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
+import me.lucko.luckperms.common.calculators.PermissionTrie;
 
 import java.util.Map;
 
 public class MapProcessor implements PermissionProcessor {
-    private Map<String, Boolean> map = null;
+    private volatile PermissionTrie trie = PermissionTrie.EMPTY;
 
     @Override
     public Tristate hasPermission(String permission) {
-        Boolean b = map.get(permission);
-        return b == null ? Tristate.UNDEFINED : Tristate.fromBoolean(b);
+        return trie.getExact(permission);
     }
 
     @Override
-    public void updateBacking(Map<String, Boolean> map) {
-        if (this.map == null) {
-            this.map = map;
-        }
+    public void updateBacking(Map<String, Boolean> map, PermissionTrie trie) {
+        this.trie = trie;
     }
 }
@@ -24,6 +24,7 @@ package me.lucko.luckperms.common.calculators.processors;
 
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
+import me.lucko.luckperms.common.calculators.PermissionTrie;
 import me.lucko.luckperms.common.constants.Patterns;
 
 import java.util.Map;
@@ -50,7 +51,7 @@ public class RegexProcessor implements PermissionProcessor {
     }
 
     @Override
-    public void updateBacking(Map<String, Boolean> map) {
+    public void updateBacking(Map<String, Boolean> map, PermissionTrie trie) {
         regexPermissions.clear();
         for (Map.Entry<String, Boolean> e : map.entrySet()) {
             if (!e.getKey().startsWith("r=") && !e.getKey().startsWith("R=")) {
@@ -138,6 +138,10 @@ public abstract class SubCommand<T> extends Command<T, Void> {
         boolean success = plugin.getStorage().force().saveUser(user).join();
         user.getRefreshBuffer().requestDirectly();
 
+        if (success && plugin.getMessagingService() != null) {
+            plugin.getMessagingService().pushUserUpdate(user.getUuid());
+        }
+
         if (success) {
             Message.USER_SAVE_SUCCESS.send(sender);
         } else {
@@ -149,6 +153,10 @@ public abstract class SubCommand<T> extends Command<T, Void> {
         boolean success = plugin.getStorage().force().saveGroup(group).join();
         plugin.getUpdateTaskBuffer().requestDirectly();
 
+        if (success && plugin.getMessagingService() != null) {
+            plugin.getMessagingService().pushGroupUpdate(group.getName());
+        }
+
         if (success) {
             Message.GROUP_SAVE_SUCCESS.send(sender);
         } else {
@@ -160,6 +168,10 @@ public abstract class SubCommand<T> extends Command<T, Void> {
         boolean success = plugin.getStorage().force().saveTrack(track).join();
         plugin.getUpdateTaskBuffer().requestDirectly();
 
+        if (success && plugin.getMessagingService() != null) {
+            plugin.getMessagingService().pushTrackUpdate(track.getName());
+        }
+
         if (success) {
             Message.TRACK_SAVE_SUCCESS.send(sender);
         } else {
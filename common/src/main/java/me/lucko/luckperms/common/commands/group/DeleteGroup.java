@@ -80,6 +80,10 @@ public class DeleteGroup extends SingleCommand {
         Message.DELETE_SUCCESS.send(sender, group.getDisplayName());
         LogEntry.build().actor(sender).actedName(groupName).type('G').action("delete").build().submit(plugin, sender);
         plugin.getUpdateTaskBuffer().request();
+
+        if (plugin.getMessagingService() != null) {
+            plugin.getMessagingService().pushGroupUpdate(groupName);
+        }
         return CommandResult.SUCCESS;
     }
 
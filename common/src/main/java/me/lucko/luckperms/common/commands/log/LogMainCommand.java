@@ -35,17 +35,16 @@ import me.lucko.luckperms.common.commands.log.subcommands.LogSearch;
 import me.lucko.luckperms.common.commands.log.subcommands.LogTrackHistory;
 import me.lucko.luckperms.common.commands.log.subcommands.LogUserHistory;
 import me.lucko.luckperms.common.commands.sender.Sender;
-import me.lucko.luckperms.common.constants.Message;
-import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.storage.Storage;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
-public class LogMainCommand extends MainCommand<Log> {
+public class LogMainCommand extends MainCommand<Storage> {
     public LogMainCommand() {
-        super("Log", "Log commands", "/%s log", 1, ImmutableList.<Command<Log, ?>>builder()
+        super("Log", "Log commands", "/%s log", 1, ImmutableList.<Command<Storage, ?>>builder()
                 .add(new LogRecent())
                 .add(new LogSearch())
                 .add(new LogNotify())
@@ -58,18 +57,13 @@ public class LogMainCommand extends MainCommand<Log> {
     }
 
     @Override
-    protected Log getTarget(String target, LuckPermsPlugin plugin, Sender sender) {
-        Log log = plugin.getStorage().getLog().join();
-
-        if (log == null) {
-            Message.LOG_LOAD_ERROR.send(sender);
-        }
-
-        return log;
+    protected Storage getTarget(String target, LuckPermsPlugin plugin, Sender sender) {
+        // entries are queried from the storage by each sub command, rather than loading the whole log here
+        return plugin.getStorage();
     }
 
     @Override
-    protected void cleanup(Log log, LuckPermsPlugin plugin) {
+    protected void cleanup(Storage storage, LuckPermsPlugin plugin) {
 
     }
 
@@ -80,7 +74,7 @@ public class LogMainCommand extends MainCommand<Log> {
 
     @Override
     public List<String> tabComplete(LuckPermsPlugin plugin, Sender sender, List<String> args) {
-        final List<Command<Log, ?>> subs = getSubCommands().stream()
+        final List<Command<Storage, ?>> subs = getSubCommands().stream()
                 .filter(s -> s.isAuthorized(sender))
                 .collect(Collectors.toList());
 
@@ -97,7 +91,7 @@ public class LogMainCommand extends MainCommand<Log> {
                     .collect(Collectors.toList());
         }
 
-        Optional<Command<Log, ?>> o = subs.stream()
+        Optional<Command<Storage, ?>> o = subs.stream()
                 .filter(s -> s.getName().equalsIgnoreCase(args.get(0)))
                 .limit(1)
                 .findAny();
@@ -32,6 +32,7 @@ import me.lucko.luckperms.common.commands.sender.Sender;
 import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.Predicates;
 
 import java.io.File;
@@ -41,7 +42,7 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
-public class LogExport extends SubCommand<Log> {
+public class LogExport extends SubCommand<Storage> {
     public LogExport() {
         super("export", "Export the log to a file", Permission.LOG_EXPORT, Predicates.not(1),
                 Arg.list(Arg.create("file", true, "the name of the file"))
@@ -49,13 +50,19 @@ public class LogExport extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) throws CommandException {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) throws CommandException {
         File f = new File(plugin.getMainDir(), args.get(0));
         if (f.exists()) {
             Message.LOG_EXPORT_ALREADY_EXISTS.send(sender, f.getAbsolutePath());
             return CommandResult.INVALID_ARGS;
         }
 
+        Log log = storage.getLog().join();
+        if (log == null) {
+            Message.LOG_LOAD_ERROR.send(sender);
+            return CommandResult.LOADING_ERROR;
+        }
+
         if (log.getContent().isEmpty()) {
             Message.LOG_EXPORT_EMPTY.send(sender);
             return CommandResult.STATE_ERROR;
@@ -30,14 +30,14 @@ import me.lucko.luckperms.common.commands.SubCommand;
 import me.lucko.luckperms.common.commands.sender.Sender;
 import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.constants.Permission;
-import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.Predicates;
 
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
-public class LogNotify extends SubCommand<Log> {
+public class LogNotify extends SubCommand<Storage> {
     public LogNotify() {
         super("notify", "Toggle notifications", Permission.LOG_NOTIFY, Predicates.notInRange(0, 1),
                 Arg.list(Arg.create("on|off", false, "whether to toggle on or off"))
@@ -45,7 +45,7 @@ public class LogNotify extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) throws CommandException {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) throws CommandException {
         final Set<UUID> ignoring = plugin.getIgnoringLogs();
         final UUID uuid = sender.getUuid();
         if (args.size() == 0) {
@@ -34,6 +34,8 @@ import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.constants.Patterns;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogQuery;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.DateUtil;
 import me.lucko.luckperms.common.utils.Predicates;
 
@@ -42,20 +44,36 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.UUID;
 
-public class LogRecent extends SubCommand<Log> {
-    private static CommandResult showLog(int page, UUID filter, Sender sender, Log log) {
-        int maxPage = (filter != null) ? log.getRecentMaxPages(filter) : log.getRecentMaxPages();
+public class LogRecent extends SubCommand<Storage> {
+    private static CommandResult showLog(int page, UUID filter, Sender sender, Storage storage) {
+        LogQuery query = (filter != null) ? LogQuery.byActor(filter) : LogQuery.all();
+        int count = storage.countLog(query).join();
+        if (count < 0) {
+            Message.LOG_LOAD_ERROR.send(sender);
+            return CommandResult.LOADING_ERROR;
+        }
+
+        int maxPage = Log.getMaxPages(count);
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return CommandResult.STATE_ERROR;
         }
 
+        if (page == -999) {
+            page = maxPage;
+        }
+
         if (page < 1 || page > maxPage) {
             Message.LOG_INVALID_PAGE_RANGE.send(sender, maxPage);
             return CommandResult.INVALID_ARGS;
         }
 
-        SortedMap<Integer, LogEntry> entries = (filter != null) ? log.getRecent(page, filter) : log.getRecent(page);
+        SortedMap<Integer, LogEntry> entries = Log.getPage(storage, query, count, page);
+        if (entries == null || entries.isEmpty()) {
+            Message.LOG_LOAD_ERROR.send(sender);
+            return CommandResult.LOADING_ERROR;
+        }
+
         if (filter != null) {
             String name = entries.values().stream().findAny().get().getActorName();
             Message.LOG_RECENT_BY_HEADER.send(sender, name, page, maxPage);
@@ -79,10 +97,10 @@ public class LogRecent extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) throws CommandException {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) throws CommandException {
         if (args.size() == 0) {
             // No page or user
-            return showLog(log.getRecentMaxPages(), null, sender, log);
+            return showLog(-999, null, sender, storage);
         }
 
         if (args.size() == 1) {
@@ -90,7 +108,7 @@ public class LogRecent extends SubCommand<Log> {
             try {
                 int p = Integer.parseInt(args.get(0));
                 // page
-                return showLog(p, null, sender, log);
+                return showLog(p, null, sender, storage);
             } catch (NumberFormatException ignored) {
             }
         }
@@ -116,16 +134,17 @@ public class LogRecent extends SubCommand<Log> {
 
                 if (args.size() != 2) {
                     // Just user
-                    return showLog(log.getRecentMaxPages(uuid), uuid, sender, log);
+                    return showLog(-999, uuid, sender, storage);
                 }
 
                 try {
                     int p = Integer.parseInt(args.get(1));
                     // User and page
-                    return showLog(p, uuid, sender, log);
+                    return showLog(p, uuid, sender, storage);
                 } catch (NumberFormatException e) {
                     // Invalid page
-                    return showLog(-1, null, sender, log);
+                    Message.LOG_INVALID_PAGE.send(sender);
+                    return CommandResult.INVALID_ARGS;
                 }
             }
 
@@ -135,15 +154,16 @@ public class LogRecent extends SubCommand<Log> {
 
         if (args.size() != 2) {
             // Just user
-            return showLog(log.getRecentMaxPages(u), u, sender, log);
+            return showLog(-999, u, sender, storage);
         } else {
             try {
                 int p = Integer.parseInt(args.get(1));
                 // User and page
-                return showLog(p, u, sender, log);
+                return showLog(p, u, sender, storage);
             } catch (NumberFormatException e) {
                 // Invalid page
-                return showLog(-1, null, sender, log);
+                Message.LOG_INVALID_PAGE.send(sender);
+                return CommandResult.INVALID_ARGS;
             }
         }
     }
@@ -32,6 +32,8 @@ import me.lucko.luckperms.common.commands.sender.Sender;
 import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogQuery;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.DateUtil;
 import me.lucko.luckperms.common.utils.Predicates;
 
@@ -40,7 +42,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.stream.Collectors;
 
-public class LogSearch extends SubCommand<Log> {
+public class LogSearch extends SubCommand<Storage> {
     public LogSearch() {
         super("search", "Search the log for an entry", Permission.LOG_SEARCH, Predicates.is(0),
                 Arg.list(
@@ -51,7 +53,7 @@ public class LogSearch extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) throws CommandException {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) throws CommandException {
         int page = -999;
         if (args.size() > 1) {
             try {
@@ -62,8 +64,15 @@ public class LogSearch extends SubCommand<Log> {
         }
 
         final String query = args.stream().collect(Collectors.joining(" "));
+        final LogQuery logQuery = LogQuery.search(query);
 
-        int maxPage = log.getSearchMaxPages(query);
+        int count = storage.countLog(logQuery).join();
+        if (count < 0) {
+            Message.LOG_LOAD_ERROR.send(sender);
+            return CommandResult.LOADING_ERROR;
+        }
+
+        int maxPage = Log.getMaxPages(count);
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return CommandResult.STATE_ERROR;
@@ -78,7 +87,12 @@ public class LogSearch extends SubCommand<Log> {
             return CommandResult.INVALID_ARGS;
         }
 
-        SortedMap<Integer, LogEntry> entries = log.getSearch(page, query);
+        SortedMap<Integer, LogEntry> entries = Log.getPage(storage, logQuery, count, page);
+        if (entries == null) {
+            Message.LOG_LOAD_ERROR.send(sender);
+            return CommandResult.LOADING_ERROR;
+        }
+
         Message.LOG_SEARCH_HEADER.send(sender, query, page, maxPage);
 
         for (Map.Entry<Integer, LogEntry> e : entries.entrySet()) {
@@ -34,6 +34,8 @@ import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.constants.Patterns;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogQuery;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.DateUtil;
 import me.lucko.luckperms.common.utils.Predicates;
 
@@ -42,20 +44,36 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.UUID;
 
-public class LogUserHistory extends SubCommand<Log> {
-    private static CommandResult showLog(int page, UUID user, Sender sender, Log log) {
-        int maxPage = log.getUserHistoryMaxPages(user);
+public class LogUserHistory extends SubCommand<Storage> {
+    private static CommandResult showLog(int page, UUID user, Sender sender, Storage storage) {
+        LogQuery query = LogQuery.userHistory(user);
+        int count = storage.countLog(query).join();
+        if (count < 0) {
+            Message.LOG_LOAD_ERROR.send(sender);
+            return CommandResult.LOADING_ERROR;
+        }
+
+        int maxPage = Log.getMaxPages(count);
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return CommandResult.STATE_ERROR;
         }
 
+        if (page == -999) {
+            page = maxPage;
+        }
+
         if (page < 1 || page > maxPage) {
             Message.LOG_INVALID_PAGE_RANGE.send(sender, maxPage);
             return CommandResult.INVALID_ARGS;
         }
 
-        SortedMap<Integer, LogEntry> entries = log.getUserHistory(page, user);
+        SortedMap<Integer, LogEntry> entries = Log.getPage(storage, query, count, page);
+        if (entries == null || entries.isEmpty()) {
+            Message.LOG_LOAD_ERROR.send(sender);
+            return CommandResult.LOADING_ERROR;
+        }
+
         String name = entries.values().stream().findAny().get().getActedName();
         Message.LOG_HISTORY_USER_HEADER.send(sender, name, page, maxPage);
 
@@ -76,7 +94,7 @@ public class LogUserHistory extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) throws CommandException {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) throws CommandException {
         String user = args.get(0);
         int page = -999;
 
@@ -85,17 +103,14 @@ public class LogUserHistory extends SubCommand<Log> {
                 page = Integer.parseInt(args.get(1));
             } catch (NumberFormatException e) {
                 // invalid page
-                return showLog(-1, null, sender, log);
+                Message.LOG_INVALID_PAGE.send(sender);
+                return CommandResult.INVALID_ARGS;
             }
         }
 
         UUID uuid = Util.parseUuid(user);
         if (uuid != null) {
-            if (page == -999) {
-                page = log.getUserHistoryMaxPages(uuid);
-            }
-
-            return showLog(page, uuid, sender, log);
+            return showLog(page, uuid, sender, storage);
 
         }
 
@@ -112,11 +127,7 @@ public class LogUserHistory extends SubCommand<Log> {
                 return CommandResult.INVALID_ARGS;
             }
 
-            if (page == -999) {
-                page = log.getUserHistoryMaxPages(uuid1);
-            }
-
-            return showLog(page, uuid1, sender, log);
+            return showLog(page, uuid1, sender, storage);
         }
 
         Message.USER_INVALID_ENTRY.send(sender, user);
@@ -35,6 +35,7 @@ import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
+import me.lucko.luckperms.common.data.SnapshotExporter;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.Predicates;
 
@@ -104,7 +105,7 @@ public class ExportCommand extends SingleCommand {
     public ExportCommand() {
         super("Export", "Export data to a file", "/%s export <file>", Permission.MIGRATION, Predicates.not(1),
                 Arg.list(
-                        Arg.create("file", true, "the file to export to")
+                        Arg.create("file", true, "the file to export to, use a .ndjson extension to write a snapshot")
                 )
         );
     }
@@ -138,6 +139,12 @@ public class ExportCommand extends SingleCommand {
         }
 
         try (FileWriter fWriter = new FileWriter(f, true); BufferedWriter writer = new BufferedWriter(fWriter)) {
+            if (f.getName().endsWith(".ndjson")) {
+                new SnapshotExporter(plugin).export(writer);
+                Message.LOG_EXPORT_SUCCESS.send(sender, f.getAbsolutePath());
+                return CommandResult.SUCCESS;
+            }
+
             log.info("Export: Starting export process.");
 
             // Export Groups
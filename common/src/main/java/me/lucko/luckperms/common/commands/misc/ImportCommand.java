@@ -32,6 +32,7 @@ import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.data.Importer;
 import me.lucko.luckperms.common.utils.Predicates;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -67,10 +68,14 @@ public class ImportCommand extends SingleCommand {
             return CommandResult.FAILURE;
         }
 
-        List<String> commands;
+        boolean snapshot;
+        List<String> commands = null;
 
         try {
-            commands = Files.readAllLines(f.toPath(), Charset.defaultCharset());
+            snapshot = isSnapshot(f);
+            if (!snapshot) {
+                commands = Files.readAllLines(f.toPath(), Charset.defaultCharset());
+            }
         } catch (IOException e) {
             e.printStackTrace();
             Message.IMPORT_LOG_FAILURE.send(sender);
@@ -83,7 +88,25 @@ public class ImportCommand extends SingleCommand {
         }
 
         // Run the importer in its own thread.
-        plugin.doAsync(() -> importer.start(sender, commands));
+        if (snapshot) {
+            plugin.doAsync(() -> importer.startSnapshot(sender, f.toPath()));
+        } else {
+            final List<String> toRun = commands;
+            plugin.doAsync(() -> importer.start(sender, toRun));
+        }
         return CommandResult.SUCCESS;
     }
+
+    private static boolean isSnapshot(File f) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(f.toPath(), Charset.defaultCharset())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    return line.startsWith("{");
+                }
+            }
+        }
+        return false;
+    }
 }
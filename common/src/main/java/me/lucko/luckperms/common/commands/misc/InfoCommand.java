@@ -22,7 +22,10 @@
 
 package me.lucko.luckperms.common.commands.misc;
 
+import com.google.common.cache.CacheStats;
+
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.caching.CacheMetrics;
 import me.lucko.luckperms.common.commands.CommandResult;
 import me.lucko.luckperms.common.commands.SingleCommand;
 import me.lucko.luckperms.common.commands.sender.Sender;
@@ -30,6 +33,7 @@ import me.lucko.luckperms.common.commands.utils.Util;
 import me.lucko.luckperms.common.config.LPConfiguration;
 import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.constants.Permission;
+import me.lucko.luckperms.common.data.LogQuery;
 import me.lucko.luckperms.common.utils.Predicates;
 
 import java.util.LinkedHashMap;
@@ -70,13 +74,13 @@ public class InfoCommand extends SingleCommand {
                 plugin.getUserManager().getAll().size(),
                 plugin.getGroupManager().getAll().size(),
                 plugin.getTrackManager().getAll().size(),
-                plugin.getStorage().getLog().join().getContent().size(),
+                plugin.getStorage().countLog(LogQuery.all()).join(),
                 plugin.getUuidCache().getSize(),
                 plugin.getLocaleManager().getSize(),
                 plugin.getPreProcessContexts(false).size(),
                 plugin.getContextManager().getCalculatorsSize(),
                 formatBoolean(c.isOnlineMode()),
-                formatBoolean(c.isRedisEnabled()),
+                plugin.getMessagingService() == null ? "None" : plugin.getMessagingService().getName(),
                 formatBoolean(c.isIncludingGlobalPerms()),
                 formatBoolean(c.isIncludingGlobalWorldPerms()),
                 formatBoolean(c.isApplyingGlobalGroups()),
@@ -86,6 +90,20 @@ public class InfoCommand extends SingleCommand {
                 formatBoolean(c.isApplyingShorthand())
         );
 
+        Map<String, CacheMetrics.Summary> caches = CacheMetrics.summarise();
+        if (!caches.isEmpty()) {
+            Message.EMPTY.send(sender, "&f-  &bCaches:");
+            for (Map.Entry<String, CacheMetrics.Summary> e : caches.entrySet()) {
+                CacheStats stats = e.getValue().getStats();
+                if (stats == null) {
+                    Message.EMPTY.send(sender, String.format("&f-     &3%s: &a%d &fentries", e.getKey(), e.getValue().getSize()));
+                    continue;
+                }
+                Message.EMPTY.send(sender, String.format("&f-     &3%s: &a%d &fentries, &a%.1f%% &fhit rate, &a%d &fevictions",
+                        e.getKey(), e.getValue().getSize(), stats.hitRate() * 100, stats.evictionCount()));
+            }
+        }
+
         LinkedHashMap<String, Object> platformInfo = plugin.getExtraInfo();
         if (platformInfo == null || platformInfo.isEmpty()) {
             return CommandResult.SUCCESS;
@@ -74,6 +74,10 @@ public class DeleteTrack extends SingleCommand {
         Message.DELETE_SUCCESS.send(sender, trackName);
         LogEntry.build().actor(sender).actedName(trackName).type('T').action("delete").build().submit(plugin, sender);
         plugin.getUpdateTaskBuffer().request();
+
+        if (plugin.getMessagingService() != null) {
+            plugin.getMessagingService().pushTrackUpdate(trackName);
+        }
         return CommandResult.SUCCESS;
     }
 
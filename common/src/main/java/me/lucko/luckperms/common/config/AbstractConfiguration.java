@@ -64,6 +64,7 @@ public abstract class AbstractConfiguration<T extends LuckPermsPlugin> implement
     private boolean applyingShorthand;
     private Map<String, Integer> groupWeights;
     private boolean logNotify;
+    private int verboseSampleRate;
     private boolean opsEnabled;
     private boolean commandsAllowOp;
     private boolean autoOp;
@@ -82,6 +83,7 @@ public abstract class AbstractConfiguration<T extends LuckPermsPlugin> implement
     private String storageMethod;
     private boolean splitStorage;
     private Map<String, String> splitStorageOptions;
+    private String messagingService;
     private boolean redisEnabled;
     private String redisAddress;
     private String redisPassword;
@@ -129,6 +131,7 @@ public abstract class AbstractConfiguration<T extends LuckPermsPlugin> implement
         }
         groupWeights = mb.build();
         logNotify = getBoolean("log-notify", true);
+        verboseSampleRate = Math.max(1, getInt("verbose-sample-rate", 1));
         autoOp = getBoolean("auto-op", false);
         opsEnabled = !isAutoOp() && getBoolean("enable-ops", true);
         commandsAllowOp = getBoolean("commands-allow-op", true);
@@ -161,7 +164,8 @@ public abstract class AbstractConfiguration<T extends LuckPermsPlugin> implement
                 getString("data.database", null),
                 getString("data.username", null),
                 getString("data.password", null),
-                getInt("data.pool-size", 10)
+                getInt("data.pool-size", 10),
+                getBoolean("data.mysql-compact-schema", false)
         );
         storageMethod = getString("storage-method", defaultStorage);
         splitStorage = getBoolean("split-storage.enabled", false);
@@ -173,6 +177,7 @@ public abstract class AbstractConfiguration<T extends LuckPermsPlugin> implement
                 .put("log", getString("split-storage.methods.log", defaultStorage))
                 .build();
 
+        messagingService = getString("messaging-service", "none").toLowerCase();
         redisEnabled = getBoolean("redis.enabled", false);
         redisAddress = getString("redis.address", null);
         redisPassword = getString("redis.password", "");
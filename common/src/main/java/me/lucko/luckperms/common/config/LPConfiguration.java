@@ -68,6 +68,8 @@ public interface LPConfiguration {
 
     boolean isLogNotify();
 
+    int getVerboseSampleRate();
+
     boolean isOpsEnabled();
 
     boolean isCommandsAllowOp();
@@ -104,6 +106,8 @@ public interface LPConfiguration {
 
     Map<String, String> getSplitStorageOptions();
 
+    String getMessagingService();
+
     boolean isRedisEnabled();
 
     String getRedisAddress();
@@ -121,7 +121,7 @@ public enum Message {
     UPDATE_TASK_COMPLETE("&aUpdate task finished.", true),
     UPDATE_TASK_COMPLETE_NETWORK("&aUpdate task finished. Now attempting to push to other servers.", true),
     UPDATE_TASK_PUSH_SUCCESS("&aOther servers were notified successfully.", true),
-    UPDATE_TASK_PUSH_FAILURE("&cError whilst pushing changes to other servers. Is Redis enabled?", true),
+    UPDATE_TASK_PUSH_FAILURE("&cError whilst pushing changes to other servers. Is a messaging service enabled?", true),
     INFO(
             "{PREFIX}&2Running &bLuckPerms v{0}&2 by &bLuck&2." + "\n" +
                     "{PREFIX}&f-  &3Platform: &f{1}" + "\n" +
@@ -140,7 +140,7 @@ public enum Message {
                     "{PREFIX}&f-     &3Context Calculators: &a{13}" + "\n" +
                     "{PREFIX}&f-  &bConfiguration:" + "\n" +
                     "{PREFIX}&f-     &3Online Mode: {14}" + "\n" +
-                    "{PREFIX}&f-     &3Redis Enabled: {15}" + "\n" +
+                    "{PREFIX}&f-     &3Messaging Service: &f{15}" + "\n" +
                     "{PREFIX}&f-     &bPermission Calculation:" + "\n" +
                     "{PREFIX}&f-        &3Including Global: {16}" + "\n" +
                     "{PREFIX}&f-        &3Including Global World: {17}" + "\n" +
@@ -24,13 +24,14 @@ package me.lucko.luckperms.common.constants;
 
 import lombok.experimental.UtilityClass;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
+import me.lucko.luckperms.common.caching.CacheMetrics;
+
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
@@ -42,7 +43,8 @@ public class Patterns {
     public static final Pattern SHORTHAND_NODE = Pattern.compile("\\.\\([^.]+\\)");
     public static final Pattern STRIP_COLOR_PATTERN = Pattern.compile("(?i)" + String.valueOf('§') + "[0-9A-FK-OR]");
     public static final Pattern NODE_CONTEXTS = Pattern.compile("\\(.+\\).*");
-    private static final LoadingCache<String, Pattern> CACHE = CacheBuilder.newBuilder()
+    // bounded by the total length of the cached expressions
+    private static final LoadingCache<String, Pattern> CACHE = CacheMetrics.register("patterns", CacheMetrics.newBuilder(100000, CacheMetrics.STRING_LENGTH)
             .build(new CacheLoader<String, Pattern>() {
                 @Override
                 public Pattern load(String s) throws Exception {
@@ -53,7 +55,7 @@ public class Patterns {
                 public ListenableFuture<Pattern> reload(String s, Pattern pattern) {
                     return Futures.immediateFuture(pattern);
                 }
-            });
+            }));
 
     public static Pattern compile(String regex) {
         try {
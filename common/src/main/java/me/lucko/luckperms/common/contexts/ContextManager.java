@@ -50,6 +50,9 @@ public class ContextManager<T> {
                 }
             });
 
+    // Invalidates the cached context of a subject as soon as it changes. Registered before any other listener.
+    private final ContextListener<T> invalidationListener = (subject, before, current) -> cache.invalidate(subject);
+
     private MutableContextSet calculateApplicableContext(T subject, MutableContextSet accumulator) {
         for (IContextCalculator<T> calculator : calculators) {
             calculator.giveApplicableContext(subject, accumulator);
@@ -62,6 +65,7 @@ public class ContextManager<T> {
     }
 
     public void registerCalculator(IContextCalculator<T> calculator) {
+        calculator.addListener(invalidationListener);
         listeners.forEach(calculator::addListener);
         calculators.add(calculator);
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.core;
+
+import lombok.AllArgsConstructor;
+
+import me.lucko.luckperms.common.caching.handlers.HolderReference;
+import me.lucko.luckperms.common.caching.handlers.HolderType;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of when the temporary nodes of loaded holders expire, so only the holders with expired nodes
+ * need to be audited.
+ *
+ * <p>Entries aren't removed when a node is unset, as auditing a holder with nothing to expire is cheap, but all of
+ * a holder's entries are removed when it is unloaded.</p>
+ */
+public class ExpiryIndex {
+    // ordered by expiry time, then by the order they were scheduled in
+    private final TreeSet<Entry> queue = new TreeSet<>();
+    private final Map<HolderReference, Map<Long, Entry>> holders = new HashMap<>();
+    private long sequence = 0L;
+
+    /**
+     * Records that the given holder has a node expiring at the given time
+     *
+     * @param holder   the holder
+     * @param expireAt the unix time (in seconds) the node expires at
+     */
+    public synchronized void schedule(HolderReference holder, long expireAt) {
+        Map<Long, Entry> entries = holders.computeIfAbsent(holder, h -> new HashMap<>());
+        if (!entries.containsKey(expireAt)) {
+            Entry entry = new Entry(holder, expireAt, sequence++);
+            entries.put(expireAt, entry);
+            queue.add(entry);
+        }
+    }
+
+    /**
+     * Removes all of the entries for the given holder, once it has been unloaded
+     *
+     * @param holder the holder
+     */
+    public synchronized void unschedule(HolderReference holder) {
+        Map<Long, Entry> entries = holders.remove(holder);
+        if (entries != null) {
+            queue.removeAll(entries.values());
+        }
+    }
+
+    /**
+     * Removes all of the entries for holders of the given type, once they have all been unloaded
+     *
+     * @param type the type of holder
+     */
+    public synchronized void unscheduleAll(HolderType type) {
+        Iterator<HolderReference> it = holders.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getType() == type) {
+                it.remove();
+            }
+        }
+        queue.removeIf(entry -> entry.holder.getType() == type);
+    }
+
+    /**
+     * Removes and returns the holders with nodes which have expired by the given time
+     *
+     * @param now the current unix time, in seconds
+     * @return the holders with expired nodes, in the order they expired
+     */
+    public synchronized Set<HolderReference> pollExpired(long now) {
+        Set<HolderReference> expired = new LinkedHashSet<>();
+        while (!queue.isEmpty() && queue.first().expireAt < now) {
+            Entry entry = queue.pollFirst();
+            Map<Long, Entry> entries = holders.get(entry.holder);
+            entries.remove(entry.expireAt);
+            if (entries.isEmpty()) {
+                holders.remove(entry.holder);
+            }
+            expired.add(entry.holder);
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    @AllArgsConstructor
+    private static final class Entry implements Comparable<Entry> {
+        private final HolderReference holder;
+        private final long expireAt;
+        private final long sequence;
+
+        @Override
+        public int compareTo(Entry o) {
+            int i = Long.compare(expireAt, o.expireAt);
+            return i != 0 ? i : Long.compare(sequence, o.sequence);
+        }
+    }
+}
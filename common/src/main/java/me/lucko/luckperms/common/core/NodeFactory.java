@@ -25,13 +25,13 @@ package me.lucko.luckperms.common.core;
 import lombok.experimental.UtilityClass;
 
 import com.google.common.base.Splitter;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import me.lucko.luckperms.api.MetaUtils;
 import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.common.caching.CacheMetrics;
 
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -41,21 +41,24 @@ import java.util.concurrent.ExecutionException;
  */
 @UtilityClass
 public class NodeFactory {
-    private static final LoadingCache<String, Node> CACHE = CacheBuilder.newBuilder()
+    // bounded by the total length of the cached strings
+    private static final long MAXIMUM_WEIGHT = 500000;
+
+    private static final LoadingCache<String, Node> CACHE = CacheMetrics.register("node-factory", CacheMetrics.newBuilder(MAXIMUM_WEIGHT, CacheMetrics.STRING_LENGTH)
             .build(new CacheLoader<String, Node>() {
                 @Override
                 public Node load(String s) throws Exception {
                     return builderFromSerialisedNode(s, true).build();
                 }
-            });
+            }));
 
-    private static final LoadingCache<String, Node> CACHE_NEGATED = CacheBuilder.newBuilder()
+    private static final LoadingCache<String, Node> CACHE_NEGATED = CacheMetrics.register("node-factory", CacheMetrics.newBuilder(MAXIMUM_WEIGHT, CacheMetrics.STRING_LENGTH)
             .build(new CacheLoader<String, Node>() {
                 @Override
                 public Node load(String s) throws Exception {
                     return builderFromSerialisedNode(s, false).build();
                 }
-            });
+            }));
 
     public static Node fromSerialisedNode(String s, Boolean b) {
         try {
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.core;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.api.context.ImmutableContextSet;
+import me.lucko.luckperms.common.core.model.ImmutableNode;
+
+import java.util.Objects;
+
+/**
+ * The identity of a node, ignoring its value and expiry time.
+ *
+ * <p>Two nodes have equal identities if and only if they are {@link Node#almostEquals(Node)}, or
+ * {@link Node#equalsIgnoringValueOrTemp(Node)} when created using {@link #ofIgnoringTemp(Node)}. This allows
+ * duplicate nodes to be found using a hash lookup, instead of comparing against every other node.</p>
+ */
+@Getter
+@ToString(exclude = "hashCode")
+public final class NodeIdentity {
+
+    /**
+     * Gets the identity of a node, as used by {@link Node#almostEquals(Node)}
+     *
+     * @param node the node
+     * @return the identity
+     */
+    public static NodeIdentity of(Node node) {
+        if (node instanceof ImmutableNode) {
+            return ((ImmutableNode) node).getIdentity();
+        }
+        return create(node, false);
+    }
+
+    /**
+     * Gets the identity of a node, as used by {@link Node#equalsIgnoringValueOrTemp(Node)}
+     *
+     * @param node the node
+     * @return the identity
+     */
+    public static NodeIdentity ofIgnoringTemp(Node node) {
+        if (node instanceof ImmutableNode) {
+            return ((ImmutableNode) node).getIdentityIgnoringTemp();
+        }
+        return create(node, true);
+    }
+
+    /**
+     * Creates a new identity for a node. {@link #of(Node)} and {@link #ofIgnoringTemp(Node)} should be preferred,
+     * as they return the identity cached by {@link ImmutableNode}s.
+     *
+     * @param node       the node
+     * @param ignoreTemp if the identity should ignore whether the node is temporary
+     * @return a new identity
+     */
+    public static NodeIdentity create(Node node, boolean ignoreTemp) {
+        return new NodeIdentity(
+                node.getPermission().toLowerCase(),
+                !ignoreTemp && node.isTemporary(),
+                node.getServer().map(String::toLowerCase).orElse(null),
+                node.getWorld().map(String::toLowerCase).orElse(null),
+                node.getContexts().makeImmutable()
+        );
+    }
+
+    private final String permission;
+    private final boolean temporary;
+    private final String server;
+    private final String world;
+    private final ImmutableContextSet contexts;
+
+    @Getter(AccessLevel.NONE)
+    private final int hashCode;
+
+    private NodeIdentity(String permission, boolean temporary, String server, String world, ImmutableContextSet contexts) {
+        this.permission = permission;
+        this.temporary = temporary;
+        this.server = server;
+        this.world = world;
+        this.contexts = contexts;
+        this.hashCode = Objects.hash(permission, temporary, server, world, contexts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof NodeIdentity)) return false;
+        final NodeIdentity other = (NodeIdentity) o;
+        return this.hashCode == other.hashCode &&
+                this.temporary == other.temporary &&
+                this.permission.equals(other.permission) &&
+                Objects.equals(this.server, other.server) &&
+                Objects.equals(this.world, other.world) &&
+                this.contexts.equals(other.contexts);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
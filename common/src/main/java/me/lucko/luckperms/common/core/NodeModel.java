@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.core;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.api.context.ImmutableContextSet;
+
+/**
+ * An immutable model of the stored properties of a node, with each property held separately rather than
+ * in a serialized string.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(staticName = "of")
+public final class NodeModel {
+    public static final String GLOBAL = "global";
+
+    public static NodeModel fromNode(Node node) {
+        return NodeModel.of(
+                node.getPermission(),
+                node.getValue(),
+                node.getServer().orElse(GLOBAL),
+                node.getWorld().orElse(GLOBAL),
+                node.isTemporary() ? node.getExpiryUnixTime() : 0L,
+                node.getContexts().makeImmutable()
+        );
+    }
+
+    private final String permission;
+    private final boolean value;
+    private final String server;
+    private final String world;
+    private final long expiry;
+    private final ImmutableContextSet contexts;
+
+    public Node toNode() {
+        NodeBuilder builder = new NodeBuilder(permission, false);
+        builder.setValue(value);
+        builder.setServerRaw(server);
+        builder.setWorld(world.equalsIgnoreCase(GLOBAL) ? null : world);
+        builder.setExpiry(expiry);
+        builder.withExtraContext(contexts);
+        return builder.build();
+    }
+
+}
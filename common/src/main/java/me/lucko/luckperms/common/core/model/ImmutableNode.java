@@ -37,6 +37,7 @@ import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.api.context.ImmutableContextSet;
 import me.lucko.luckperms.common.constants.Patterns;
+import me.lucko.luckperms.common.core.NodeIdentity;
 import me.lucko.luckperms.common.utils.ShorthandParser;
 
 import java.util.Collections;
@@ -145,6 +146,12 @@ public class ImmutableNode implements Node {
 
     private final String serializedNode;
 
+    @Getter
+    private final NodeIdentity identity;
+
+    @Getter
+    private final NodeIdentity identityIgnoringTemp;
+
     /**
      * Make an immutable node instance
      *
@@ -211,6 +218,9 @@ public class ImmutableNode implements Node {
 
         resolvedShorthand = ImmutableList.copyOf(ShorthandParser.parseShorthand(getPermission()));
         serializedNode = calculateSerializedNode();
+
+        identity = NodeIdentity.create(this, false);
+        identityIgnoringTemp = isTemporary() ? NodeIdentity.create(this, true) : identity;
     }
 
     @Override
@@ -57,6 +57,7 @@ import me.lucko.luckperms.common.commands.utils.Util;
 import me.lucko.luckperms.common.core.InheritanceInfo;
 import me.lucko.luckperms.common.core.NodeBuilder;
 import me.lucko.luckperms.common.core.NodeFactory;
+import me.lucko.luckperms.common.core.NodeIdentity;
 import me.lucko.luckperms.common.core.PriorityComparator;
 import me.lucko.luckperms.common.utils.Cache;
 import me.lucko.luckperms.common.utils.ExtractedContexts;
@@ -179,7 +180,7 @@ public abstract class PermissionHolder {
         exportNodesCache.invalidateAll();
 
         // Get previous references
-        Set<HolderReference> refs = plugin.getCachedStateManager().getInheritances(toReference());
+        Set<HolderReference> refs = new HashSet<>(plugin.getCachedStateManager().getInheritances(toReference()));
 
         // Declare new state to the state manager
         declareState();
@@ -191,6 +192,46 @@ public abstract class PermissionHolder {
         CachedStateManager.invalidateInheritances(plugin, refs);
     }
 
+    /**
+     * Updates the caches of this holder, and the holders which inherit from it, after a single node was set or unset.
+     *
+     * @param enduring if the node was enduring
+     * @param changed  the node which was set or unset
+     */
+    private void invalidateCache(boolean enduring, Node changed) {
+        if (changed.isGroupNode()) {
+            // the inheritance tree itself has changed
+            invalidateCache(enduring);
+            return;
+        }
+
+        if (enduring) {
+            enduringCache.invalidate();
+        } else {
+            transientCache.invalidate();
+        }
+        cache.invalidate();
+        mergedCache.invalidate();
+
+        if (!applyInheritanceDelta(changed)) {
+            invalidateCache(enduring);
+            return;
+        }
+
+        plugin.getCachedStateManager().applyInheritanceDelta(toReference(), changed);
+    }
+
+    /**
+     * Adds a node to the expiry index if it's temporary, so it's removed when it expires.
+     *
+     * @param node the node which was added
+     */
+    private void scheduleExpiry(Node node) {
+        if (node.isTemporary()) {
+            plugin.getExpiryIndex().schedule(toReference(), node.getExpiryUnixTime());
+        }
+    }
+
     public void invalidateInheritanceCaches() {
         getAllNodesCache.invalidateAll();
         getAllNodesFilteredCache.invalidateAll();
@@ -215,20 +256,10 @@ public abstract class PermissionHolder {
             );
         }
 
-        Iterator<LocalizedNode> it = combined.iterator();
-        Set<LocalizedNode> higherPriority = new HashSet<>();
+        // Remove nodes overridden by a higher priority node
+        Set<NodeIdentity> higherPriority = new HashSet<>();
+        combined.removeIf(entry -> !higherPriority.add(NodeIdentity.of(entry.getNode())));
 
-        iterate:
-        while (it.hasNext()) {
-            LocalizedNode entry = it.next();
-            for (LocalizedNode h : higherPriority) {
-                if (entry.getNode().almostEquals(h.getNode())) {
-                    it.remove();
-                    continue iterate;
-                }
-            }
-            higherPriority.add(entry);
-        }
         return ImmutableSortedSet.copyOfSorted(combined);
     }
 
@@ -249,20 +280,10 @@ public abstract class PermissionHolder {
             );
         }
 
-        Iterator<LocalizedNode> it = combined.iterator();
-        Set<LocalizedNode> higherPriority = new HashSet<>();
+        // Remove nodes overridden by a higher priority node
+        Set<NodeIdentity> higherPriority = new HashSet<>();
+        combined.removeIf(entry -> !higherPriority.add(NodeIdentity.ofIgnoringTemp(entry.getNode())));
 
-        iterate:
-        while (it.hasNext()) {
-            LocalizedNode entry = it.next();
-            for (LocalizedNode h : higherPriority) {
-                if (entry.getNode().equalsIgnoringValueOrTemp(h.getNode())) {
-                    it.remove();
-                    continue iterate;
-                }
-            }
-            higherPriority.add(entry);
-        }
         return ImmutableSortedSet.copyOfSorted(combined);
     }
 
@@ -274,16 +295,66 @@ public abstract class PermissionHolder {
 
         excludedGroups.add(getObjectName().toLowerCase());
 
-        Set<Node> parents = all.stream()
-                .map(LocalizedNode::getNode)
-                .filter(Node::getValue)
-                .filter(Node::isGroupNode)
-                .collect(Collectors.toSet());
+        Set<NodeIdentity> existing = new HashSet<>();
+        for (LocalizedNode ln : all) {
+            existing.add(NodeIdentity.of(ln.getNode()));
+        }
+
+        for (Group group : getSortedParents(contexts, excludedGroups)) {
+            for (LocalizedNode inherited : group.getAllNodes(excludedGroups, contexts)) {
+                if (existing.add(NodeIdentity.of(inherited.getNode()))) {
+                    all.add(inherited);
+                }
+            }
+        }
+
+        return ImmutableSortedSet.copyOfSorted(all);
+    }
 
+    private Set<LocalizedNode> getAllNodesFilteredApply(ExtractedContexts contexts) {
+        SortedSet<LocalizedNode> allNodes;
+
+        if (contexts.getContexts().isApplyGroups()) {
+            // copy, the result of getAllNodes is cached and shared
+            allNodes = new TreeSet<>(getAllNodes(null, contexts));
+        } else {
+            allNodes = new TreeSet<>((SortedSet<LocalizedNode>) getPermissions(true));
+        }
+
+        allNodes.removeIf(node -> !shouldApplyFiltered(node, contexts));
+
+        Set<LocalizedNode> perms = ConcurrentHashMap.newKeySet();
+        Set<String> applied = new HashSet<>();
+
+        for (LocalizedNode ln : allNodes) {
+            // Force higher priority nodes to override
+            if (applied.add(ln.getNode().getPermission())) {
+                perms.add(ln);
+            }
+        }
+
+        return perms;
+    }
+
+    /**
+     * Gets the groups this holder directly inherits from in the given contexts, in the order they should be
+     * applied.
+     *
+     * @param contexts       the contexts to resolve in
+     * @param excludedGroups groups which should not be included
+     * @return the parent groups, highest weight first
+     */
+    private List<Group> getSortedParents(ExtractedContexts contexts, List<String> excludedGroups) {
         Contexts context = contexts.getContexts();
         String server = contexts.getServer();
         String world = contexts.getWorld();
 
+        Set<Node> parents = getPermissions(true).stream()
+                .map(LocalizedNode::getNode)
+                .filter(Node::getValue)
+                .filter(Node::isGroupNode)
+                .collect(Collectors.toSet());
+
         parents.removeIf(node ->
                 !node.shouldApplyOnServer(server, context.isApplyGlobalGroups(), plugin.getConfiguration().isApplyingRegex()) ||
                         !node.shouldApplyOnWorld(world, context.isApplyGlobalWorldGroups(), plugin.getConfiguration().isApplyingRegex()) ||
@@ -304,9 +375,9 @@ public abstract class PermissionHolder {
             sortedParents.add(Maps.immutableEntry(0, node));
         }
 
+        List<Group> groups = new ArrayList<>();
         for (Map.Entry<Integer, Node> e : sortedParents) {
-            Node parent = e.getValue();
-            Group group = plugin.getGroupManager().getIfLoaded(parent.getGroupName());
+            Group group = plugin.getGroupManager().getIfLoaded(e.getValue().getGroupName());
             if (group == null) {
                 continue;
             }
@@ -315,52 +386,161 @@ public abstract class PermissionHolder {
                 continue;
             }
 
-            inherited:
-            for (LocalizedNode inherited : group.getAllNodes(excludedGroups, contexts)) {
-                for (LocalizedNode existing : all) {
-                    if (existing.getNode().almostEquals(inherited.getNode())) {
-                        continue inherited;
+            groups.add(group);
+        }
+
+        return groups;
+    }
+
+    private boolean shouldApplyFiltered(Node node, ExtractedContexts contexts) {
+        Contexts context = contexts.getContexts();
+        return node.shouldApplyOnServer(contexts.getServer(), context.isIncludeGlobal(), plugin.getConfiguration().isApplyingRegex()) &&
+                node.shouldApplyOnWorld(contexts.getWorld(), context.isIncludeGlobalWorld(), plugin.getConfiguration().isApplyingRegex()) &&
+                node.shouldApplyWithContext(contexts.getContextSet(), false);
+    }
+
+    /**
+     * Applies a change to a single node to the inheritance caches of this holder, instead of invalidating them.
+     *
+     * <p>The node must have been added to or removed from this holder, or a group this holder inherits from.
+     * Groups this holder inherits from must have already applied the change.</p>
+     *
+     * @param node the node which was changed
+     * @return true if the caches were updated, false if they had to be invalidated instead
+     */
+    public boolean applyInheritanceDelta(Node node) {
+        for (Map.Entry<GetAllNodesHolder, SortedSet<LocalizedNode>> e : getAllNodesCache.asMap().entrySet()) {
+            SortedSet<LocalizedNode> updated = getAllNodesDeltaApply(e.getKey(), e.getValue(), node);
+            if (updated == null) {
+                invalidateInheritanceCaches();
+                return false;
+            }
+
+            getAllNodesCache.asMap().replace(e.getKey(), e.getValue(), updated);
+        }
+
+        for (Map.Entry<ExtractedContexts, Set<LocalizedNode>> e : getAllNodesFilteredCache.asMap().entrySet()) {
+            Set<LocalizedNode> updated = getAllNodesFilteredDeltaApply(e.getKey(), e.getValue(), node);
+            if (updated == null) {
+                getAllNodesFilteredCache.invalidate(e.getKey());
+                continue;
+            }
+
+            getAllNodesFilteredCache.asMap().replace(e.getKey(), e.getValue(), updated);
+        }
+
+        // derived directly from getAllNodesFiltered, so cheap to rebuild
+        exportNodesCache.invalidateAll();
+        return true;
+    }
+
+    /**
+     * Re-resolves the nodes which could be affected by a change to the given node within a cached result of
+     * {@link #getAllNodesCacheApply(GetAllNodesHolder)}.
+     *
+     * @return the updated result, or null if it could not be updated from the cached results of parent groups
+     */
+    private SortedSet<LocalizedNode> getAllNodesDeltaApply(GetAllNodesHolder getAllNodesHolder, SortedSet<LocalizedNode> existing, Node node) {
+        // nodes are de-duplicated ignoring their value, and only temporary nodes override permanent ones locally.
+        // the winner for each of the temporary and permanent variant of the node needs to be resolved again.
+        NodeIdentity identity = NodeIdentity.ofIgnoringTemp(node);
+        LocalizedNode permanent = null;
+        LocalizedNode temporary = null;
+
+        for (LocalizedNode ln : getPermissions(true)) {
+            if (NodeIdentity.ofIgnoringTemp(ln.getNode()).equals(identity)) {
+                if (ln.getNode().isTemporary()) {
+                    temporary = ln;
+                } else {
+                    permanent = ln;
+                }
+            }
+        }
+
+        if (permanent == null || temporary == null) {
+            List<String> excludedGroups = new ArrayList<>(getAllNodesHolder.getExcludedGroups());
+            excludedGroups.add(getObjectName().toLowerCase());
+
+            ExtractedContexts contexts = getAllNodesHolder.getContexts();
+            GetAllNodesHolder parentKey = GetAllNodesHolder.of(ImmutableList.copyOf(excludedGroups), contexts);
+
+            for (PermissionHolder group : getSortedParents(contexts, excludedGroups)) {
+                SortedSet<LocalizedNode> inherited = group.getAllNodesCache.getIfPresent(parentKey);
+                if (inherited == null) {
+                    return null;
+                }
+
+                for (LocalizedNode ln : inherited) {
+                    if (!NodeIdentity.ofIgnoringTemp(ln.getNode()).equals(identity)) {
+                        continue;
+                    }
+
+                    if (ln.getNode().isTemporary()) {
+                        if (temporary == null) {
+                            temporary = ln;
+                        }
+                    } else {
+                        if (permanent == null) {
+                            permanent = ln;
+                        }
                     }
                 }
 
-                all.add(inherited);
+                if (permanent != null && temporary != null) {
+                    break;
+                }
             }
         }
 
-        return all;
+        SortedSet<LocalizedNode> all = new TreeSet<>(existing);
+        all.removeIf(ln -> NodeIdentity.ofIgnoringTemp(ln.getNode()).equals(identity));
+        if (permanent != null) {
+            all.add(permanent);
+        }
+        if (temporary != null) {
+            all.add(temporary);
+        }
+
+        return ImmutableSortedSet.copyOfSorted(all);
     }
 
-    private Set<LocalizedNode> getAllNodesFilteredApply(ExtractedContexts contexts) {
+    /**
+     * Re-resolves the nodes which could be affected by a change to the given node within a cached result of
+     * {@link #getAllNodesFilteredApply(ExtractedContexts)}.
+     *
+     * @return the updated result, or null if the nodes it is derived from are not cached
+     */
+    private Set<LocalizedNode> getAllNodesFilteredDeltaApply(ExtractedContexts contexts, Set<LocalizedNode> existing, Node node) {
         SortedSet<LocalizedNode> allNodes;
-
-        Contexts context = contexts.getContexts();
-        String server = contexts.getServer();
-        String world = contexts.getWorld();
-
-        if (context.isApplyGroups()) {
-            allNodes = getAllNodes(null, contexts);
+        if (contexts.getContexts().isApplyGroups()) {
+            allNodes = getAllNodesCache.getIfPresent(GetAllNodesHolder.of(ImmutableList.of(), contexts));
+            if (allNodes == null) {
+                return null;
+            }
         } else {
-            allNodes = new TreeSet<>((SortedSet<LocalizedNode>) getPermissions(true));
+            allNodes = getPermissions(true);
         }
 
-        allNodes.removeIf(node ->
-                !node.shouldApplyOnServer(server, context.isIncludeGlobal(), plugin.getConfiguration().isApplyingRegex()) ||
-                        !node.shouldApplyOnWorld(world, context.isIncludeGlobalWorld(), plugin.getConfiguration().isApplyingRegex()) ||
-                        !node.shouldApplyWithContext(contexts.getContextSet(), false)
-        );
+        String permission = node.getPermission();
 
         Set<LocalizedNode> perms = ConcurrentHashMap.newKeySet();
+        perms.addAll(existing);
+        perms.removeIf(ln -> ln.getNode().getPermission().equalsIgnoreCase(permission));
 
-        all:
+        Set<String> applied = new HashSet<>();
         for (LocalizedNode ln : allNodes) {
-            // Force higher priority nodes to override
-            for (LocalizedNode alreadyIn : perms) {
-                if (ln.getNode().getPermission().equals(alreadyIn.getNode().getPermission())) {
-                    continue all;
-                }
+            if (!ln.getNode().getPermission().equalsIgnoreCase(permission)) {
+                continue;
             }
 
-            perms.add(ln);
+            if (!shouldApplyFiltered(ln.getNode(), contexts)) {
+                continue;
+            }
+
+            // Force higher priority nodes to override
+            if (applied.add(ln.getNode().getPermission())) {
+                perms.add(ln);
+            }
         }
 
         return perms;
@@ -418,6 +598,7 @@ public abstract class PermissionHolder {
             nodes.clear();
             nodes.addAll(set);
         }
+        set.forEach(this::scheduleExpiry);
         invalidateCache(true);
     }
 
@@ -434,6 +615,7 @@ public abstract class PermissionHolder {
             transientNodes.clear();
             transientNodes.addAll(set);
         }
+        set.forEach(this::scheduleExpiry);
         invalidateCache(false);
     }
 
@@ -711,7 +893,8 @@ public abstract class PermissionHolder {
         synchronized (nodes) {
             nodes.add(node);
         }
-        invalidateCache(true);
+        scheduleExpiry(node);
+        invalidateCache(true, node);
 
         plugin.getApiProvider().fireEventAsync(new PermissionNodeSetEvent(new PermissionHolderLink(this), node));
     }
@@ -730,7 +913,8 @@ public abstract class PermissionHolder {
         synchronized (transientNodes) {
             transientNodes.add(node);
         }
-        invalidateCache(false);
+        scheduleExpiry(node);
+        invalidateCache(false, node);
 
         plugin.getApiProvider().fireEventAsync(new PermissionNodeSetEvent(new PermissionHolderLink(this), node));
     }
@@ -773,7 +957,7 @@ public abstract class PermissionHolder {
         synchronized (nodes) {
             nodes.removeIf(e -> e.almostEquals(node));
         }
-        invalidateCache(true);
+        invalidateCache(true, node);
 
         if (node.isGroupNode()) {
             plugin.getApiProvider().fireEventAsync(new GroupRemoveEvent(new PermissionHolderLink(this),
@@ -797,7 +981,7 @@ public abstract class PermissionHolder {
         synchronized (transientNodes) {
             transientNodes.removeIf(e -> e.almostEquals(node));
         }
-        invalidateCache(false);
+        invalidateCache(false, node);
 
         if (node.isGroupNode()) {
             plugin.getApiProvider().fireEventAsync(new GroupRemoveEvent(new PermissionHolderLink(this),
@@ -1132,7 +1316,7 @@ public abstract class PermissionHolder {
     }
 
     public Set<HolderReference> getGroupReferences() {
-        return getNodes().stream()
+        return getPermissions(false).stream()
                 .filter(Node::isGroupNode)
                 .map(Node::getGroupName)
                 .map(String::toLowerCase)
@@ -27,6 +27,10 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.caching.UserData;
 import me.lucko.luckperms.api.event.events.UserPermissionRefreshEvent;
 import me.lucko.luckperms.common.LuckPermsPlugin;
@@ -38,6 +42,7 @@ import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.utils.BufferedRequest;
 import me.lucko.luckperms.common.utils.Identifiable;
 
+import java.util.Map;
 import java.util.UUID;
 
 @ToString(of = {"uuid"})
@@ -54,7 +59,6 @@ public class User extends PermissionHolder implements Identifiable<UserIdentifie
      * The last known username of a player
      */
     @Getter
-    @Setter
     private String name;
 
     /**
@@ -91,6 +95,15 @@ public class User extends PermissionHolder implements Identifiable<UserIdentifie
         this.name = name;
     }
 
+    public void setName(String name) {
+        String previous = this.name;
+        this.name = name;
+
+        if (previous == null ? name != null : !previous.equals(name)) {
+            getPlugin().getUserManager().onRename(this, previous);
+        }
+    }
+
     @Override
     public UserIdentifier getId() {
         return UserIdentifier.of(uuid, name);
@@ -106,6 +119,15 @@ public class User extends PermissionHolder implements Identifiable<UserIdentifie
         return UserReference.of(getId());
     }
 
+    /**
+     * Gets a copy of the users stored data, used to tell whether reloading the user changed anything.
+     *
+     * @return the users nodes and primary group
+     */
+    public Map.Entry<ImmutableSet<Node>, String> getDataSnapshot() {
+        return Maps.immutableEntry(ImmutableSet.copyOf(getNodes()), primaryGroup);
+    }
+
     /**
      * Sets up the UserData cache
      * Blocking call.
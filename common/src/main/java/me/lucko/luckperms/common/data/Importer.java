@@ -39,6 +39,11 @@ import me.lucko.luckperms.common.constants.Permission;
 
 import io.github.mkremins.fanciful.FancyMessage;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -83,6 +88,32 @@ public class Importer {
         run();
     }
 
+    /**
+     * Imports a snapshot written by the export command, streaming the file rather than reading it all at once.
+     */
+    public void startSnapshot(Sender executor, Path file) {
+        long startTime = System.currentTimeMillis();
+        Message.IMPORT_START.send(executor);
+
+        try (BufferedReader reader = Files.newBufferedReader(file, Charset.defaultCharset())) {
+            int errors = new SnapshotImporter(commandManager.getPlugin()).run(reader);
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+            if (errors == 0) {
+                Message.IMPORT_END_COMPLETE.send(executor, seconds);
+            } else if (errors == 1) {
+                Message.IMPORT_END_COMPLETE_ERR_SIN.send(executor, seconds, errors);
+            } else {
+                Message.IMPORT_END_COMPLETE_ERR.send(executor, seconds, errors);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Message.IMPORT_LOG_FAILURE.send(executor);
+        } finally {
+            cleanup();
+        }
+    }
+
     private void cleanup() {
         executor = null;
         commands = null;
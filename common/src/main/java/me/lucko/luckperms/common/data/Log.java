@@ -27,7 +27,9 @@ import lombok.Getter;
 import com.google.common.collect.ImmutableSortedSet;
 
 import me.lucko.luckperms.api.LogEntry;
+import me.lucko.luckperms.common.storage.Storage;
 
+import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -71,6 +73,53 @@ public class Log {
         return out;
     }
 
+    /**
+     * Gets a page of the entries matching a query, reading only that page from the storage.
+     *
+     * <p>Like the other pages in this class, entries are numbered from the oldest, so the last page holds the
+     * most recent entries.</p>
+     *
+     * @param storage the storage to query
+     * @param query the query to match entries against
+     * @param total the number of entries matching the query, as given by {@link Storage#countLog(LogQuery)}
+     * @param pageNo the page to read
+     * @return the entries on the page, or null if they couldn't be read
+     */
+    public static SortedMap<Integer, LogEntry> getPage(Storage storage, LogQuery query, int total, int pageNo) {
+        if (pageNo < 1) {
+            throw new IllegalArgumentException("pageNo cannot be less than 1: " + pageNo);
+        }
+
+        int first = ((pageNo - 1) * PAGE_ENTRIES) + 1;
+        int last = Math.min(pageNo * PAGE_ENTRIES, total);
+        if (first > last) {
+            throw new IllegalStateException("Log does not contain that many entries. " +
+                    "Requested: " + first + ", Log Count: " + total);
+        }
+
+        // read from whichever end of the log is closer, so the first and last pages are read without an offset
+        int fromOldest = first - 1;
+        int fromNewest = total - last;
+        boolean oldestFirst = fromOldest < fromNewest;
+
+        LogQuery pageQuery = query.toBuilder().oldestFirst(oldestFirst).build();
+        LogPage page = storage.queryLog(pageQuery, oldestFirst ? fromOldest : fromNewest, (last - first) + 1).join();
+        if (page == null) {
+            return null;
+        }
+
+        final SortedMap<Integer, LogEntry> out = new TreeMap<>();
+        int index = oldestFirst ? first : last;
+        for (LogEntry e : page.getEntries().values()) {
+            out.put(oldestFirst ? index++ : index--, e);
+        }
+        return out;
+    }
+
+    public static int getMaxPages(int total) {
+        return getMaxPages(total, PAGE_ENTRIES);
+    }
+
     private static int getMaxPages(int size, int entries) {
         return (int) Math.ceil((double) size / entries);
     }
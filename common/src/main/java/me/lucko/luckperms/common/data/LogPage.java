@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+
+import me.lucko.luckperms.api.LogEntry;
+
+import java.util.Map;
+
+/**
+ * A page of entries read from the action log by a {@link LogQuery}, keyed by their position in the log.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class LogPage {
+
+    // in the order they were read
+    private final ImmutableMap<LogQuery.Position, LogEntry> entries;
+
+    /**
+     * Gets the position of the last entry on this page, which the next page should be read from.
+     *
+     * @return the position, or null if the page is empty
+     */
+    public LogQuery.Position getEnd() {
+        return entries.isEmpty() ? null : Iterables.getLast(entries.keySet());
+    }
+
+    /**
+     * Gets a part of this page.
+     *
+     * @param offset the number of entries to skip
+     * @param limit the maximum number of entries to include
+     * @return the new page
+     */
+    public LogPage slice(int offset, int limit) {
+        ImmutableMap.Builder<LogQuery.Position, LogEntry> builder = ImmutableMap.builder();
+        for (Map.Entry<LogQuery.Position, LogEntry> e : Iterables.limit(Iterables.skip(entries.entrySet(), offset), limit)) {
+            builder.put(e);
+        }
+        return new LogPage(builder.build());
+    }
+}
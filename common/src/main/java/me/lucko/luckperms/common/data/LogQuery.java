@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.data;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import me.lucko.luckperms.api.LogEntry;
+
+import java.util.UUID;
+
+/**
+ * A filter over the action log, which storage backings can push down into their own queries.
+ *
+ * Every criteria is optional. Time bounds are in unix seconds, with {@link #getBefore()} being exclusive.
+ *
+ * Matching entries are read newest first, unless {@link #isOldestFirst()}. To read the log a page at a time,
+ * pass the {@link LogPage#getEnd() end} of one page as the {@link #getFrom() from} position of the next.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class LogQuery {
+    private static final LogQuery ALL = builder().build();
+
+    public static LogQuery all() {
+        return ALL;
+    }
+
+    public static LogQuery byActor(UUID actor) {
+        return builder().actor(actor).build();
+    }
+
+    public static LogQuery userHistory(UUID uuid) {
+        return builder().type('U').acted(uuid).build();
+    }
+
+    public static LogQuery groupHistory(String name) {
+        return builder().type('G').actedName(name).build();
+    }
+
+    public static LogQuery trackHistory(String name) {
+        return builder().type('T').actedName(name).build();
+    }
+
+    public static LogQuery search(String query) {
+        return builder().search(query).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final UUID actor;
+    private final UUID acted;
+    private final String actedName;
+    private final Character type;
+    private final long after;
+    private final long before;
+    private final String search;
+    private final Position from;
+    private final boolean oldestFirst;
+
+    public boolean isUnfiltered() {
+        return this.equals(ALL);
+    }
+
+    public boolean matches(LogEntry entry) {
+        return (actor == null || actor.equals(entry.getActor())) &&
+                (acted == null || acted.equals(entry.getActed())) &&
+                (actedName == null || actedName.equals(entry.getActedName())) &&
+                (type == null || type == entry.getType()) &&
+                entry.getTimestamp() >= after &&
+                entry.getTimestamp() < before &&
+                (search == null || entry.matchesSearch(search));
+    }
+
+    public Builder toBuilder() {
+        return new Builder().actor(actor).acted(acted).actedName(actedName).type(type).after(after).before(before)
+                .search(search).from(from).oldestFirst(oldestFirst);
+    }
+
+    /**
+     * The position of an entry in the action log. Entries are ordered by their timestamp, and then by the id the
+     * storage gave them, so entries logged within the same second still have distinct positions.
+     */
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    @AllArgsConstructor(staticName = "of")
+    public static final class Position {
+        private final long time;
+        private final String id;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+        private UUID actor = null;
+        private UUID acted = null;
+        private String actedName = null;
+        private Character type = null;
+        private long after = 0L;
+        private long before = Long.MAX_VALUE;
+        private String search = null;
+        private Position from = null;
+        private boolean oldestFirst = false;
+
+        public Builder actor(UUID actor) {
+            this.actor = actor;
+            return this;
+        }
+
+        public Builder acted(UUID acted) {
+            this.acted = acted;
+            return this;
+        }
+
+        public Builder actedName(String actedName) {
+            this.actedName = actedName;
+            return this;
+        }
+
+        public Builder type(Character type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder after(long after) {
+            this.after = after;
+            return this;
+        }
+
+        public Builder before(long before) {
+            this.before = before;
+            return this;
+        }
+
+        public Builder search(String search) {
+            this.search = search;
+            return this;
+        }
+
+        /**
+         * Only match entries after the given position, in the order the entries are read.
+         *
+         * @param from the exclusive position to read from, or null to read from the start
+         * @return the builder
+         */
+        public Builder from(Position from) {
+            this.from = from;
+            return this;
+        }
+
+        public Builder oldestFirst(boolean oldestFirst) {
+            this.oldestFirst = oldestFirst;
+            return this;
+        }
+
+        public LogQuery build() {
+            return new LogQuery(actor, acted, actedName, type, after, before, search, from, oldestFirst);
+        }
+    }
+
+}
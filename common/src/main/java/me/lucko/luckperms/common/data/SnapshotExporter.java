@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.data;
+
+import lombok.RequiredArgsConstructor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import me.lucko.luckperms.api.Logger;
+import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.UserIdentifier;
+import me.lucko.luckperms.common.core.model.Group;
+import me.lucko.luckperms.common.core.model.Track;
+import me.lucko.luckperms.common.core.model.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a snapshot of all groups, tracks and users to a file, one JSON object per line.
+ *
+ * Users are read from the storage in batches, with a few batches loading at once.
+ */
+@RequiredArgsConstructor
+public class SnapshotExporter {
+    static final int BATCH_SIZE = 1000;
+    static final int MAX_BATCHES_IN_FLIGHT = 4;
+
+    private final LuckPermsPlugin plugin;
+    private final Gson gson = new Gson();
+
+    public void export(BufferedWriter writer) throws IOException {
+        final Logger log = plugin.getLog();
+        log.info("Export: Starting snapshot export.");
+
+        log.info("Export: Exporting all groups.");
+        int groupCount = 0;
+        for (Group group : plugin.getGroupManager().getAll().values()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("type", "group");
+            object.addProperty("name", group.getName());
+            object.add("nodes", serializeNodes(group.getNodes()));
+            write(writer, object);
+            groupCount++;
+        }
+        log.info("Export: Exported " + groupCount + " groups.");
+
+        log.info("Export: Exporting all tracks.");
+        int trackCount = 0;
+        for (Track track : plugin.getTrackManager().getAll().values()) {
+            JsonArray groups = new JsonArray();
+            for (String group : track.getGroups()) {
+                groups.add(new JsonPrimitive(group));
+            }
+
+            JsonObject object = new JsonObject();
+            object.addProperty("type", "track");
+            object.addProperty("name", track.getName());
+            object.add("groups", groups);
+            write(writer, object);
+            trackCount++;
+        }
+        log.info("Export: Exported " + trackCount + " tracks.");
+
+        log.info("Export: Exporting all users. Finding a list of unique users to export.");
+        Set<UUID> uuids = plugin.getStorage().getUniqueUsers().join();
+        log.info("Export: Found " + uuids.size() + " unique users to export.");
+
+        Deque<Batch> inFlight = new ArrayDeque<>();
+        List<UUID> current = new ArrayList<>(BATCH_SIZE);
+        int userCount = 0;
+
+        for (UUID uuid : uuids) {
+            current.add(uuid);
+            if (current.size() < BATCH_SIZE) {
+                continue;
+            }
+
+            inFlight.add(load(current));
+            current = new ArrayList<>(BATCH_SIZE);
+
+            if (inFlight.size() >= MAX_BATCHES_IN_FLIGHT) {
+                userCount += writeBatch(writer, inFlight.poll());
+                log.info("Export: Exported " + userCount + "/" + uuids.size() + " users.");
+            }
+        }
+
+        if (!current.isEmpty()) {
+            inFlight.add(load(current));
+        }
+
+        while (!inFlight.isEmpty()) {
+            userCount += writeBatch(writer, inFlight.poll());
+        }
+        log.info("Export: Exported " + userCount + " users.");
+
+        writer.flush();
+    }
+
+    private Batch load(List<UUID> uuids) {
+        List<UserIdentifier> identifiers = uuids.stream()
+                .map(uuid -> UserIdentifier.of(uuid, "null"))
+                .collect(Collectors.toList());
+
+        return new Batch(uuids, plugin.getStorage().loadUsers(identifiers));
+    }
+
+    private int writeBatch(BufferedWriter writer, Batch batch) throws IOException {
+        batch.future.join();
+
+        int count = 0;
+        for (UUID uuid : batch.uuids) {
+            User user = plugin.getUserManager().get(uuid);
+            if (user == null) {
+                plugin.getLog().warn("Export: Unable to load user " + uuid + ", skipping.");
+                continue;
+            }
+
+            JsonObject object = new JsonObject();
+            object.addProperty("type", "user");
+            object.addProperty("uuid", uuid.toString());
+            object.addProperty("name", user.getName());
+            object.addProperty("primaryGroup", user.getPrimaryGroup());
+            object.add("nodes", serializeNodes(user.getNodes()));
+            write(writer, object);
+            count++;
+
+            plugin.getUserManager().cleanup(user);
+        }
+        return count;
+    }
+
+    private void write(BufferedWriter writer, JsonObject object) throws IOException {
+        writer.write(gson.toJson(object));
+        writer.newLine();
+    }
+
+    private static JsonObject serializeNodes(Set<Node> nodes) {
+        JsonObject object = new JsonObject();
+        for (Node node : nodes) {
+            object.addProperty(node.toSerializedNode(), node.getValue());
+        }
+        return object;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Batch {
+        private final List<UUID> uuids;
+        private final CompletableFuture<Boolean> future;
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.data;
+
+import lombok.RequiredArgsConstructor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.UserIdentifier;
+import me.lucko.luckperms.common.core.model.Group;
+import me.lucko.luckperms.common.core.model.Track;
+import me.lucko.luckperms.common.core.model.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads a snapshot written by {@link SnapshotExporter}, line by line.
+ *
+ * Users are saved in batches, with a few batches being written at once.
+ */
+@RequiredArgsConstructor
+public class SnapshotImporter {
+    private final LuckPermsPlugin plugin;
+    private final Gson gson = new Gson();
+
+    private final List<Group> groups = new ArrayList<>();
+    private final Deque<Batch> inFlight = new ArrayDeque<>();
+    private List<User> users = new ArrayList<>(SnapshotExporter.BATCH_SIZE);
+
+    private int userCount = 0;
+    private int errors = 0;
+
+    /**
+     * Imports every entry in the snapshot.
+     *
+     * @param reader the reader to read the snapshot from
+     * @return the number of errors encountered
+     * @throws IOException if the snapshot could not be read
+     */
+    public int run(BufferedReader reader) throws IOException {
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            try {
+                JsonObject object = gson.fromJson(line, JsonObject.class);
+                String type = object.get("type").getAsString();
+                switch (type) {
+                    case "group":
+                        importGroup(object);
+                        break;
+                    case "track":
+                        importTrack(object);
+                        break;
+                    case "user":
+                        importUser(object);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown type " + type);
+                }
+            } catch (Exception e) {
+                errors++;
+                plugin.getLog().warn("Import: Unable to import line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        if (!groups.isEmpty() && !plugin.getStorage().saveGroups(groups).join()) {
+            errors++;
+        }
+
+        if (!users.isEmpty()) {
+            submit();
+        }
+        while (!inFlight.isEmpty()) {
+            complete(inFlight.poll());
+        }
+
+        plugin.getLog().info("Import: Imported " + groups.size() + " groups and " + userCount + " users.");
+        return errors;
+    }
+
+    private void importGroup(JsonObject object) {
+        String name = object.get("name").getAsString().toLowerCase();
+        if (!plugin.getStorage().createAndLoadGroup(name).join()) {
+            throw new IllegalStateException("unable to create group " + name);
+        }
+
+        Group group = plugin.getGroupManager().getIfLoaded(name);
+        group.setNodes(deserializeNodes(object.getAsJsonObject("nodes")));
+        groups.add(group);
+    }
+
+    private void importTrack(JsonObject object) {
+        String name = object.get("name").getAsString().toLowerCase();
+        if (!plugin.getStorage().createAndLoadTrack(name).join()) {
+            throw new IllegalStateException("unable to create track " + name);
+        }
+
+        List<String> trackGroups = new ArrayList<>();
+        for (JsonElement element : object.getAsJsonArray("groups")) {
+            trackGroups.add(element.getAsString());
+        }
+
+        Track track = plugin.getTrackManager().getIfLoaded(name);
+        track.setGroups(trackGroups);
+        if (!plugin.getStorage().force().saveTrack(track).join()) {
+            throw new IllegalStateException("unable to save track " + name);
+        }
+    }
+
+    private void importUser(JsonObject object) {
+        UUID uuid = UUID.fromString(object.get("uuid").getAsString());
+        JsonElement name = object.get("name");
+
+        User user = plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, name == null || name.isJsonNull() ? null : name.getAsString()));
+        user.setNodes(deserializeNodes(object.getAsJsonObject("nodes")));
+        user.setPrimaryGroup(object.get("primaryGroup").getAsString());
+        users.add(user);
+
+        if (users.size() >= SnapshotExporter.BATCH_SIZE) {
+            submit();
+        }
+    }
+
+    private void submit() {
+        inFlight.add(new Batch(users, plugin.getStorage().saveUsers(users)));
+        users = new ArrayList<>(SnapshotExporter.BATCH_SIZE);
+
+        if (inFlight.size() >= SnapshotExporter.MAX_BATCHES_IN_FLIGHT) {
+            complete(inFlight.poll());
+            plugin.getLog().info("Import: Imported " + userCount + " users.");
+        }
+    }
+
+    private void complete(Batch batch) {
+        if (!batch.future.join()) {
+            errors++;
+        }
+
+        for (User user : batch.users) {
+            if (user.getUserData() != null) {
+                user.getRefreshBuffer().request();
+            }
+            plugin.getUserManager().cleanup(user);
+        }
+        userCount += batch.users.size();
+    }
+
+    private static Map<String, Boolean> deserializeNodes(JsonObject object) {
+        Map<String, Boolean> nodes = new HashMap<>();
+        for (Map.Entry<String, JsonElement> e : object.entrySet()) {
+            nodes.put(e.getKey(), e.getValue().getAsBoolean());
+        }
+        return nodes;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Batch {
+        private final List<User> users;
+        private final CompletableFuture<Boolean> future;
+    }
+
+}
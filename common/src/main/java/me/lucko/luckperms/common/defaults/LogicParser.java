@@ -22,51 +22,194 @@
 
 package me.lucko.luckperms.common.defaults;
 
+import lombok.AllArgsConstructor;
+
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.common.core.NodeFactory;
 import me.lucko.luckperms.common.core.model.PermissionHolder;
 
-import java.util.function.Function;
-import java.util.regex.Pattern;
-
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-
+/**
+ * Compiles the boolean expressions used by default assignment rules.
+ *
+ * <p>Expressions are made up of permission checks written as &lt;node&gt;, the literals true and false, the operators
+ * ! (not), &amp; (and) and | (or), and parentheses. ! binds tighter than &amp;, which binds tighter than |.</p>
+ */
 public class LogicParser {
-    private static final ScriptEngine SCRIPT_ENGINE = new ScriptEngineManager().getEngineByName("nashorn");
+
+    /**
+     * Compiles an expression
+     *
+     * @param s the expression
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static Expression compile(String s) throws IllegalArgumentException {
+        Parser parser = new Parser(s);
+        Expression expression = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.pos != s.length()) {
+            throw parser.error("unexpected character '" + s.charAt(parser.pos) + "'");
+        }
+        return expression;
+    }
 
     public static boolean parse(String s, PermissionHolder holder, Tristate tristate) throws IllegalArgumentException {
-        try {
-            String expression = generateExpression(s, s1 -> holder.hasPermission(NodeFactory.fromSerialisedNode(s1, true)) == tristate);
-            String result = SCRIPT_ENGINE.eval(expression).toString();
+        return compile(s).evaluate(holder, tristate);
+    }
+
+    public interface Expression {
+
+        /**
+         * Evaluates the expression against a holder
+         *
+         * @param holder the holder to check
+         * @param tristate the result each permission check in the expression should match
+         * @return the result of the expression
+         */
+        boolean evaluate(PermissionHolder holder, Tristate tristate);
+
+    }
+
+    private static final class Parser {
+        private final String input;
+        private int pos = 0;
 
-            if (!result.equals("true") && !result.equals("false")) {
-                throw new IllegalArgumentException();
+        private Parser(String input) {
+            this.input = input;
+        }
+
+        // or := and ('|' and)*
+        private Expression parseOr() {
+            Expression left = parseAnd();
+            while (accept('|')) {
+                left = new Or(left, parseAnd());
             }
+            return left;
+        }
 
-            return Boolean.parseBoolean(result);
+        // and := unary ('&' unary)*
+        private Expression parseAnd() {
+            Expression left = parseUnary();
+            while (accept('&')) {
+                left = new And(left, parseUnary());
+            }
+            return left;
+        }
+
+        // unary := '!' unary | '(' or ')' | '<' node '>' | 'true' | 'false'
+        private Expression parseUnary() {
+            skipWhitespace();
+            if (pos >= input.length()) {
+                throw error("unexpected end of expression");
+            }
+
+            char c = input.charAt(pos);
+            if (c == '!') {
+                pos++;
+                return new Not(parseUnary());
+            }
+
+            if (c == '(') {
+                pos++;
+                Expression inner = parseOr();
+                if (!accept(')')) {
+                    throw error("expected ')'");
+                }
+                return inner;
+            }
+
+            if (c == '<') {
+                int end = input.indexOf('>', pos);
+                if (end == -1) {
+                    throw error("unclosed '<'");
+                }
+                String node = input.substring(pos + 1, end);
+                pos = end + 1;
+                return new Check(NodeFactory.fromSerialisedNode(node, true));
+            }
 
-        } catch (Throwable t) {
-            throw new IllegalArgumentException(s, t);
+            if (input.startsWith("true", pos)) {
+                pos += 4;
+                return Constant.TRUE;
+            }
+
+            if (input.startsWith("false", pos)) {
+                pos += 5;
+                return Constant.FALSE;
+            }
+
+            throw error("unexpected character '" + c + "'");
         }
-    }
 
-    private static String generateExpression(String input, Function<String, Boolean> checker) {
-        while (true) {
-            int i = input.indexOf("<");
-            int i2 = input.indexOf(">");
-            if (i == -1 || i2 == -1) {
-                break;
+        private boolean accept(char c) {
+            skipWhitespace();
+            if (pos < input.length() && input.charAt(pos) == c) {
+                pos++;
+                return true;
             }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid expression '" + input + "' at position " + pos + ": " + message);
+        }
+    }
+
+    private enum Constant implements Expression {
+        TRUE, FALSE;
 
-            String match = input.substring(i, i2 + 1);
-            String matchContent = match.substring(1, match.length() - 1);
+        @Override
+        public boolean evaluate(PermissionHolder holder, Tristate tristate) {
+            return this == TRUE;
+        }
+    }
 
-            String matchReplacement = ("" + checker.apply(matchContent)).toLowerCase();
+    @AllArgsConstructor
+    private static final class Check implements Expression {
+        private final Node node;
 
-            input = input.replaceFirst(Pattern.quote(match), matchReplacement);
+        @Override
+        public boolean evaluate(PermissionHolder holder, Tristate tristate) {
+            return holder.hasPermission(node) == tristate;
         }
+    }
+
+    @AllArgsConstructor
+    private static final class Not implements Expression {
+        private final Expression expression;
+
+        @Override
+        public boolean evaluate(PermissionHolder holder, Tristate tristate) {
+            return !expression.evaluate(holder, tristate);
+        }
+    }
 
-        return input.replace("&", "&&").replace("|", "||");
+    @AllArgsConstructor
+    private static final class And implements Expression {
+        private final Expression left;
+        private final Expression right;
+
+        @Override
+        public boolean evaluate(PermissionHolder holder, Tristate tristate) {
+            return left.evaluate(holder, tristate) && right.evaluate(holder, tristate);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Or implements Expression {
+        private final Expression left;
+        private final Expression right;
+
+        @Override
+        public boolean evaluate(PermissionHolder holder, Tristate tristate) {
+            return left.evaluate(holder, tristate) || right.evaluate(holder, tristate);
+        }
     }
 }
@@ -22,7 +22,7 @@
 
 package me.lucko.luckperms.common.defaults;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
 
@@ -35,9 +35,10 @@ import me.lucko.luckperms.exceptions.ObjectLacksException;
 import java.util.List;
 
 @Getter
-@ToString
-@AllArgsConstructor
+@ToString(exclude = {"hasTrue", "hasFalse", "lacks"})
 public class Rule {
+    private static final LogicParser.Expression INVALID = (holder, tristate) -> false;
+
     private final String hasTrueExpression;
     private final String hasFalseExpression;
     private final String lacksExpression;
@@ -46,47 +47,55 @@ public class Rule {
     private final List<String> toTake;
     private final String setPrimaryGroup;
 
+    // compiled forms of the expressions above, or null if the expression is not set
+    @Getter(AccessLevel.NONE)
+    private final LogicParser.Expression hasTrue;
+    @Getter(AccessLevel.NONE)
+    private final LogicParser.Expression hasFalse;
+    @Getter(AccessLevel.NONE)
+    private final LogicParser.Expression lacks;
+
+    public Rule(String hasTrueExpression, String hasFalseExpression, String lacksExpression, List<String> toGive, List<String> toTake, String setPrimaryGroup) {
+        this.hasTrueExpression = hasTrueExpression;
+        this.hasFalseExpression = hasFalseExpression;
+        this.lacksExpression = lacksExpression;
+        this.toGive = toGive;
+        this.toTake = toTake;
+        this.setPrimaryGroup = setPrimaryGroup;
+
+        this.hasTrue = compile(hasTrueExpression);
+        this.hasFalse = compile(hasFalseExpression);
+        this.lacks = compile(lacksExpression);
+    }
+
+    private static LogicParser.Expression compile(String expression) {
+        if (expression == null) {
+            return null;
+        }
+
+        try {
+            return LogicParser.compile(expression);
+        } catch (IllegalArgumentException e) {
+            // Couldn't parse. The rule will never apply.
+            e.printStackTrace();
+            return INVALID;
+        }
+    }
+
     public boolean apply(User user) {
-        if (hasTrueExpression != null) {
-            try {
-                boolean b = LogicParser.parse(hasTrueExpression, user, Tristate.TRUE);
-                if (!b) {
-                    // The holder does not meet this requirement
-                    return false;
-                }
-            } catch (IllegalArgumentException e) {
-                // Couldn't parse
-                e.printStackTrace();
-                return false;
-            }
+        if (hasTrue != null && !hasTrue.evaluate(user, Tristate.TRUE)) {
+            // The holder does not meet this requirement
+            return false;
         }
 
-        if (hasFalseExpression != null) {
-            try {
-                boolean b = LogicParser.parse(hasFalseExpression, user, Tristate.FALSE);
-                if (!b) {
-                    // The holder does not meet this requirement
-                    return false;
-                }
-            } catch (IllegalArgumentException e) {
-                // Couldn't parse
-                e.printStackTrace();
-                return false;
-            }
+        if (hasFalse != null && !hasFalse.evaluate(user, Tristate.FALSE)) {
+            // The holder does not meet this requirement
+            return false;
         }
 
-        if (lacksExpression != null) {
-            try {
-                boolean b = LogicParser.parse(lacksExpression, user, Tristate.UNDEFINED);
-                if (!b) {
-                    // The holder does not meet this requirement
-                    return false;
-                }
-            } catch (IllegalArgumentException e) {
-                // Couldn't parse
-                e.printStackTrace();
-                return false;
-            }
+        if (lacks != null && !lacks.evaluate(user, Tristate.UNDEFINED)) {
+            // The holder does not meet this requirement
+            return false;
         }
 
         // The holder meets all of the requirements of this rule.
@@ -25,12 +25,12 @@ package me.lucko.luckperms.common.managers;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import me.lucko.luckperms.common.utils.Identifiable;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -56,7 +56,7 @@ public abstract class AbstractManager<I, T extends Identifiable<I>> implements M
 
     @Override
     public Map<I, T> getAll() {
-        return ImmutableMap.copyOf(objects.asMap());
+        return Collections.unmodifiableMap(objects.asMap());
     }
 
     @Override
@@ -36,7 +36,7 @@ import java.util.function.Function;
 public interface Manager<I, T extends Identifiable<I>> extends Function<I, T> {
 
     /**
-     * Gets a map containing all cached instances held by this manager.
+     * Gets an unmodifiable, live view of all cached instances held by this manager.
      *
      * @return all instances held in this manager
      */
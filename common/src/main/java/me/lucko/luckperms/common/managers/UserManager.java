@@ -46,6 +46,14 @@ public interface UserManager extends Manager<UserIdentifier, User> {
      */
     User get(UUID uuid);
 
+    /**
+     * Updates the username index after a user's name has changed
+     *
+     * @param user the user
+     * @param previous the user's previous name, or null if the user had no name
+     */
+    void onRename(User user, String previous);
+
     /**
      * Gives the user the default group if necessary.
      *
@@ -25,6 +25,7 @@ package me.lucko.luckperms.common.managers.impl;
 import lombok.RequiredArgsConstructor;
 
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.caching.handlers.HolderType;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.managers.AbstractManager;
 import me.lucko.luckperms.common.managers.GroupManager;
@@ -38,4 +39,18 @@ public class GenericGroupManager extends AbstractManager<String, Group> implemen
         return new Group(name, plugin);
     }
 
+    @Override
+    public void unload(Group group) {
+        super.unload(group);
+        if (group != null) {
+            plugin.getExpiryIndex().unschedule(group.toReference());
+        }
+    }
+
+    @Override
+    public void unloadAll() {
+        super.unloadAll();
+        plugin.getExpiryIndex().unscheduleAll(HolderType.GROUP);
+    }
+
 }
\ No newline at end of file
@@ -26,14 +26,19 @@ import lombok.RequiredArgsConstructor;
 
 import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.caching.handlers.HolderType;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.managers.AbstractManager;
 import me.lucko.luckperms.common.managers.UserManager;
 import me.lucko.luckperms.exceptions.ObjectAlreadyHasException;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 public class GenericUserManager extends AbstractManager<UserIdentifier, User> implements UserManager {
@@ -102,21 +107,56 @@ public class GenericUserManager extends AbstractManager<UserIdentifier, User> im
 
     private final LuckPermsPlugin plugin;
 
+    /**
+     * Lowercase username --> loaded user
+     */
+    private final Map<String, User> usernames = new ConcurrentHashMap<>();
+
     @Override
     public User apply(UserIdentifier id) {
-        return id.getUsername() == null ?
+        User user = id.getUsername() == null ?
                 new User(id.getUuid(), plugin) :
                 new User(id.getUuid(), id.getUsername(), plugin);
+
+        if (user.getName() != null) {
+            usernames.put(user.getName().toLowerCase(), user);
+        }
+        return user;
     }
 
     @Override
     public User getByUsername(String name) {
-        for (User user : getAll().values()) {
-            if (user.getName().equalsIgnoreCase(name)) {
-                return user;
+        return usernames.get(name.toLowerCase());
+    }
+
+    @Override
+    public void onRename(User user, String previous) {
+        if (previous != null) {
+            usernames.remove(previous.toLowerCase(), user);
+        }
+
+        // don't index users which aren't (or are no longer) held by this manager
+        if (user.getName() != null && getIfLoaded(user.getId()) == user) {
+            usernames.put(user.getName().toLowerCase(), user);
+        }
+    }
+
+    @Override
+    public void unload(User user) {
+        super.unload(user);
+        if (user != null) {
+            plugin.getExpiryIndex().unschedule(user.toReference());
+            if (user.getName() != null) {
+                usernames.remove(user.getName().toLowerCase(), user);
             }
         }
-        return null;
+    }
+
+    @Override
+    public void unloadAll() {
+        super.unloadAll();
+        usernames.clear();
+        plugin.getExpiryIndex().unscheduleAll(HolderType.USER);
     }
 
     @Override
@@ -141,10 +181,10 @@ public class GenericUserManager extends AbstractManager<UserIdentifier, User> im
         plugin.doSync(() -> {
             Set<UUID> players = plugin.getOnlinePlayers();
             plugin.doAsync(() -> {
-                for (UUID uuid : players) {
-                    UUID internal = plugin.getUuidCache().getUUID(uuid);
-                    plugin.getStorage().loadUser(internal, "null").join();
-                }
+                List<UserIdentifier> users = players.stream()
+                        .map(uuid -> UserIdentifier.of(plugin.getUuidCache().getUUID(uuid), "null"))
+                        .collect(Collectors.toList());
+                plugin.getStorage().loadUsers(users).join();
             });
         });
     }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import lombok.Getter;
+
+import com.google.common.cache.CacheBuilder;
+
+import me.lucko.luckperms.api.MessagingService;
+import me.lucko.luckperms.common.LuckPermsPlugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Base for services which push/receive changes to/from other servers.
+ *
+ * <p>Outgoing messages are queued and sent in batches by a single async task. Messages naming data which is
+ * already waiting to be sent are dropped, and if too many messages build up, the queue is replaced by one
+ * message telling other servers to do a full sync.</p>
+ */
+public abstract class AbstractMessagingService implements MessagingService {
+
+    // The maximum number of messages waiting to be sent before they're replaced by a full sync
+    private static final int MAX_QUEUED_MESSAGES = 1000;
+
+    // The maximum number of messages passed to #sendMessages at once
+    private static final int MAX_BATCH_SIZE = 100;
+
+    @Getter
+    protected final LuckPermsPlugin plugin;
+
+    @Getter
+    private final String name;
+
+    // Queued messages, keyed by the data they refer to
+    private final Map<String, UpdateMessage> queue = new LinkedHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    // The ids of messages sent or received recently
+    private final Set<UUID> receivedMessages = Collections.newSetFromMap(CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .<UUID, Boolean>build()
+            .asMap());
+
+    protected AbstractMessagingService(LuckPermsPlugin plugin, String name) {
+        this.plugin = plugin;
+        this.name = name;
+    }
+
+    /**
+     * Sends a batch of serialized messages to other servers.
+     *
+     * @param messages the messages to send
+     * @return true if the messages were sent
+     */
+    protected abstract boolean sendMessages(List<String> messages);
+
+    public abstract void close();
+
+    @Override
+    public void pushUpdate() {
+        push(UpdateMessage.Type.UPDATE, null);
+    }
+
+    public void pushUserUpdate(UUID uuid) {
+        push(UpdateMessage.Type.USER, uuid.toString());
+    }
+
+    public void pushGroupUpdate(String name) {
+        push(UpdateMessage.Type.GROUP, name);
+    }
+
+    public void pushTrackUpdate(String name) {
+        push(UpdateMessage.Type.TRACK, name);
+    }
+
+    private void push(UpdateMessage.Type type, String target) {
+        String key = target == null ? type.name() : type.name() + ":" + target;
+
+        synchronized (queue) {
+            if (queue.containsKey(key) || queue.containsKey(UpdateMessage.Type.UPDATE.name())) {
+                return;
+            }
+
+            if (type == UpdateMessage.Type.UPDATE || queue.size() >= MAX_QUEUED_MESSAGES) {
+                // a full sync covers everything else waiting to be sent
+                queue.clear();
+                type = UpdateMessage.Type.UPDATE;
+                key = type.name();
+                target = null;
+            }
+
+            queue.put(key, new UpdateMessage(type, generateId(), target));
+        }
+
+        if (flushing.compareAndSet(false, true)) {
+            plugin.doAsync(this::flush);
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            List<UpdateMessage> batch = nextBatch();
+            if (batch.isEmpty()) {
+                flushing.set(false);
+
+                // a message may have been queued after the queue was found to be empty, but before the flag was cleared
+                synchronized (queue) {
+                    if (queue.isEmpty() || !flushing.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            send(batch);
+        }
+    }
+
+    /**
+     * Sends all queued messages on the calling thread. Used when the service is closed, so queued
+     * changes aren't lost.
+     */
+    protected void flushQueue() {
+        List<UpdateMessage> batch;
+        while (!(batch = nextBatch()).isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private List<UpdateMessage> nextBatch() {
+        List<UpdateMessage> batch = new ArrayList<>();
+        synchronized (queue) {
+            Iterator<UpdateMessage> it = queue.values().iterator();
+            while (it.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                batch.add(it.next());
+                it.remove();
+            }
+        }
+        return batch;
+    }
+
+    private void send(List<UpdateMessage> batch) {
+        List<String> messages = new ArrayList<>(batch.size());
+        for (UpdateMessage message : batch) {
+            messages.add(message.serialize());
+        }
+
+        plugin.getLog().info("[" + name + " Messaging] Sending " + messages.size() + " update ping(s): " + String.join(", ", messages));
+        try {
+            if (!sendMessages(messages)) {
+                plugin.getLog().warn("[" + name + " Messaging] Unable to send update pings.");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private UUID generateId() {
+        UUID uuid = UUID.randomUUID();
+        receivedMessages.add(uuid);
+        return uuid;
+    }
+
+    /**
+     * Handles a serialized message received from another server.
+     *
+     * @param msg the message
+     */
+    protected void onMessage(String msg) {
+        UpdateMessage message = UpdateMessage.parse(msg);
+        if (message == null) {
+            return;
+        }
+
+        if (!receivedMessages.add(message.getRequestId())) {
+            return;
+        }
+
+        plugin.getLog().info("[" + name + " Messaging] Received update ping: " + msg);
+        plugin.doAsync(() -> message.apply(plugin));
+    }
+
+    /**
+     * Records a serialized message as received, without applying it.
+     *
+     * @param msg the message
+     */
+    protected void markReceived(String msg) {
+        UpdateMessage message = UpdateMessage.parse(msg);
+        if (message != null) {
+            receivedMessages.add(message.getRequestId());
+        }
+    }
+}
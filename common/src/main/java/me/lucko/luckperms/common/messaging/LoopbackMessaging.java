@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import me.lucko.luckperms.common.LuckPermsPlugin;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Pushes/receives changes to/from other instances running in the same JVM
+ */
+public class LoopbackMessaging extends AbstractMessagingService {
+    private static final Set<LoopbackMessaging> INSTANCES = new CopyOnWriteArraySet<>();
+
+    public LoopbackMessaging(LuckPermsPlugin plugin) {
+        super(plugin, "Loopback");
+    }
+
+    public void init() {
+        INSTANCES.add(this);
+    }
+
+    @Override
+    public void close() {
+        flushQueue();
+        INSTANCES.remove(this);
+    }
+
+    @Override
+    protected boolean sendMessages(List<String> messages) {
+        for (LoopbackMessaging instance : INSTANCES) {
+            if (instance == this) {
+                continue;
+            }
+
+            for (String message : messages) {
+                instance.onMessage(message);
+            }
+        }
+        return true;
+    }
+}
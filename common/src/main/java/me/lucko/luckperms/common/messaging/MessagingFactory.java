@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import lombok.experimental.UtilityClass;
+
+import com.google.common.collect.ImmutableSet;
+
+import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.config.LPConfiguration;
+
+import java.util.Set;
+
+@UtilityClass
+public class MessagingFactory {
+    private static final Set<String> SQL_TYPES = ImmutableSet.of("mysql", "sqlite", "h2");
+
+    // The interval between polls of the messages table, in ticks
+    private static final long SQL_POLL_INTERVAL = 20L;
+
+    /**
+     * Creates and initialises the messaging service set in the configuration
+     *
+     * @param plugin the plugin instance
+     * @return the messaging service, or null if none is used
+     */
+    public static AbstractMessagingService getInstance(LuckPermsPlugin plugin) {
+        LPConfiguration config = plugin.getConfiguration();
+        String type = config.getMessagingService();
+        if (type.equals("none") && config.isRedisEnabled()) {
+            type = "redis";
+        }
+
+        switch (type) {
+            case "none":
+                return null;
+            case "redis":
+                plugin.getLog().info("Loading redis...");
+                RedisMessaging redis = new RedisMessaging(plugin);
+                try {
+                    redis.init(config.getRedisAddress(), config.getRedisPassword());
+                    plugin.getLog().info("Loaded redis successfully...");
+                    return redis;
+                } catch (Exception e) {
+                    plugin.getLog().info("Couldn't load redis...");
+                    e.printStackTrace();
+                    return null;
+                }
+            case "sql":
+                if (config.isSplitStorage() || !SQL_TYPES.contains(config.getStorageMethod().toLowerCase())) {
+                    plugin.getLog().severe("The sql messaging service requires the storage method to be MySQL, SQLite or H2.");
+                    return null;
+                }
+
+                SQLMessaging sql = new SQLMessaging(plugin);
+                sql.init(SQL_POLL_INTERVAL);
+                return sql;
+            case "loopback":
+                LoopbackMessaging loopback = new LoopbackMessaging(plugin);
+                loopback.init();
+                return loopback;
+            default:
+                plugin.getLog().severe("Messaging service '" + type + "' not recognised.");
+                return null;
+        }
+    }
+}
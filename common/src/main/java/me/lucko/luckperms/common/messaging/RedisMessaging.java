@@ -22,32 +22,29 @@
 
 package me.lucko.luckperms.common.messaging;
 
-import lombok.RequiredArgsConstructor;
-
-import me.lucko.luckperms.api.MessagingService;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.UUID;
+import java.util.List;
 
 /**
  * Uses Redis to push/receive changes to/from other servers
  */
-@RequiredArgsConstructor
-public class RedisMessaging implements MessagingService {
+public class RedisMessaging extends AbstractMessagingService {
     private static final String CHANNEL = "luckperms";
 
-    private final LuckPermsPlugin plugin;
     private JedisPool jedisPool;
     private LPSub sub;
 
+    public RedisMessaging(LuckPermsPlugin plugin) {
+        super(plugin, "Redis");
+    }
+
     public void init(String address, String password) {
         String host = address.substring(0, address.indexOf(':'));
         int port = Integer.parseInt(address.substring(address.indexOf(":") + 1));
@@ -58,8 +55,8 @@ public class RedisMessaging implements MessagingService {
             jedisPool = new JedisPool(new JedisPoolConfig(), host, port, 0, password);
         }
 
+        sub = new LPSub();
         plugin.doAsync(() -> {
-            sub = new LPSub(plugin);
             try (Jedis jedis = jedisPool.getResource()) {
                 jedis.subscribe(sub, CHANNEL);
             } catch (Exception e) {
@@ -68,34 +65,27 @@ public class RedisMessaging implements MessagingService {
         });
     }
 
-    public void shutdown() {
+    @Override
+    public void close() {
+        flushQueue();
         sub.unsubscribe();
         jedisPool.destroy();
     }
 
     @Override
-    public void pushUpdate() {
-        plugin.doAsync(() -> {
-            UUID id = sub.generateId();
-            plugin.getLog().info("[Redis Messaging] Sending redis ping with id: " + id.toString());
-            try (Jedis jedis = jedisPool.getResource()) {
-                jedis.publish(CHANNEL, "update:" + id.toString());
-            } catch (Exception e) {
-                e.printStackTrace();
+    protected boolean sendMessages(List<String> messages) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            // each message is still published separately, so older versions can read them
+            Pipeline pipeline = jedis.pipelined();
+            for (String message : messages) {
+                pipeline.publish(CHANNEL, message);
             }
-        });
+            pipeline.sync();
+            return true;
+        }
     }
 
-    @RequiredArgsConstructor
-    private static class LPSub extends JedisPubSub {
-        private final LuckPermsPlugin plugin;
-        private final Set<UUID> receivedMsgs = Collections.synchronizedSet(new HashSet<>());
-
-        public UUID generateId() {
-            UUID uuid = UUID.randomUUID();
-            receivedMsgs.add(uuid);
-            return uuid;
-        }
+    private class LPSub extends JedisPubSub {
 
         @Override
         public void onMessage(String channel, String msg) {
@@ -103,25 +93,7 @@ public class RedisMessaging implements MessagingService {
                 return;
             }
 
-            if (!msg.startsWith("update:")) {
-                return;
-            }
-
-            String requestId = msg.substring("update:".length());
-            UUID uuid;
-            try {
-                uuid = UUID.fromString(requestId);
-            } catch (IllegalArgumentException e) {
-                e.printStackTrace();
-                return;
-            }
-
-            if (!receivedMsgs.add(uuid)) {
-                return;
-            }
-
-            plugin.getLog().info("[Redis Messaging] Received update ping with id: " + uuid.toString());
-            plugin.getUpdateTaskBuffer().request();
+            RedisMessaging.this.onMessage(msg);
         }
     }
 
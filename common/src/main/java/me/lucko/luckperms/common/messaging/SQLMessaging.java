@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import me.lucko.luckperms.common.LuckPermsPlugin;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes/receives changes to/from other servers through a table in the SQL database they share.
+ * Messages are picked up by other servers the next time they poll the table.
+ */
+public class SQLMessaging extends AbstractMessagingService implements Runnable {
+
+    // How long the table can go without being polled before messages may have been removed unread, in milliseconds.
+    // Kept well under the time messages are stored for, to allow for clock differences between servers.
+    private static final long STALE_POLL_TIME = 30000L;
+
+    private final AtomicBoolean polling = new AtomicBoolean(false);
+    private long lastId = -1;
+    private long lastPoll = 0;
+    private volatile boolean closed = false;
+
+    public SQLMessaging(LuckPermsPlugin plugin) {
+        super(plugin, "SQL");
+    }
+
+    /**
+     * Starts polling for messages
+     *
+     * @param interval the interval between polls, in ticks
+     */
+    public void init(long interval) {
+        // messages which were already stored are marked as received, so they aren't applied when read again
+        long id = plugin.getStorage().force().pollMessages(-1, this::markReceived).join();
+        if (id != -1) {
+            lastId = id;
+            lastPoll = System.currentTimeMillis();
+        }
+        plugin.doAsyncRepeating(this, interval);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        flushQueue();
+    }
+
+    @Override
+    protected boolean sendMessages(List<String> messages) {
+        return plugin.getStorage().force().pushMessages(messages).join();
+    }
+
+    @Override
+    protected void markReceived(String msg) {
+        if (msg != null) {
+            super.markReceived(msg);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (closed || !polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            boolean stale = lastPoll != 0 && now - lastPoll > STALE_POLL_TIME;
+
+            final boolean[] missed = {false};
+            long id = plugin.getStorage().force().pollMessages(lastId, msg -> {
+                if (msg == null) {
+                    missed[0] = true;
+                } else {
+                    onMessage(msg);
+                }
+            }).join();
+
+            if (id == -1) {
+                return;
+            }
+
+            lastId = id;
+            lastPoll = now;
+
+            if (stale || missed[0]) {
+                plugin.getLog().warn("[" + getName() + " Messaging] Messages may have been missed since the last poll. Running a full sync.");
+                plugin.getUpdateTaskBuffer().request();
+            }
+        } finally {
+            polling.set(false);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import com.google.common.base.Splitter;
+
+import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.caching.handlers.GroupReference;
+import me.lucko.luckperms.common.caching.handlers.HolderReference;
+import me.lucko.luckperms.common.core.model.User;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A message sent between servers, naming the data which has changed.
+ *
+ * <p>Messages are serialized as <code>type:requestId</code>, followed by <code>:target</code> for every type
+ * except {@link Type#UPDATE}. The bare <code>update:requestId</code> form is the same as the one used by older
+ * versions, which ignore the other types.</p>
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UpdateMessage {
+
+    /**
+     * Parses a message
+     *
+     * @param msg the serialized message
+     * @return the message, or null if the message isn't understood
+     */
+    public static UpdateMessage parse(String msg) {
+        List<String> parts = Splitter.on(':').limit(3).splitToList(msg);
+        if (parts.size() < 2) {
+            return null;
+        }
+
+        Type type = Type.parse(parts.get(0));
+        if (type == null || (type == Type.UPDATE) != (parts.size() == 2)) {
+            return null;
+        }
+
+        UUID requestId;
+        try {
+            requestId = UUID.fromString(parts.get(1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        String target = parts.size() == 3 ? parts.get(2) : null;
+        if (type == Type.USER) {
+            try {
+                UUID.fromString(target);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        return new UpdateMessage(type, requestId, target);
+    }
+
+    private final Type type;
+    private final UUID requestId;
+
+    /**
+     * The uuid of the user, or the name of the group or track. Null for {@link Type#UPDATE}.
+     */
+    private final String target;
+
+    public String serialize() {
+        return type.name().toLowerCase() + ":" + requestId.toString() + (target == null ? "" : ":" + target);
+    }
+
+    /**
+     * Applies the change described by this message. Called async.
+     *
+     * @param plugin the plugin instance
+     */
+    public void apply(LuckPermsPlugin plugin) {
+        switch (type) {
+            case USER: {
+                UUID uuid = UUID.fromString(target);
+
+                // only online (loaded) users need to be kept up to date
+                if (plugin.getUserManager().get(uuid) != null) {
+                    plugin.getStorage().loadUser(uuid, "null").join();
+                }
+                break;
+            }
+            case GROUP: {
+                if (!plugin.getStorage().loadGroup(target).join()) {
+                    // most likely deleted
+                    plugin.getUpdateTaskBuffer().request();
+                    break;
+                }
+
+                // recalculate the permissions of the users inheriting from the group
+                for (HolderReference ref : plugin.getCachedStateManager().getInheritances(GroupReference.of(target))) {
+                    ref.apply(plugin, holder -> {
+                        if (holder instanceof User) {
+                            ((User) holder).getRefreshBuffer().request();
+                        }
+                    });
+                }
+                break;
+            }
+            case TRACK: {
+                if (!plugin.getStorage().loadTrack(target).join()) {
+                    plugin.getUpdateTaskBuffer().request();
+                }
+                break;
+            }
+            default:
+                plugin.getUpdateTaskBuffer().request();
+                break;
+        }
+    }
+
+    public enum Type {
+
+        /**
+         * Everything may have changed. Receivers run a full sync.
+         */
+        UPDATE,
+
+        USER,
+        GROUP,
+        TRACK;
+
+        private static Type parse(String s) {
+            for (Type type : values()) {
+                if (type.name().equalsIgnoreCase(s)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+}
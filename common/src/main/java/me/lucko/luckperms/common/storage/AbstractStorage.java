@@ -22,32 +22,35 @@
 
 package me.lucko.luckperms.common.storage;
 
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.Delegate;
 
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
 import me.lucko.luckperms.common.storage.backing.AbstractBacking;
 import me.lucko.luckperms.common.storage.wrappings.BufferedOutputStorage;
 import me.lucko.luckperms.common.storage.wrappings.TolerantStorage;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
  * Converts a {@link AbstractBacking} to use {@link CompletableFuture}s
  */
-@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class AbstractStorage implements Storage {
     public static Storage wrap(LuckPermsPlugin plugin, AbstractBacking backing) {
-        BufferedOutputStorage bufferedDs = BufferedOutputStorage.wrap(TolerantStorage.wrap(new AbstractStorage(backing)), 1000L);
+        BufferedOutputStorage bufferedDs = BufferedOutputStorage.wrap(TolerantStorage.wrap(plugin, new AbstractStorage(backing)), 1000L);
         plugin.doAsyncRepeating(bufferedDs, 10L);
         return bufferedDs;
     }
@@ -55,6 +58,13 @@ public class AbstractStorage implements Storage {
     @Delegate(types = Delegated.class)
     private final AbstractBacking backing;
 
+    private final LogTailCache logTail;
+
+    private AbstractStorage(AbstractBacking backing) {
+        this.backing = backing;
+        this.logTail = new LogTailCache(backing);
+    }
+
     private <T> CompletableFuture<T> makeFuture(Supplier<T> supplier) {
         return CompletableFuture.supplyAsync(supplier, backing.getPlugin().getAsyncExecutor());
     }
@@ -66,7 +76,13 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Boolean> logAction(LogEntry entry) {
-        return makeFuture(() -> backing.logAction(entry));
+        return makeFuture(() -> {
+            boolean success = backing.logAction(entry);
+            if (success) {
+                logTail.invalidate();
+            }
+            return success;
+        });
     }
 
     @Override
@@ -74,16 +90,36 @@ public class AbstractStorage implements Storage {
         return makeFuture(backing::getLog);
     }
 
+    @Override
+    public CompletableFuture<Integer> countLog(LogQuery query) {
+        return makeFuture(() -> logTail.count(query));
+    }
+
+    @Override
+    public CompletableFuture<LogPage> queryLog(LogQuery query, int offset, int limit) {
+        return makeFuture(() -> logTail.query(query, offset, limit));
+    }
+
     @Override
     public CompletableFuture<Boolean> loadUser(UUID uuid, String username) {
         return makeFuture(() -> backing.loadUser(uuid, username));
     }
 
+    @Override
+    public CompletableFuture<Boolean> loadUsers(Collection<UserIdentifier> users) {
+        return makeFuture(() -> backing.loadUsers(users));
+    }
+
     @Override
     public CompletableFuture<Boolean> saveUser(User user) {
         return makeFuture(() -> backing.saveUser(user));
     }
 
+    @Override
+    public CompletableFuture<Boolean> saveUsers(Collection<User> users) {
+        return makeFuture(() -> backing.saveUsers(users));
+    }
+
     @Override
     public CompletableFuture<Boolean> cleanupUsers() {
         return makeFuture(backing::cleanupUsers);
@@ -114,6 +150,11 @@ public class AbstractStorage implements Storage {
         return makeFuture(() -> backing.saveGroup(group));
     }
 
+    @Override
+    public CompletableFuture<Boolean> saveGroups(Collection<Group> groups) {
+        return makeFuture(() -> backing.saveGroups(groups));
+    }
+
     @Override
     public CompletableFuture<Boolean> deleteGroup(Group group) {
         return makeFuture(() -> backing.deleteGroup(group));
@@ -159,6 +200,16 @@ public class AbstractStorage implements Storage {
         return makeFuture(() -> backing.getName(uuid));
     }
 
+    @Override
+    public CompletableFuture<Boolean> pushMessages(List<String> messages) {
+        return makeFuture(() -> backing.pushMessages(messages));
+    }
+
+    @Override
+    public CompletableFuture<Long> pollMessages(long lastId, Consumer<String> consumer) {
+        return makeFuture(() -> backing.pollMessages(lastId, consumer));
+    }
+
     private interface Delegated {
         String getName();
 
@@ -34,5 +34,6 @@ public class DatastoreConfiguration implements me.lucko.luckperms.api.data.Datas
     private final String username;
     private final String password;
     private int poolSize;
+    private boolean compactSchema;
 
 }
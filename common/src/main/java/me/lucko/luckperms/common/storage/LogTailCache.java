@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
+import me.lucko.luckperms.common.storage.backing.AbstractBacking;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the newest entries of the action log in memory, so the most recent pages of the log can be shown
+ * without querying the backing. Entries logged by other servers show up once the cache expires, and the
+ * cache is reloaded after an entry is logged by this server, as its position is only known to the backing.
+ */
+class LogTailCache {
+    private static final int MAX_ENTRIES = 100;
+    private static final long EXPIRY = TimeUnit.SECONDS.toMillis(10);
+
+    private final AbstractBacking backing;
+
+    // newest first
+    private LogPage entries = null;
+    private int count = 0;
+    private long expireAt = 0L;
+
+    LogTailCache(AbstractBacking backing) {
+        this.backing = backing;
+    }
+
+    int count(LogQuery query) {
+        if (query.isUnfiltered()) {
+            synchronized (this) {
+                if (ensureLoaded()) {
+                    return count;
+                }
+            }
+        }
+
+        return backing.countLog(query);
+    }
+
+    LogPage query(LogQuery query, int offset, int limit) {
+        if (query.isUnfiltered() && offset + limit <= MAX_ENTRIES) {
+            synchronized (this) {
+                if (ensureLoaded()) {
+                    return entries.slice(offset, limit);
+                }
+            }
+        }
+
+        return backing.queryLog(query, offset, limit);
+    }
+
+    synchronized void invalidate() {
+        expireAt = 0L;
+    }
+
+    private boolean ensureLoaded() {
+        long now = System.currentTimeMillis();
+        if (entries != null && now < expireAt) {
+            return true;
+        }
+
+        int count = backing.countLog(LogQuery.all());
+        LogPage entries = count < 0 ? null : backing.queryLog(LogQuery.all(), 0, MAX_ENTRIES);
+        if (entries == null) {
+            this.entries = null;
+            return false;
+        }
+
+        this.entries = entries;
+        this.count = count;
+        this.expireAt = now + EXPIRY;
+        return true;
+    }
+}
@@ -26,15 +26,21 @@ import com.google.common.collect.ImmutableMap;
 
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
 import me.lucko.luckperms.common.storage.backing.AbstractBacking;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class SplitBacking extends AbstractBacking {
     private final Map<String, AbstractBacking> backing;
@@ -74,16 +80,36 @@ public class SplitBacking extends AbstractBacking {
         return backing.get(types.get("log")).getLog();
     }
 
+    @Override
+    public int countLog(LogQuery query) {
+        return backing.get(types.get("log")).countLog(query);
+    }
+
+    @Override
+    public LogPage queryLog(LogQuery query, int offset, int limit) {
+        return backing.get(types.get("log")).queryLog(query, offset, limit);
+    }
+
     @Override
     public boolean loadUser(UUID uuid, String username) {
         return backing.get(types.get("user")).loadUser(uuid, username);
     }
 
+    @Override
+    public boolean loadUsers(Collection<UserIdentifier> users) {
+        return backing.get(types.get("user")).loadUsers(users);
+    }
+
     @Override
     public boolean saveUser(User user) {
         return backing.get(types.get("user")).saveUser(user);
     }
 
+    @Override
+    public boolean saveUsers(Collection<User> users) {
+        return backing.get(types.get("user")).saveUsers(users);
+    }
+
     @Override
     public boolean cleanupUsers() {
         return backing.get(types.get("user")).cleanupUsers();
@@ -114,6 +140,11 @@ public class SplitBacking extends AbstractBacking {
         return backing.get(types.get("group")).saveGroup(group);
     }
 
+    @Override
+    public boolean saveGroups(Collection<Group> groups) {
+        return backing.get(types.get("group")).saveGroups(groups);
+    }
+
     @Override
     public boolean deleteGroup(Group group) {
         return backing.get(types.get("group")).deleteGroup(group);
@@ -158,4 +189,14 @@ public class SplitBacking extends AbstractBacking {
     public String getName(UUID uuid) {
         return backing.get(types.get("uuid")).getName(uuid);
     }
+
+    @Override
+    public boolean pushMessages(List<String> messages) {
+        return backing.get(types.get("user")).pushMessages(messages);
+    }
+
+    @Override
+    public long pollMessages(long lastId, Consumer<String> consumer) {
+        return backing.get(types.get("user")).pollMessages(lastId, consumer);
+    }
 }
@@ -23,14 +23,20 @@
 package me.lucko.luckperms.common.storage;
 
 import me.lucko.luckperms.api.LogEntry;
+import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Main interface for all Storage providers.
@@ -53,10 +59,18 @@ public interface Storage {
 
     CompletableFuture<Log> getLog();
 
+    CompletableFuture<Integer> countLog(LogQuery query);
+
+    CompletableFuture<LogPage> queryLog(LogQuery query, int offset, int limit);
+
     CompletableFuture<Boolean> loadUser(UUID uuid, String username);
 
+    CompletableFuture<Boolean> loadUsers(Collection<UserIdentifier> users);
+
     CompletableFuture<Boolean> saveUser(User user);
 
+    CompletableFuture<Boolean> saveUsers(Collection<User> users);
+
     CompletableFuture<Boolean> cleanupUsers();
 
     CompletableFuture<Set<UUID>> getUniqueUsers();
@@ -69,6 +83,8 @@ public interface Storage {
 
     CompletableFuture<Boolean> saveGroup(Group group);
 
+    CompletableFuture<Boolean> saveGroups(Collection<Group> groups);
+
     CompletableFuture<Boolean> deleteGroup(Group group);
 
     CompletableFuture<Boolean> createAndLoadTrack(String name);
@@ -86,4 +102,8 @@ public interface Storage {
     CompletableFuture<UUID> getUUID(String username);
 
     CompletableFuture<String> getName(UUID uuid);
+
+    CompletableFuture<Boolean> pushMessages(List<String> messages);
+
+    CompletableFuture<Long> pollMessages(long lastId, Consumer<String> consumer);
 }
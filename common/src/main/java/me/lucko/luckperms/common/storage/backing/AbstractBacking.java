@@ -27,15 +27,27 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
-
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @RequiredArgsConstructor(access = AccessLevel.PROTECTED)
 public abstract class AbstractBacking {
@@ -58,10 +70,95 @@ public abstract class AbstractBacking {
 
     public abstract Log getLog();
 
+    /**
+     * Counts the entries in the action log matching a query. Backings which can filter the log themselves
+     * should override this.
+     *
+     * @param query the query to match entries against
+     * @return the number of matching entries, or -1 if the log couldn't be read
+     */
+    public int countLog(LogQuery query) {
+        Log log = getLog();
+        return log == null ? -1 : (int) log.getContent().stream().filter(query::matches).count();
+    }
+
+    /**
+     * Reads a page of the entries in the action log matching a query. Backings which can filter and page the
+     * log themselves should override this.
+     *
+     * <p>This implementation uses the index of each entry in {@link #getLog()} as its id.</p>
+     *
+     * @param query the query to match entries against
+     * @param offset the number of matching entries to skip, in the order of the query
+     * @param limit the maximum number of entries to return
+     * @return the matching entries, or null if the log couldn't be read
+     */
+    public LogPage queryLog(LogQuery query, int offset, int limit) {
+        Log log = getLog();
+        if (log == null) {
+            return null;
+        }
+
+        List<Map.Entry<LogQuery.Position, LogEntry>> entries = new ArrayList<>();
+        long id = 0;
+        for (LogEntry entry : log.getContent()) {
+            LogQuery.Position position = LogQuery.Position.of(entry.getTimestamp(), Long.toString(id++));
+            if (query.matches(entry) && (query.getFrom() == null || isPast(position, query.getFrom(), query.isOldestFirst()))) {
+                entries.add(Maps.immutableEntry(position, entry));
+            }
+        }
+
+        if (!query.isOldestFirst()) {
+            Collections.reverse(entries);
+        }
+
+        ImmutableMap.Builder<LogQuery.Position, LogEntry> page = ImmutableMap.builder();
+        entries.stream().skip(offset).limit(limit).forEach(page::put);
+        return new LogPage(page.build());
+    }
+
+    private static boolean isPast(LogQuery.Position position, LogQuery.Position from, boolean oldestFirst) {
+        int compare = position.getTime() != from.getTime() ? Long.compare(position.getTime(), from.getTime())
+                : Long.compare(Long.parseLong(position.getId()), Long.parseLong(from.getId()));
+        return oldestFirst ? compare > 0 : compare < 0;
+    }
+
     public abstract boolean loadUser(UUID uuid, String username);
 
+    /**
+     * Loads a number of users. Backings which are able to load many users in one operation should override this.
+     *
+     * @param users the users to load
+     * @return true if all of the users were loaded
+     */
+    public boolean loadUsers(Collection<UserIdentifier> users) {
+        boolean success = true;
+        for (UserIdentifier user : users) {
+            if (!loadUser(user.getUuid(), user.getUsername())) {
+                success = false;
+            }
+        }
+        return success;
+    }
+
     public abstract boolean saveUser(User user);
 
+    /**
+     * Saves a number of users. Backings which are able to save many users in one operation should override this.
+     *
+     * @param users the users to save
+     * @return true if all of the users were saved
+     */
+    public boolean saveUsers(Collection<User> users) {
+        boolean success = true;
+        for (User user : users) {
+            if (!saveUser(user)) {
+                success = false;
+            }
+        }
+        return success;
+    }
+
     public abstract boolean cleanupUsers();
 
     public abstract Set<UUID> getUniqueUsers();
@@ -74,6 +171,22 @@ public abstract class AbstractBacking {
 
     public abstract boolean saveGroup(Group group);
 
+    /**
+     * Saves a number of groups. Backings which are able to save many groups in one operation should override this.
+     *
+     * @param groups the groups to save
+     * @return true if all of the groups were saved
+     */
+    public boolean saveGroups(Collection<Group> groups) {
+        boolean success = true;
+        for (Group group : groups) {
+            if (!saveGroup(group)) {
+                success = false;
+            }
+        }
+        return success;
+    }
+
     public abstract boolean deleteGroup(Group group);
 
     public abstract boolean createAndLoadTrack(String name);
@@ -92,4 +205,30 @@ public abstract class AbstractBacking {
 
     public abstract String getName(UUID uuid);
 
+    /**
+     * Stores messages for other servers sharing this storage to pick up with {@link #pollMessages(long, Consumer)}.
+     * Backings which can't be shared between servers don't support this.
+     *
+     * @param messages the messages to store
+     * @return true if the messages were stored
+     */
+    public boolean pushMessages(List<String> messages) {
+        return false;
+    }
+
+    /**
+     * Passes messages stored after the given id to the consumer.
+     *
+     * <p>Messages can become visible out of order, so messages shortly before the given id are passed again,
+     * and should be ignored if they have already been seen. If messages after the given id were removed before
+     * they could be read, the consumer is passed null, and a full sync should be done.</p>
+     *
+     * @param lastId the id of the last message seen, 0 if none have been seen, or -1 to read all stored messages
+     * @param consumer the consumer to pass messages to
+     * @return the id of the last message seen, or -1 if messages couldn't be read
+     */
+    public long pollMessages(long lastId, Consumer<String> consumer) {
+        return -1;
+    }
+
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing;
+
+import me.lucko.luckperms.common.LuckPermsPlugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base for the file based SQL backings.
+ *
+ * <p>Writes are serialized through a single connection, while reads, including the queries made when users
+ * log in, are spread over a small pool of read only connections, so they aren't held up behind saves.</p>
+ *
+ * <p>Connections are kept open for the lifetime of the backing, so each keeps a cache of the statements
+ * prepared by {@link #runQuery(String, QueryPS)} and {@link #runQuery(String, QueryPS, QueryRS)}.</p>
+ */
+abstract class EmbeddedSQLBacking extends SQLBacking {
+
+    // The maximum number of connections used for reads
+    private static final int READ_POOL_SIZE = 4;
+
+    // The maximum number of prepared statements cached per connection
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private CachedConnection writer = null;
+
+    private final Semaphore readPermits = new Semaphore(READ_POOL_SIZE);
+    private final Queue<CachedConnection> readers = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed = false;
+
+    EmbeddedSQLBacking(LuckPermsPlugin plugin, String name) {
+        super(plugin, name);
+    }
+
+    /**
+     * Opens a new connection to the database.
+     *
+     * @param write if the connection will be used for writes
+     * @return the connection
+     * @throws SQLException if the connection could not be opened
+     */
+    abstract Connection openConnection(boolean write) throws SQLException;
+
+    @Override
+    boolean runQuery(String query, QueryPS queryPS) {
+        boolean success = false;
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+
+        try {
+            connection = getConnection();
+            preparedStatement = writer.prepare(query);
+            queryPS.onRun(preparedStatement);
+
+            preparedStatement.execute();
+            preparedStatement.clearParameters();
+            success = true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (preparedStatement != null) {
+                writer.evict(query);
+            }
+        } finally {
+            releaseConnection(connection);
+        }
+        return success;
+    }
+
+    @Override
+    boolean runQuery(String query, QueryPS queryPS, QueryRS queryRS) {
+        boolean success = false;
+
+        CachedConnection connection = null;
+        PreparedStatement preparedStatement = null;
+
+        try {
+            connection = getReadConnection();
+            preparedStatement = connection.prepare(query);
+            queryPS.onRun(preparedStatement);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                success = queryRS.onResult(resultSet);
+            }
+            preparedStatement.clearParameters();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (preparedStatement != null) {
+                connection.evict(query);
+            }
+        } finally {
+            releaseReadConnection(connection);
+        }
+        return success;
+    }
+
+    @Override
+    boolean runReadTransaction(QueryTX queryTX) {
+        boolean success = false;
+        CachedConnection connection = null;
+
+        try {
+            connection = getReadConnection();
+            success = transact(connection.connection, queryTX);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            releaseReadConnection(connection);
+        }
+        return success;
+    }
+
+    /**
+     * Returns the write connection. The caller holds it exclusively until it is passed to
+     * {@link #releaseConnection(Connection)}.
+     */
+    @Override
+    Connection getConnection() throws SQLException {
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            if (writer == null || writer.connection.isClosed()) {
+                writer = new CachedConnection(openConnection(true));
+            }
+            return writer.connection;
+        } catch (SQLException | RuntimeException e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    void releaseConnection(Connection connection) {
+        if (connection != null) {
+            writeLock.unlock();
+        }
+    }
+
+    private CachedConnection getReadConnection() throws SQLException {
+        readPermits.acquireUninterruptibly();
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+
+            CachedConnection connection = readers.poll();
+            if (connection == null || connection.connection.isClosed()) {
+                connection = new CachedConnection(openConnection(false));
+                connection.connection.setReadOnly(true);
+            }
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            readPermits.release();
+            throw e;
+        }
+    }
+
+    private void releaseReadConnection(CachedConnection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        if (closed) {
+            close(connection);
+        } else {
+            readers.offer(connection);
+        }
+        readPermits.release();
+    }
+
+    @Override
+    public void shutdown() {
+        closed = true;
+
+        CachedConnection connection;
+        while ((connection = readers.poll()) != null) {
+            close(connection);
+        }
+
+        writeLock.lock();
+        try {
+            close(writer);
+            writer = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * A connection, and the statements prepared on it
+     */
+    private static final class CachedConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    EmbeddedSQLBacking.close(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        private CachedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepare(String query) throws SQLException {
+            PreparedStatement ps = statements.get(query);
+            if (ps == null || ps.isClosed()) {
+                ps = connection.prepareStatement(query);
+                statements.put(query, ps);
+            }
+            return ps;
+        }
+
+        /**
+         * Discards a statement which failed, in case it was left in a bad state
+         */
+        private void evict(String query) {
+            EmbeddedSQLBacking.close(statements.remove(query));
+        }
+
+        @Override
+        public void close() {
+            statements.values().forEach(EmbeddedSQLBacking::close);
+            statements.clear();
+            EmbeddedSQLBacking.close(connection);
+        }
+    }
+}
@@ -27,20 +27,28 @@ import lombok.Cleanup;
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.constants.Constants;
+import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.data.Log;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
@@ -50,6 +58,42 @@ import java.util.logging.Logger;
 abstract class FlatfileBacking extends AbstractBacking {
     private static final String LOG_FORMAT = "%s(%s): [%s] %s(%s) --> %s";
 
+    // the number of entries appended to the uuid journal before it is folded back into the uuid cache file
+    private static final int JOURNAL_COMPACT_THRESHOLD = 10000;
+
+    /**
+     * Writes a file by writing to a temporary file in the same directory, then renaming it over the target.
+     * If the process dies part way through, the previous version of the file is left intact.
+     *
+     * @param file the file to write
+     * @param operation the write operation. if it returns false, the file is left untouched
+     * @return the result of the operation
+     * @throws IOException if the file couldn't be written
+     */
+    static boolean writeAtomically(File file, FileWriteOperation operation) throws IOException {
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out))) {
+                if (!operation.onRun(writer)) {
+                    return false;
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            // no-op if the file was moved
+            tmp.delete();
+        }
+    }
+
     private final Logger actionLogger = Logger.getLogger("lp_actions");
     private final File pluginDir;
     File usersDir;
@@ -57,8 +101,14 @@ abstract class FlatfileBacking extends AbstractBacking {
     File tracksDir;
     private Map<String, String> uuidCache = new ConcurrentHashMap<>();
     private File uuidData;
+    private File uuidJournal;
     private File actionLog;
 
+    // guarded by journalLock
+    private final Object journalLock = new Object();
+    private BufferedWriter journalWriter = null;
+    private int journalSize = 0;
+
     FlatfileBacking(LuckPermsPlugin plugin, String name, File pluginDir) {
         super(plugin, name);
         this.pluginDir = pluginDir;
@@ -74,6 +124,10 @@ abstract class FlatfileBacking extends AbstractBacking {
         }
 
         uuidCache.putAll(getUUIDCache());
+        replayUUIDJournal();
+        synchronized (journalLock) {
+            compactUUIDCache();
+        }
 
         try {
             FileHandler fh = new FileHandler(actionLog.getAbsolutePath(), 0, 1, true);
@@ -91,7 +145,7 @@ abstract class FlatfileBacking extends AbstractBacking {
             e.printStackTrace();
         }
 
-        cleanupUsers();
+        // Users with only default data are cleaned up as they are loaded, rather than by reading every file here.
         setAcceptingLogins(true);
     }
 
@@ -111,13 +165,19 @@ abstract class FlatfileBacking extends AbstractBacking {
         uuidData = new File(data, "uuidcache.txt");
         uuidData.createNewFile();
 
+        uuidJournal = new File(data, "uuidcache.journal");
+        uuidJournal.createNewFile();
+
         actionLog = new File(data, "actions.log");
         actionLog.createNewFile();
     }
 
     @Override
     public void shutdown() {
-        saveUUIDCache(uuidCache);
+        synchronized (journalLock) {
+            compactUUIDCache();
+            closeJournal();
+        }
     }
 
     @Override
@@ -133,6 +193,26 @@ abstract class FlatfileBacking extends AbstractBacking {
         return true;
     }
 
+    @Override
+    public boolean loadUsers(Collection<UserIdentifier> users) {
+        // each user is stored in its own file, so they can be read in parallel
+        return loadInParallel(users, u -> loadUser(u.getUuid(), u.getUsername()));
+    }
+
+    /**
+     * Loads all of the given objects in parallel, using the common fork join pool rather than the plugin's
+     * executors, so the number of threads is bounded and the calling thread helps instead of blocking.
+     *
+     * @param objects the objects to load
+     * @param loader the load function
+     * @param <T> the type of the objects
+     * @return true if all of the objects were loaded
+     */
+    static <T> boolean loadInParallel(Collection<T> objects, Predicate<T> loader) {
+        // count every failure, so one failure doesn't stop the remaining objects being loaded
+        return objects.parallelStream().filter(o -> !loader.test(o)).count() == 0;
+    }
+
     @Override
     public Log getLog() {
         // Flatfile doesn't support viewing log data from in-game. You can just read the file in a text editor.
@@ -158,24 +238,95 @@ abstract class FlatfileBacking extends AbstractBacking {
         return cache;
     }
 
-    private void saveUUIDCache(Map<String, String> cache) {
+    private boolean saveUUIDCache(Map<String, String> cache) {
+        try {
+            return writeAtomically(uuidData, writer -> {
+                Properties properties = new Properties();
+                properties.putAll(cache);
+                properties.store(writer, null);
+                return true;
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Applies the entries appended to the journal since the uuid cache file was last written
+     */
+    private void replayUUIDJournal() {
         try {
-            @Cleanup FileWriter fileWriter = new FileWriter(uuidData);
-            @Cleanup BufferedWriter bufferedWriter = new BufferedWriter(fileWriter);
+            @Cleanup FileReader fileReader = new FileReader(uuidJournal);
+            @Cleanup BufferedReader bufferedReader = new BufferedReader(fileReader);
+
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                int i = line.indexOf('=');
+                // skip anything malformed, e.g. a line only partly written before a crash
+                if (i <= 0 || line.length() - i - 1 != 36) {
+                    continue;
+                }
+                uuidCache.put(line.substring(0, i), line.substring(i + 1));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            Properties properties = new Properties();
-            properties.putAll(cache);
-            properties.store(bufferedWriter, null);
+    /**
+     * Writes the whole uuid cache to file, and starts a new, empty journal. Must be called whilst holding journalLock.
+     */
+    private void compactUUIDCache() {
+        closeJournal();
 
+        // if the snapshot can't be written, keep appending to the existing journal
+        boolean saved = saveUUIDCache(uuidCache);
+        try {
+            journalWriter = new BufferedWriter(new FileWriter(uuidJournal, !saved));
+            journalSize = 0;
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void closeJournal() {
+        if (journalWriter != null) {
+            try {
+                journalWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            journalWriter = null;
+        }
+    }
+
     @Override
     public boolean saveUUIDData(String username, UUID uuid) {
         username = username.toLowerCase();
-        uuidCache.put(username, uuid.toString());
+        String u = uuid.toString();
+        if (u.equals(uuidCache.put(username, u))) {
+            return true;
+        }
+
+        synchronized (journalLock) {
+            if (journalWriter == null) {
+                return false;
+            }
+
+            try {
+                journalWriter.write(username + "=" + u);
+                journalWriter.newLine();
+                journalWriter.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+
+            if (++journalSize >= JOURNAL_COMPACT_THRESHOLD) {
+                compactUUIDCache();
+            }
+        }
         return true;
     }
 
@@ -195,4 +346,8 @@ abstract class FlatfileBacking extends AbstractBacking {
         }
         return null;
     }
+
+    interface FileWriteOperation {
+        boolean onRun(BufferedWriter writer) throws IOException;
+    }
 }
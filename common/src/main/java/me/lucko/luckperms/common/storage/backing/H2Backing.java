@@ -27,21 +27,29 @@ import me.lucko.luckperms.common.LuckPermsPlugin;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 
-public class H2Backing extends SQLBacking {
+public class H2Backing extends EmbeddedSQLBacking {
 
     private static final String CREATETABLE_UUID = "CREATE TABLE IF NOT EXISTS `lp_uuid` (`name` VARCHAR(16) NOT NULL, `uuid` VARCHAR(36) NOT NULL, PRIMARY KEY (`name`)) DEFAULT CHARSET=utf8;";
     private static final String CREATETABLE_USERS = "CREATE TABLE IF NOT EXISTS `lp_users` (`uuid` VARCHAR(36) NOT NULL, `name` VARCHAR(16) NOT NULL, `primary_group` VARCHAR(36) NOT NULL, `perms` TEXT NOT NULL, PRIMARY KEY (`uuid`)) DEFAULT CHARSET=utf8;";
     private static final String CREATETABLE_GROUPS = "CREATE TABLE IF NOT EXISTS `lp_groups` (`name` VARCHAR(36) NOT NULL, `perms` TEXT NULL, PRIMARY KEY (`name`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_USER_PERMISSIONS = "CREATE TABLE IF NOT EXISTS `lp_user_permissions` (`id` INT AUTO_INCREMENT NOT NULL, `uuid` VARCHAR(36) NOT NULL, `permission` VARCHAR NOT NULL, `value` BOOL NOT NULL, `server` VARCHAR NOT NULL, `world` VARCHAR NOT NULL, `expiry` BIGINT NOT NULL, `contexts` VARCHAR NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_GROUP_PERMISSIONS = "CREATE TABLE IF NOT EXISTS `lp_group_permissions` (`id` INT AUTO_INCREMENT NOT NULL, `name` VARCHAR(36) NOT NULL, `permission` VARCHAR NOT NULL, `value` BOOL NOT NULL, `server` VARCHAR NOT NULL, `world` VARCHAR NOT NULL, `expiry` BIGINT NOT NULL, `contexts` VARCHAR NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATEINDEX_USER_PERMISSIONS_UUID = "CREATE INDEX IF NOT EXISTS `lp_user_permissions_uuid` ON `lp_user_permissions` (`uuid`);";
+    private static final String CREATEINDEX_USER_PERMISSIONS_PERMISSION = "CREATE INDEX IF NOT EXISTS `lp_user_permissions_permission` ON `lp_user_permissions` (`permission`);";
+    private static final String CREATEINDEX_GROUP_PERMISSIONS_NAME = "CREATE INDEX IF NOT EXISTS `lp_group_permissions_name` ON `lp_group_permissions` (`name`);";
+    private static final String CREATEINDEX_GROUP_PERMISSIONS_PERMISSION = "CREATE INDEX IF NOT EXISTS `lp_group_permissions_permission` ON `lp_group_permissions` (`permission`);";
     private static final String CREATETABLE_TRACKS = "CREATE TABLE IF NOT EXISTS `lp_tracks` (`name` VARCHAR(36) NOT NULL, `groups` TEXT NULL, PRIMARY KEY (`name`)) DEFAULT CHARSET=utf8;";
     private static final String CREATETABLE_ACTION = "CREATE TABLE IF NOT EXISTS `lp_actions` (`id` INT AUTO_INCREMENT NOT NULL, `time` BIGINT NOT NULL, `actor_uuid` VARCHAR(36) NOT NULL, `actor_name` VARCHAR(16) NOT NULL, `type` CHAR(1) NOT NULL, `acted_uuid` VARCHAR(36) NOT NULL, `acted_name` VARCHAR(36) NOT NULL, `action` VARCHAR(256) NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATEINDEX_ACTIONS_TIME = "CREATE INDEX IF NOT EXISTS `lp_actions_time` ON `lp_actions` (`time`);";
+    private static final String CREATEINDEX_ACTIONS_ACTOR = "CREATE INDEX IF NOT EXISTS `lp_actions_actor` ON `lp_actions` (`actor_uuid`, `time`);";
+    private static final String CREATEINDEX_ACTIONS_ACTED = "CREATE INDEX IF NOT EXISTS `lp_actions_acted` ON `lp_actions` (`acted_uuid`, `time`);";
+    private static final String CREATEINDEX_ACTIONS_ACTED_NAME = "CREATE INDEX IF NOT EXISTS `lp_actions_acted_name` ON `lp_actions` (`type`, `acted_name`, `time`);";
+    private static final String CREATETABLE_MESSAGES = "CREATE TABLE IF NOT EXISTS `lp_messages` (`id` INT AUTO_INCREMENT NOT NULL, `time` BIGINT NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET=utf8;";
 
     private final File file;
-    private final Object connectionLock = new Object();
-    private Connection connection = null;
 
     public H2Backing(LuckPermsPlugin plugin, File file) {
         super(plugin, "H2");
@@ -50,7 +58,10 @@ public class H2Backing extends SQLBacking {
 
     @Override
     public void init() {
-        if (!setupTables(CREATETABLE_UUID, CREATETABLE_USERS, CREATETABLE_GROUPS, CREATETABLE_TRACKS, CREATETABLE_ACTION)) {
+        if (!setupTables(CREATETABLE_UUID, CREATETABLE_USERS, CREATETABLE_USER_PERMISSIONS, CREATETABLE_GROUPS, CREATETABLE_GROUP_PERMISSIONS, CREATETABLE_TRACKS, CREATETABLE_ACTION, CREATETABLE_MESSAGES,
+                CREATEINDEX_USER_PERMISSIONS_UUID, CREATEINDEX_USER_PERMISSIONS_PERMISSION,
+                CREATEINDEX_GROUP_PERMISSIONS_NAME, CREATEINDEX_GROUP_PERMISSIONS_PERMISSION,
+                CREATEINDEX_ACTIONS_TIME, CREATEINDEX_ACTIONS_ACTOR, CREATEINDEX_ACTIONS_ACTED, CREATEINDEX_ACTIONS_ACTED_NAME)) {
             plugin.getLog().severe("Error occurred whilst initialising the database.");
             shutdown();
         } else {
@@ -59,81 +70,35 @@ public class H2Backing extends SQLBacking {
     }
 
     @Override
-    boolean runQuery(String query, QueryPS queryPS) {
-        boolean success = false;
-
-        PreparedStatement preparedStatement = null;
-
-        try {
-            Connection connection = getConnection();
-            if (connection == null || connection.isClosed()) {
-                throw new IllegalStateException("SQL connection is null");
-            }
-
-            preparedStatement = connection.prepareStatement(query);
-            queryPS.onRun(preparedStatement);
-
-            preparedStatement.execute();
-            success = true;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(preparedStatement);
-        }
-        return success;
+    String[] widenNodeColumns(String table) {
+        return Arrays.stream(new String[]{"permission", "server", "world", "contexts"})
+                .map(column -> "ALTER TABLE `" + table + "` ALTER COLUMN `" + column + "` VARCHAR NOT NULL")
+                .toArray(String[]::new);
     }
 
     @Override
-    boolean runQuery(String query, QueryPS queryPS, QueryRS queryRS) {
-        boolean success = false;
-
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-
-        try {
-            Connection connection = getConnection();
-            if (connection == null || connection.isClosed()) {
-                throw new IllegalStateException("SQL connection is null");
-            }
-
-            preparedStatement = connection.prepareStatement(query);
-            queryPS.onRun(preparedStatement);
-
-            resultSet = preparedStatement.executeQuery();
-            success = queryRS.onResult(resultSet);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(resultSet);
-            close(preparedStatement);
-        }
-        return success;
+    String upsert(String table, String key, String... columns) {
+        return "MERGE INTO " + table + " (" + columnList(key, columns) + ") KEY (`" + key + "`) VALUES" + inClause(columns.length + 1);
     }
 
     @Override
-    public void shutdown() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    String insertIgnore(String table, String key, String... columns) {
+        // H2 has no INSERT IGNORE outside of MySQL mode, so only select the row if the key is missing
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (").append(columnList(key, columns)).append(") SELECT * FROM (SELECT CAST(? AS VARCHAR) AS `").append(key).append("`");
+        for (String column : columns) {
+            sb.append(", CAST(? AS VARCHAR) AS `").append(column).append("`");
         }
+        return sb.append(") v WHERE NOT EXISTS (SELECT 1 FROM ").append(table).append(" t WHERE t.`").append(key).append("`=v.`").append(key).append("`)").toString();
     }
 
     @Override
-    Connection getConnection() throws SQLException {
-        synchronized (connectionLock) {
-            if (connection == null || connection.isClosed()) {
-                try {
-                    Class.forName("org.h2.Driver");
-                } catch (ClassNotFoundException ignored) {
-                }
-
-                connection = DriverManager.getConnection("jdbc:h2:" + file.getAbsolutePath());
-            }
+    Connection openConnection(boolean write) throws SQLException {
+        try {
+            Class.forName("org.h2.Driver");
+        } catch (ClassNotFoundException ignored) {
         }
 
-        return connection;
+        // connections in the same process share one database, which is kept open until the last one is closed
+        return DriverManager.getConnection("jdbc:h2:" + file.getAbsolutePath());
     }
 }
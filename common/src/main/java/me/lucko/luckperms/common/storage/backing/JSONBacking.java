@@ -24,9 +24,11 @@ package me.lucko.luckperms.common.storage.backing;
 
 import lombok.Cleanup;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
@@ -37,10 +39,8 @@ import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -70,18 +70,18 @@ public class JSONBacking extends FlatfileBacking {
     }
 
     private boolean doWrite(File file, WriteOperation writeOperation) {
-        boolean success = false;
         try {
-            @Cleanup FileWriter fileWriter = new FileWriter(file);
-            @Cleanup BufferedWriter bufferedWriter = new BufferedWriter(fileWriter);
-            @Cleanup JsonWriter jsonWriter = new JsonWriter(bufferedWriter);
-            jsonWriter.setIndent("    ");
-            success = writeOperation.onRun(jsonWriter);
-            jsonWriter.flush();
+            return writeAtomically(file, writer -> {
+                JsonWriter jsonWriter = new JsonWriter(writer);
+                jsonWriter.setIndent("    ");
+                boolean success = writeOperation.onRun(jsonWriter);
+                jsonWriter.flush();
+                return success;
+            });
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
-        return success;
     }
 
     private boolean doRead(File file, ReadOperation readOperation) {
@@ -101,11 +101,13 @@ public class JSONBacking extends FlatfileBacking {
     public boolean loadUser(UUID uuid, String username) {
         User user = plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
         user.getIoLock().lock();
+        Map.Entry<ImmutableSet<Node>, String> snapshot = user.getDataSnapshot();
         try {
             return call(() -> {
                 File userFile = new File(usersDir, uuid.toString() + ".json");
                 if (userFile.exists()) {
-                    return doRead(userFile, reader -> {
+                    final boolean[] save = {false};
+                    boolean success = doRead(userFile, reader -> {
                         reader.beginObject();
                         reader.nextName(); // uuid record
                         reader.nextString(); // uuid
@@ -125,34 +127,42 @@ public class JSONBacking extends FlatfileBacking {
                         reader.endObject();
                         reader.endObject();
 
-                        boolean save = plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                        save[0] = plugin.getUserManager().giveDefaultIfNeeded(user, false);
 
                         if (user.getName() == null || user.getName().equalsIgnoreCase("null")) {
                             user.setName(name1);
                         } else {
                             if (!name1.equals(user.getName())) {
-                                save = true;
+                                save[0] = true;
                             }
                         }
-
-                        if (save) {
-                            doWrite(userFile, writer -> {
-                                writer.beginObject();
-                                writer.name("uuid").value(user.getUuid().toString());
-                                writer.name("name").value(user.getName());
-                                writer.name("primaryGroup").value(user.getPrimaryGroup());
-                                writer.name("perms");
-                                writer.beginObject();
-                                for (Map.Entry<String, Boolean> e : exportToLegacy(user.getNodes()).entrySet()) {
-                                    writer.name(e.getKey()).value(e.getValue().booleanValue());
-                                }
-                                writer.endObject();
-                                writer.endObject();
-                                return true;
-                            });
-                        }
                         return true;
                     });
+
+                    if (!success) {
+                        return false;
+                    }
+
+                    if (!GenericUserManager.shouldSave(user)) {
+                        // The user only has default data, so doesn't need a file.
+                        userFile.delete();
+                    } else if (save[0]) {
+                        doWrite(userFile, writer -> {
+                            writer.beginObject();
+                            writer.name("uuid").value(user.getUuid().toString());
+                            writer.name("name").value(user.getName());
+                            writer.name("primaryGroup").value(user.getPrimaryGroup());
+                            writer.name("perms");
+                            writer.beginObject();
+                            for (Map.Entry<String, Boolean> e : exportToLegacy(user.getNodes()).entrySet()) {
+                                writer.name(e.getKey()).value(e.getValue().booleanValue());
+                            }
+                            writer.endObject();
+                            writer.endObject();
+                            return true;
+                        });
+                    }
+                    return true;
                 } else {
                     if (GenericUserManager.shouldSave(user)) {
                         user.clearNodes();
@@ -164,7 +174,9 @@ public class JSONBacking extends FlatfileBacking {
             }, false);
         } finally {
             user.getIoLock().unlock();
-            user.getRefreshBuffer().requestDirectly();
+            if (!user.getDataSnapshot().equals(snapshot)) {
+                user.getRefreshBuffer().requestDirectly();
+            }
         }
     }
 
@@ -181,15 +193,6 @@ public class JSONBacking extends FlatfileBacking {
                     return true;
                 }
 
-                if (!userFile.exists()) {
-                    try {
-                        userFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 return doWrite(userFile, writer -> {
                     writer.beginObject();
                     writer.name("uuid").value(user.getUuid().toString());
@@ -292,13 +295,6 @@ public class JSONBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     return doWrite(groupFile, writer -> {
                         writer.beginObject();
                         writer.name("name").value(group.getName());
@@ -356,7 +352,7 @@ public class JSONBacking extends FlatfileBacking {
                 .map(s -> s.substring(0, s.length() - 5))
                 .collect(Collectors.toList());
 
-        groups.forEach(this::loadGroup);
+        loadInParallel(groups, this::loadGroup);
 
         GroupManager gm = plugin.getGroupManager();
         gm.getAll().values().stream()
@@ -371,14 +367,6 @@ public class JSONBacking extends FlatfileBacking {
         try {
             return call(() -> {
                 File groupFile = new File(groupsDir, group.getName() + ".json");
-                if (!groupFile.exists()) {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
 
                 return doWrite(groupFile, writer -> {
                     writer.beginObject();
@@ -438,13 +426,6 @@ public class JSONBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     return doWrite(trackFile, writer -> {
                         writer.beginObject();
                         writer.name("name").value(track.getName());
@@ -516,14 +497,6 @@ public class JSONBacking extends FlatfileBacking {
         try {
             return call(() -> {
                 File trackFile = new File(tracksDir, track.getName() + ".json");
-                if (!trackFile.exists()) {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
 
                 return doWrite(trackFile, writer -> {
                     writer.beginObject();
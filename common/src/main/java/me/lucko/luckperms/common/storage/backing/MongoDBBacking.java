@@ -22,36 +22,59 @@
 
 package me.lucko.luckperms.common.storage.backing;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
 import com.mongodb.MongoClient;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.InsertOneOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 
 import me.lucko.luckperms.api.LogEntry;
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
 import me.lucko.luckperms.common.managers.GroupManager;
 import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
 import me.lucko.luckperms.common.storage.DatastoreConfiguration;
 
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static me.lucko.luckperms.common.core.model.PermissionHolder.exportToLegacy;
@@ -111,6 +134,21 @@ public class MongoDBBacking extends AbstractBacking {
         return new Document("_id", track.getName()).append("groups", track.getGroups());
     }
 
+    /**
+     * Inserts the document if no document with the same id exists, in a single round trip.
+     *
+     * @param c the collection
+     * @param id the id of the document
+     * @param document the document to insert
+     * @return the existing document, or null if the document was inserted
+     */
+    private static Document createIfAbsent(MongoCollection<Document> c, Object id, Document document) {
+        Document insert = new Document(document);
+        insert.remove("_id");
+        return c.findOneAndUpdate(new Document("_id", id), new Document("$setOnInsert", insert),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.BEFORE));
+    }
+
     private final DatastoreConfiguration configuration;
     private MongoClient mongoClient;
     private MongoDatabase database;
@@ -135,6 +173,24 @@ public class MongoDBBacking extends AbstractBacking {
 
         mongoClient = new MongoClient(address, Collections.singletonList(credential));
         database = mongoClient.getDatabase(configuration.getDatabase());
+
+        // indexes used by log queries, these are only created if they don't already exist.
+        // log queries still work without them, so a failure here shouldn't stop the plugin from starting.
+        MongoCollection<Document> actions = database.getCollection("action");
+        List<Bson> indexes = ImmutableList.of(
+                Indexes.descending("timestamp"),
+                Indexes.compoundIndex(Indexes.ascending("actor"), Indexes.descending("timestamp")),
+                Indexes.compoundIndex(Indexes.ascending("acted"), Indexes.descending("timestamp")),
+                Indexes.compoundIndex(Indexes.ascending("type", "actedName"), Indexes.descending("timestamp"))
+        );
+        for (Bson index : indexes) {
+            try {
+                actions.createIndex(index);
+            } catch (Exception e) {
+                plugin.getLog().warn("Unable to create the log index " + index + ": " + e.getMessage());
+            }
+        }
+
         setAcceptingLogins(true);
     }
 
@@ -175,42 +231,131 @@ public class MongoDBBacking extends AbstractBacking {
 
             try (MongoCursor<Document> cursor = c.find().iterator()) {
                 while (cursor.hasNext()) {
-                    Document d = cursor.next();
+                    log.add(readLogEntry(cursor.next()));
+                }
+            }
 
-                    UUID actedUuid = null;
-                    if (d.containsKey("acted")) {
-                        actedUuid = d.get("acted", UUID.class);
-                    }
+            return log.build();
+        }, null);
+    }
+
+    @Override
+    public int countLog(LogQuery query) {
+        return call(() -> (int) database.getCollection("action").count(buildLogFilter(query)), -1);
+    }
+
+    @Override
+    public LogPage queryLog(LogQuery query, int offset, int limit) {
+        return call(() -> {
+            ImmutableMap.Builder<LogQuery.Position, LogEntry> entries = ImmutableMap.builder();
+            MongoCollection<Document> c = database.getCollection("action");
 
-                    LogEntry e = new LogEntry(
-                            d.getLong("timestamp"),
-                            d.get("actor", UUID.class),
-                            d.getString("actorName"),
-                            d.getString("type").toCharArray()[0],
-                            actedUuid,
-                            d.getString("actedName"),
-                            d.getString("action")
-                    );
-                    log.add(e);
+            Bson sort = query.isOldestFirst() ? Sorts.ascending("timestamp", "_id") : Sorts.descending("timestamp", "_id");
+            try (MongoCursor<Document> cursor = c.find(buildLogFilter(query)).sort(sort).skip(offset).limit(limit).iterator()) {
+                while (cursor.hasNext()) {
+                    Document d = cursor.next();
+                    entries.put(LogQuery.Position.of(d.getLong("timestamp"), d.getObjectId("_id").toHexString()), readLogEntry(d));
                 }
             }
 
-            return log.build();
+            return new LogPage(entries.build());
         }, null);
     }
 
+    private static LogEntry readLogEntry(Document d) {
+        UUID actedUuid = null;
+        if (d.containsKey("acted")) {
+            actedUuid = d.get("acted", UUID.class);
+        }
+
+        return new LogEntry(
+                d.getLong("timestamp"),
+                d.get("actor", UUID.class),
+                d.getString("actorName"),
+                d.getString("type").toCharArray()[0],
+                actedUuid,
+                d.getString("actedName"),
+                d.getString("action")
+        );
+    }
+
+    private static Bson buildLogFilter(LogQuery query) {
+        List<Bson> filters = new ArrayList<>();
+        if (query.getActor() != null) {
+            filters.add(Filters.eq("actor", query.getActor()));
+        }
+        if (query.getActed() != null) {
+            filters.add(Filters.eq("acted", query.getActed()));
+        }
+        if (query.getActedName() != null) {
+            filters.add(Filters.eq("actedName", query.getActedName()));
+        }
+        if (query.getType() != null) {
+            filters.add(Filters.eq("type", Character.toString(query.getType())));
+        }
+        if (query.getAfter() > 0L) {
+            filters.add(Filters.gte("timestamp", query.getAfter()));
+        }
+        if (query.getBefore() != Long.MAX_VALUE) {
+            filters.add(Filters.lt("timestamp", query.getBefore()));
+        }
+        if (query.getFrom() != null) {
+            long time = query.getFrom().getTime();
+            ObjectId id = new ObjectId(query.getFrom().getId());
+            filters.add(query.isOldestFirst()
+                    ? Filters.or(Filters.gt("timestamp", time), Filters.and(Filters.eq("timestamp", time), Filters.gt("_id", id)))
+                    : Filters.or(Filters.lt("timestamp", time), Filters.and(Filters.eq("timestamp", time), Filters.lt("_id", id))));
+        }
+        if (query.getSearch() != null) {
+            Pattern pattern = Pattern.compile(Pattern.quote(query.getSearch()), Pattern.CASE_INSENSITIVE);
+            filters.add(Filters.or(
+                    Filters.regex("actorName", pattern),
+                    Filters.regex("actedName", pattern),
+                    Filters.regex("action", pattern)
+            ));
+        }
+
+        return filters.isEmpty() ? new Document() : Filters.and(filters);
+    }
+
     @Override
     public boolean loadUser(UUID uuid, String username) {
-        User user = plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
-        user.getIoLock().lock();
+        return loadUsers(Collections.singletonList(UserIdentifier.of(uuid, username)));
+    }
+
+    @Override
+    public boolean loadUsers(Collection<UserIdentifier> identifiers) {
+        // lock in a consistent order, so concurrent batches can't deadlock
+        List<User> users = identifiers.stream()
+                .map(id -> plugin.getUserManager().getOrMake(id))
+                .distinct()
+                .sorted(Comparator.comparing(User::getUuid))
+                .collect(Collectors.toList());
+
+        users.forEach(u -> u.getIoLock().lock());
+
+        // users are only refreshed if their data changes
+        Map<User, Map.Entry<ImmutableSet<Node>, String>> snapshots = new HashMap<>();
+        users.forEach(u -> snapshots.put(u, u.getDataSnapshot()));
         try {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("users");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", user.getUuid())).iterator()) {
-                    if (cursor.hasNext()) {
-                        // User exists, let's load.
+                List<UUID> uuids = users.stream().map(User::getUuid).collect(Collectors.toList());
+                Map<String, Document> documents = new HashMap<>();
+                try (MongoCursor<Document> cursor = c.find(new Document("_id", new Document("$in", uuids))).iterator()) {
+                    while (cursor.hasNext()) {
                         Document d = cursor.next();
+                        documents.put(d.get("_id").toString(), d);
+                    }
+                }
+
+                List<WriteModel<Document>> writes = new ArrayList<>();
+                for (User user : users) {
+                    Document d = documents.get(user.getUuid().toString());
+
+                    if (d != null) {
+                        // User exists, let's load.
                         user.setNodes(revert((Map<String, Boolean>) d.get("perms")));
                         user.setPrimaryGroup(d.getString("primaryGroup"));
 
@@ -225,7 +370,7 @@ public class MongoDBBacking extends AbstractBacking {
                         }
 
                         if (save) {
-                            c.replaceOne(new Document("_id", user.getUuid()), fromUser(user));
+                            writes.add(new ReplaceOneModel<>(new Document("_id", user.getUuid()), fromUser(user)));
                         }
                     } else {
                         if (GenericUserManager.shouldSave(user)) {
@@ -235,11 +380,19 @@ public class MongoDBBacking extends AbstractBacking {
                         }
                     }
                 }
+
+                if (!writes.isEmpty()) {
+                    c.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                }
                 return true;
             }, false);
         } finally {
-            user.getIoLock().unlock();
-            user.getRefreshBuffer().requestDirectly();
+            for (User user : users) {
+                user.getIoLock().unlock();
+                if (!user.getDataSnapshot().equals(snapshots.get(user))) {
+                    user.getRefreshBuffer().requestDirectly();
+                }
+            }
         }
     }
 
@@ -261,17 +414,41 @@ public class MongoDBBacking extends AbstractBacking {
         try {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("users");
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", user.getUuid())).iterator()) {
-                    if (!cursor.hasNext()) {
-                        c.insertOne(fromUser(user));
-                    } else {
-                        c.replaceOne(new Document("_id", user.getUuid()), fromUser(user));
-                    }
+                return c.replaceOne(new Document("_id", user.getUuid()), fromUser(user), new UpdateOptions().upsert(true)).wasAcknowledged();
+            }, false);
+        } finally {
+            user.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean saveUsers(Collection<User> users) {
+        // lock in a consistent order, so concurrent batches can't deadlock
+        List<User> sorted = new ArrayList<>(users);
+        sorted.sort(Comparator.comparing(User::getUuid));
+
+        sorted.forEach(u -> u.getIoLock().lock());
+        try {
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            for (User user : sorted) {
+                Document id = new Document("_id", user.getUuid());
+                if (GenericUserManager.shouldSave(user)) {
+                    writes.add(new ReplaceOneModel<>(id, fromUser(user), new UpdateOptions().upsert(true)));
+                } else {
+                    writes.add(new DeleteOneModel<>(id));
                 }
+            }
+
+            if (writes.isEmpty()) {
                 return true;
+            }
+
+            return call(() -> {
+                MongoCollection<Document> c = database.getCollection("users");
+                return c.bulkWrite(writes, new BulkWriteOptions().ordered(false)).wasAcknowledged();
             }, false);
         } finally {
-            user.getIoLock().unlock();
+            sorted.forEach(u -> u.getIoLock().unlock());
         }
     }
 
@@ -307,14 +484,10 @@ public class MongoDBBacking extends AbstractBacking {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("groups");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", group.getName())).iterator()) {
-                    if (cursor.hasNext()) {
-                        // Group exists, let's load.
-                        Document d = cursor.next();
-                        group.setNodes(revert((Map<String, Boolean>) d.get("perms")));
-                    } else {
-                        c.insertOne(fromGroup(group));
-                    }
+                Document d = createIfAbsent(c, group.getName(), fromGroup(group));
+                if (d != null) {
+                    // Group exists, let's load.
+                    group.setNodes(revert((Map<String, Boolean>) d.get("perms")));
                 }
                 return true;
             }, false);
@@ -386,6 +559,32 @@ public class MongoDBBacking extends AbstractBacking {
         }
     }
 
+    @Override
+    public boolean saveGroups(Collection<Group> groups) {
+        // lock in a consistent order, so concurrent batches can't deadlock
+        List<Group> sorted = new ArrayList<>(groups);
+        sorted.sort(Comparator.comparing(Group::getName));
+
+        sorted.forEach(g -> g.getIoLock().lock());
+        try {
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            for (Group group : sorted) {
+                writes.add(new ReplaceOneModel<>(new Document("_id", group.getName()), fromGroup(group)));
+            }
+
+            if (writes.isEmpty()) {
+                return true;
+            }
+
+            return call(() -> {
+                MongoCollection<Document> c = database.getCollection("groups");
+                return c.bulkWrite(writes, new BulkWriteOptions().ordered(false)).wasAcknowledged();
+            }, false);
+        } finally {
+            sorted.forEach(g -> g.getIoLock().unlock());
+        }
+    }
+
     @Override
     public boolean deleteGroup(Group group) {
         group.getIoLock().lock();
@@ -411,13 +610,10 @@ public class MongoDBBacking extends AbstractBacking {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("tracks");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", track.getName())).iterator()) {
-                    if (!cursor.hasNext()) {
-                        c.insertOne(fromTrack(track));
-                    } else {
-                        Document d = cursor.next();
-                        track.setGroups((List<String>) d.get("groups"));
-                    }
+                Document d = createIfAbsent(c, track.getName(), fromTrack(track));
+                if (d != null) {
+                    // Track exists, let's load.
+                    track.setGroups((List<String>) d.get("groups"));
                 }
                 return true;
             }, false);
@@ -510,16 +706,8 @@ public class MongoDBBacking extends AbstractBacking {
     public boolean saveUUIDData(String username, UUID uuid) {
         return call(() -> {
             MongoCollection<Document> c = database.getCollection("uuid");
-
-            try (MongoCursor<Document> cursor = c.find(new Document("_id", uuid)).iterator()) {
-                if (cursor.hasNext()) {
-                    c.replaceOne(new Document("_id", uuid), new Document("_id", uuid).append("name", username.toLowerCase()));
-                } else {
-                    c.insertOne(new Document("_id", uuid).append("name", username.toLowerCase()));
-                }
-            }
-
-            return true;
+            Document d = new Document("_id", uuid).append("name", username.toLowerCase());
+            return c.replaceOne(new Document("_id", uuid), d, new UpdateOptions().upsert(true)).wasAcknowledged();
         }, false);
     }
 
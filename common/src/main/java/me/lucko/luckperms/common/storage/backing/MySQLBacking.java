@@ -22,9 +22,12 @@
 
 package me.lucko.luckperms.common.storage.backing;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.DatastoreConfiguration;
 
@@ -32,6 +35,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public class MySQLBacking extends SQLBacking {
@@ -39,14 +46,52 @@ public class MySQLBacking extends SQLBacking {
     private static final String CREATETABLE_UUID = "CREATE TABLE IF NOT EXISTS `lp_uuid` (`name` VARCHAR(16) NOT NULL, `uuid` VARCHAR(36) NOT NULL, PRIMARY KEY (`name`)) DEFAULT CHARSET=utf8;";
     private static final String CREATETABLE_USERS = "CREATE TABLE IF NOT EXISTS `lp_users` (`uuid` VARCHAR(36) NOT NULL, `name` VARCHAR(16) NOT NULL, `primary_group` VARCHAR(36) NOT NULL, `perms` TEXT NOT NULL, PRIMARY KEY (`uuid`)) DEFAULT CHARSET=utf8;";
     private static final String CREATETABLE_GROUPS = "CREATE TABLE IF NOT EXISTS `lp_groups` (`name` VARCHAR(36) NOT NULL, `perms` TEXT NULL, PRIMARY KEY (`name`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_USER_PERMISSIONS = "CREATE TABLE IF NOT EXISTS `lp_user_permissions` (`id` INT AUTO_INCREMENT NOT NULL, `uuid` VARCHAR(36) NOT NULL, `permission` TEXT NOT NULL, `value` BOOL NOT NULL, `server` TEXT NOT NULL, `world` TEXT NOT NULL, `expiry` BIGINT NOT NULL, `contexts` TEXT NOT NULL, PRIMARY KEY (`id`), KEY `uuid` (`uuid`), KEY `permission` (`permission`(255))) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_GROUP_PERMISSIONS = "CREATE TABLE IF NOT EXISTS `lp_group_permissions` (`id` INT AUTO_INCREMENT NOT NULL, `name` VARCHAR(36) NOT NULL, `permission` TEXT NOT NULL, `value` BOOL NOT NULL, `server` TEXT NOT NULL, `world` TEXT NOT NULL, `expiry` BIGINT NOT NULL, `contexts` TEXT NOT NULL, PRIMARY KEY (`id`), KEY `name` (`name`), KEY `permission` (`permission`(255))) DEFAULT CHARSET=utf8;";
     private static final String CREATETABLE_TRACKS = "CREATE TABLE IF NOT EXISTS `lp_tracks` (`name` VARCHAR(36) NOT NULL, `groups` TEXT NULL, PRIMARY KEY (`name`)) DEFAULT CHARSET=utf8;";
     private static final String CREATETABLE_ACTION = "CREATE TABLE IF NOT EXISTS `lp_actions` (`id` INT AUTO_INCREMENT NOT NULL, `time` BIGINT NOT NULL, `actor_uuid` VARCHAR(36) NOT NULL, `actor_name` VARCHAR(16) NOT NULL, `type` CHAR(1) NOT NULL, `acted_uuid` VARCHAR(36) NOT NULL, `acted_name` VARCHAR(36) NOT NULL, `action` VARCHAR(256) NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET=utf8;";
+    private static final Map<String, String> ACTION_INDEXES = ImmutableMap.of(
+            "time", "ALTER TABLE `lp_actions` ADD INDEX `time` (`time`)",
+            "actor", "ALTER TABLE `lp_actions` ADD INDEX `actor` (`actor_uuid`, `time`)",
+            "acted", "ALTER TABLE `lp_actions` ADD INDEX `acted` (`acted_uuid`, `time`)",
+            "acted_name", "ALTER TABLE `lp_actions` ADD INDEX `acted_name` (`type`, `acted_name`, `time`)"
+    );
+    private static final String CREATETABLE_MESSAGES = "CREATE TABLE IF NOT EXISTS `lp_messages` (`id` INT AUTO_INCREMENT NOT NULL, `time` BIGINT NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET=utf8;";
+
+    // The compact schema stores uuids as BINARY(16), and the names in the actions table as ids into lp_names
+    private static final String CREATETABLE_UUID_COMPACT = "CREATE TABLE IF NOT EXISTS `lp_uuid` (`name` VARCHAR(16) NOT NULL, `uuid` BINARY(16) NOT NULL, PRIMARY KEY (`name`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_USERS_COMPACT = "CREATE TABLE IF NOT EXISTS `lp_users` (`uuid` BINARY(16) NOT NULL, `name` VARCHAR(16) NOT NULL, `primary_group` VARCHAR(36) NOT NULL, `perms` TEXT NOT NULL, PRIMARY KEY (`uuid`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_USER_PERMISSIONS_COMPACT = "CREATE TABLE IF NOT EXISTS `lp_user_permissions` (`id` INT AUTO_INCREMENT NOT NULL, `uuid` BINARY(16) NOT NULL, `permission` TEXT NOT NULL, `value` BOOL NOT NULL, `server` TEXT NOT NULL, `world` TEXT NOT NULL, `expiry` BIGINT NOT NULL, `contexts` TEXT NOT NULL, PRIMARY KEY (`id`), KEY `uuid` (`uuid`), KEY `permission` (`permission`(255))) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_ACTION_COMPACT = "CREATE TABLE IF NOT EXISTS `lp_actions` (`id` INT AUTO_INCREMENT NOT NULL, `time` BIGINT NOT NULL, `actor_uuid` BINARY(16) NOT NULL, `actor_name` INT UNSIGNED NOT NULL, `type` CHAR(1) NOT NULL, `acted_uuid` BINARY(16) NULL, `acted_name` INT UNSIGNED NOT NULL, `action` VARCHAR(256) NOT NULL, PRIMARY KEY (`id`)) DEFAULT CHARSET=utf8;";
+    private static final String CREATETABLE_NAMES = "CREATE TABLE IF NOT EXISTS `lp_names` (`name_id` INT UNSIGNED AUTO_INCREMENT NOT NULL, `name` VARCHAR(36) NOT NULL, PRIMARY KEY (`name_id`), UNIQUE KEY `name` (`name`)) DEFAULT CHARSET=utf8 COLLATE=utf8_bin;";
+    private static final String NAMES_INSERT = "INSERT IGNORE INTO `lp_names` (`name`) VALUES(?), (?)";
+
+    private static final Set<String> UUID_COLUMNS = ImmutableSet.of("uuid", "actor_uuid", "acted_uuid");
+    private static final Set<String> NAME_COLUMNS = ImmutableSet.of("actor_name", "acted_name");
+    private static final String UUID_PARAM = "UNHEX(REPLACE(NULLIF(?, 'null'), '-', ''))";
+
+    // table --> {a uuid column, the statement creating the compact table, the statement copying the rows into it}
+    private static final Map<String, String[]> COMPACT_TABLES = ImmutableMap.of(
+            "lp_uuid", new String[]{"uuid", CREATETABLE_UUID_COMPACT,
+                    "INSERT INTO `lp_uuid_compact` (`name`, `uuid`) SELECT `name`, UNHEX(REPLACE(`uuid`, '-', '')) FROM `lp_uuid`"},
+            "lp_users", new String[]{"uuid", CREATETABLE_USERS_COMPACT,
+                    "INSERT INTO `lp_users_compact` (`uuid`, `name`, `primary_group`, `perms`) SELECT UNHEX(REPLACE(`uuid`, '-', '')), `name`, `primary_group`, `perms` FROM `lp_users`"},
+            "lp_user_permissions", new String[]{"uuid", CREATETABLE_USER_PERMISSIONS_COMPACT,
+                    "INSERT INTO `lp_user_permissions_compact` (`id`, `uuid`, `permission`, `value`, `server`, `world`, `expiry`, `contexts`) " +
+                    "SELECT `id`, UNHEX(REPLACE(`uuid`, '-', '')), `permission`, `value`, `server`, `world`, `expiry`, `contexts` FROM `lp_user_permissions`"},
+            "lp_actions", new String[]{"actor_uuid", CREATETABLE_ACTION_COMPACT,
+                    "INSERT INTO `lp_actions_compact` (`id`, `time`, `actor_uuid`, `actor_name`, `type`, `acted_uuid`, `acted_name`, `action`) " +
+                    "SELECT a.`id`, a.`time`, UNHEX(REPLACE(a.`actor_uuid`, '-', '')), actor.`name_id`, a.`type`, UNHEX(REPLACE(NULLIF(a.`acted_uuid`, 'null'), '-', '')), acted.`name_id`, a.`action` " +
+                    "FROM `lp_actions` a JOIN `lp_names` actor ON actor.`name`=a.`actor_name` COLLATE utf8_bin JOIN `lp_names` acted ON acted.`name`=a.`acted_name` COLLATE utf8_bin"}
+    );
+    private static final String NAMES_INSERT_FROM_ACTIONS = "INSERT IGNORE INTO `lp_names` (`name`) " +
+            "SELECT `actor_name` FROM `lp_actions` UNION ALL SELECT `acted_name` FROM `lp_actions`";
 
     private final DatastoreConfiguration configuration;
     private HikariDataSource hikari;
 
     public MySQLBacking(LuckPermsPlugin plugin, DatastoreConfiguration configuration) {
-        super(plugin, "MySQL");
+        super(plugin, "MySQL", configuration.isCompactSchema());
         this.configuration = configuration;
     }
 
@@ -84,7 +129,16 @@ public class MySQLBacking extends SQLBacking {
 
         hikari = new HikariDataSource(config);
 
-        if (!setupTables(CREATETABLE_UUID, CREATETABLE_USERS, CREATETABLE_GROUPS, CREATETABLE_TRACKS, CREATETABLE_ACTION)) {
+        String[] tables;
+        if (isCompactSchema()) {
+            tables = new String[]{CREATETABLE_UUID_COMPACT, CREATETABLE_USERS_COMPACT, CREATETABLE_USER_PERMISSIONS_COMPACT, CREATETABLE_GROUPS,
+                    CREATETABLE_GROUP_PERMISSIONS, CREATETABLE_TRACKS, CREATETABLE_NAMES, CREATETABLE_ACTION_COMPACT, CREATETABLE_MESSAGES};
+        } else {
+            tables = new String[]{CREATETABLE_UUID, CREATETABLE_USERS, CREATETABLE_USER_PERMISSIONS, CREATETABLE_GROUPS,
+                    CREATETABLE_GROUP_PERMISSIONS, CREATETABLE_TRACKS, CREATETABLE_ACTION, CREATETABLE_MESSAGES};
+        }
+
+        if (!setupTables(tables) || !createActionIndexes()) {
             plugin.getLog().severe("Error occurred whilst initialising the database.");
             shutdown();
         } else {
@@ -92,6 +146,166 @@ public class MySQLBacking extends SQLBacking {
         }
     }
 
+    /**
+     * Adds the indexes used by log queries to the actions table, if they don't already exist.
+     *
+     * @return true if successful
+     */
+    private boolean createActionIndexes() {
+        Set<String> existing = new HashSet<>();
+        boolean success = runQuery("SHOW INDEX FROM `lp_actions`", resultSet -> {
+            while (resultSet.next()) {
+                existing.add(resultSet.getString("Key_name"));
+            }
+            return true;
+        });
+
+        for (Map.Entry<String, String> index : ACTION_INDEXES.entrySet()) {
+            if (success && !existing.contains(index.getKey())) {
+                success = runQuery(index.getValue());
+            }
+        }
+        return success;
+    }
+
+    @Override
+    boolean migrateSchema() {
+        for (Map.Entry<String, String[]> table : COMPACT_TABLES.entrySet()) {
+            final boolean[] compact = {false};
+            boolean success = runQuery("SELECT `" + table.getValue()[0] + "` FROM `" + table.getKey() + "` WHERE 1=0", resultSet -> {
+                compact[0] = resultSet.getMetaData().getColumnType(1) == Types.BINARY;
+                return true;
+            });
+
+            if (!success) {
+                return false;
+            }
+
+            if (compact[0] && !isCompactSchema()) {
+                plugin.getLog().severe("Table " + table.getKey() + " has been converted to the compact schema. Set 'mysql-compact-schema' to true to use it.");
+                return false;
+            }
+
+            if (compact[0]) {
+                // left behind if the server stopped whilst the table was being converted
+                if (!runQuery("DROP TABLE IF EXISTS `" + table.getKey() + "_old`")) {
+                    return false;
+                }
+            } else if (isCompactSchema() && !convertToCompact(table.getKey(), table.getValue()[1], table.getValue()[2])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a table to the compact schema. The rows are copied into a new table, which then replaces the
+     * original, so the data is left untouched if anything fails along the way.
+     *
+     * @param table the table
+     * @param create the statement creating the compact version of the table
+     * @param copy the statement copying the rows of the table into the compact table
+     * @return true if successful
+     */
+    private boolean convertToCompact(String table, String create, String copy) {
+        plugin.getLog().info("Converting table " + table + " to the compact schema...");
+
+        String compact = table + "_compact";
+        if (!runQuery("DROP TABLE IF EXISTS `" + compact + "`") || !runQuery(create.replace("`" + table + "`", "`" + compact + "`"))) {
+            return false;
+        }
+
+        if (table.equals("lp_actions") && !runQuery(NAMES_INSERT_FROM_ACTIONS)) {
+            return false;
+        }
+
+        if (!runQuery(copy)) {
+            return false;
+        }
+
+        long rows = count(table);
+        long copied = count(compact);
+        if (rows == -1 || rows != copied) {
+            plugin.getLog().severe("Only " + copied + " of the " + rows + " rows in table " + table + " could be converted. The table has been left unchanged.");
+            runQuery("DROP TABLE IF EXISTS `" + compact + "`");
+            return false;
+        }
+
+        return runQuery("RENAME TABLE `" + table + "` TO `" + table + "_old`, `" + compact + "` TO `" + table + "`") &&
+                runQuery("DROP TABLE `" + table + "_old`");
+    }
+
+    private long count(String table) {
+        final long[] count = {-1};
+        runQuery("SELECT COUNT(*) FROM `" + table + "`", resultSet -> {
+            if (resultSet.next()) {
+                count[0] = resultSet.getLong(1);
+            }
+            return true;
+        });
+        return count[0];
+    }
+
+    @Override
+    String param(String column) {
+        if (isCompactSchema()) {
+            if (UUID_COLUMNS.contains(column)) {
+                return UUID_PARAM;
+            }
+            if (NAME_COLUMNS.contains(column)) {
+                return "(SELECT `name_id` FROM `lp_names` WHERE `name`=?)";
+            }
+        }
+        return "?";
+    }
+
+    @Override
+    String column(String column) {
+        if (isCompactSchema()) {
+            if (UUID_COLUMNS.contains(column)) {
+                return "LOWER(INSERT(INSERT(INSERT(INSERT(HEX(`" + column + "`), 9, 0, '-'), 14, 0, '-'), 19, 0, '-'), 24, 0, '-'))";
+            }
+            if (NAME_COLUMNS.contains(column)) {
+                return "(SELECT `name` FROM `lp_names` WHERE `name_id`=`lp_actions`.`" + column + "`)";
+            }
+        }
+        return column;
+    }
+
+    @Override
+    public boolean logAction(LogEntry entry) {
+        // the names have to be interned before the action can refer to them
+        if (isCompactSchema() && !runQuery(NAMES_INSERT, preparedStatement -> {
+            preparedStatement.setString(1, entry.getActorName());
+            preparedStatement.setString(2, entry.getActedName());
+        })) {
+            return false;
+        }
+        return super.logAction(entry);
+    }
+
+    @Override
+    String[] widenNodeColumns(String table) {
+        // TEXT columns can only be indexed by a prefix, so the permission index has to be recreated
+        return new String[]{"ALTER TABLE `" + table + "` DROP INDEX `permission`, MODIFY `permission` TEXT NOT NULL, MODIFY `server` TEXT NOT NULL, " +
+                "MODIFY `world` TEXT NOT NULL, MODIFY `contexts` TEXT NOT NULL, ADD INDEX `permission` (`permission`(255))"};
+    }
+
+    @Override
+    String upsert(String table, String key, String... columns) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (").append(columnList(key, columns)).append(") VALUES")
+                .append(valueList(key, columns)).append(" ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append("`").append(columns[i]).append("`=VALUES(`").append(columns[i]).append("`)");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    String insertIgnore(String table, String key, String... columns) {
+        return "INSERT IGNORE INTO " + table + " (" + columnList(key, columns) + ") VALUES" + valueList(key, columns);
+    }
+
     @Override
     boolean runQuery(String query, QueryPS queryPS) {
         boolean success = false;
@@ -159,4 +373,9 @@ public class MySQLBacking extends SQLBacking {
     Connection getConnection() throws SQLException {
         return hikari.getConnection();
     }
+
+    @Override
+    void releaseConnection(Connection connection) {
+        close(connection);
+    }
 }
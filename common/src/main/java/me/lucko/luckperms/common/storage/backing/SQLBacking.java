@@ -22,16 +22,33 @@
 
 package me.lucko.luckperms.common.storage.backing;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 
 import me.lucko.luckperms.api.LogEntry;
+import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.api.context.ContextSet;
+import me.lucko.luckperms.api.context.ImmutableContextSet;
+import me.lucko.luckperms.api.context.MutableContextSet;
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.NodeFactory;
+import me.lucko.luckperms.common.core.NodeModel;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
 import me.lucko.luckperms.common.managers.GroupManager;
 import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
@@ -40,15 +57,24 @@ import java.lang.reflect.Type;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
-
-import static me.lucko.luckperms.common.core.model.PermissionHolder.exportToLegacy;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 abstract class SQLBacking extends AbstractBacking {
     private static final QueryPS EMPTY_PS = preparedStatement -> {};
@@ -56,32 +82,57 @@ abstract class SQLBacking extends AbstractBacking {
     private static final Type NM_TYPE = new TypeToken<Map<String, Boolean>>() {}.getType();
     private static final Type T_TYPE = new TypeToken<List<String>>() {}.getType();
 
-    private static final String USER_INSERT = "INSERT INTO lp_users VALUES(?, ?, ?, ?)";
-    private static final String USER_SELECT = "SELECT * FROM lp_users WHERE uuid=?";
-    private static final String USER_SELECT_ALL = "SELECT uuid FROM lp_users";
-    private static final String USER_UPDATE = "UPDATE lp_users SET name=?, primary_group = ?, perms=? WHERE uuid=?";
-    private static final String USER_DELETE = "DELETE FROM lp_users WHERE uuid=?";
-    private static final String USER_DELETE_ALL = "DELETE FROM lp_users WHERE perms=?";
-
-    private static final String GROUP_INSERT = "INSERT INTO lp_groups VALUES(?, ?)";
-    private static final String GROUP_SELECT = "SELECT perms FROM lp_groups WHERE name=?";
-    private static final String GROUP_SELECT_ALL = "SELECT * FROM lp_groups";
-    private static final String GROUP_UPDATE = "UPDATE lp_groups SET perms=? WHERE name=?";
+    // The value of the legacy "perms" column once a holder's nodes have been moved into the permissions tables.
+    private static final String MIGRATED_PERMS = "{}";
+
+    // The number of characters the node columns can hold on every backing, the size of a utf8 MySQL TEXT column.
+    private static final int NODE_COLUMN_LENGTH = 21845;
+
+    private static final String USER_DELETE_ALL_DEFAULT = "DELETE FROM lp_users WHERE primary_group='default' AND perms='" + MIGRATED_PERMS + "' AND uuid NOT IN (" +
+            "SELECT uuid FROM lp_user_permissions WHERE NOT (permission='group.default' AND `value`=1 AND server='global' AND world='global' AND expiry=0 AND contexts='{}'))";
+
+    private static final String USER_PERMISSIONS_DELETE_ORPHANED = "DELETE FROM lp_user_permissions WHERE uuid NOT IN (SELECT uuid FROM lp_users)";
+
+    private static final String GROUP_SELECT = "SELECT name FROM lp_groups WHERE name=?";
+    private static final String GROUP_SELECT_ALL = "SELECT name FROM lp_groups";
     private static final String GROUP_DELETE = "DELETE FROM lp_groups WHERE name=?";
 
-    private static final String TRACK_INSERT = "INSERT INTO lp_tracks VALUES(?, ?)";
+    private static final String GROUP_PERMISSIONS_SELECT = "SELECT permission, `value`, server, world, expiry, contexts FROM lp_group_permissions WHERE name=?";
+    private static final String GROUP_PERMISSIONS_SELECT_ALL = "SELECT name, permission, `value`, server, world, expiry, contexts FROM lp_group_permissions";
+    private static final String GROUP_PERMISSIONS_SELECT_MULTIPLE = GROUP_PERMISSIONS_SELECT_ALL + " WHERE name IN ";
+    private static final String GROUP_PERMISSIONS_INSERT = "INSERT INTO lp_group_permissions(name, permission, `value`, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
+    private static final String GROUP_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM lp_group_permissions WHERE name=? AND permission=? AND `value`=? AND server=? AND world=? AND expiry=? AND contexts=?";
+    private static final String GROUP_PERMISSIONS_DELETE = "DELETE FROM lp_group_permissions WHERE name=?";
+
+    private static final String LEGACY_USER_DELETE_ALL_DEFAULT = "DELETE FROM lp_users WHERE perms=?";
+    private static final String LEGACY_GROUP_SELECT = "SELECT name, perms FROM lp_groups WHERE perms IS NOT NULL AND perms<>'" + MIGRATED_PERMS + "'";
+    private static final String LEGACY_GROUP_MARK_MIGRATED = "UPDATE lp_groups SET perms='" + MIGRATED_PERMS + "' WHERE name=?";
+
     private static final String TRACK_SELECT = "SELECT groups FROM lp_tracks WHERE name=?";
     private static final String TRACK_SELECT_ALL = "SELECT * FROM lp_tracks";
     private static final String TRACK_UPDATE = "UPDATE lp_tracks SET groups=? WHERE name=?";
     private static final String TRACK_DELETE = "DELETE FROM lp_tracks WHERE name=?";
 
-    private static final String UUIDCACHE_INSERT = "INSERT INTO lp_uuid VALUES(?, ?)";
-    private static final String UUIDCACHE_SELECT = "SELECT uuid FROM lp_uuid WHERE name=?";
-    private static final String UUIDCACHE_SELECT_NAME = "SELECT name FROM lp_uuid WHERE uuid=?";
-    private static final String UUIDCACHE_UPDATE = "UPDATE lp_uuid SET uuid=? WHERE name=?";
 
-    private static final String ACTION_INSERT = "INSERT INTO lp_actions(`time`, `actor_uuid`, `actor_name`, `type`, `acted_uuid`, `acted_name`, `action`) VALUES(?, ?, ?, ?, ?, ?, ?)";
-    private static final String ACTION_SELECT_ALL = "SELECT * FROM lp_actions";
+    private static final String ACTION_COUNT = "SELECT COUNT(*) FROM lp_actions";
+    private static final String ACTION_ORDER_NEWEST = " ORDER BY `time` DESC, id DESC";
+    private static final String ACTION_ORDER_OLDEST = " ORDER BY `time`, id";
+    private static final String ACTION_PAGE = " LIMIT ? OFFSET ?";
+
+    private static final String MESSAGE_INSERT = "INSERT INTO lp_messages(`time`, `msg`) VALUES(?, ?)";
+    private static final String MESSAGE_SELECT = "SELECT id, msg FROM lp_messages WHERE id>? ORDER BY id";
+    private static final String MESSAGE_SELECT_ID_RANGE = "SELECT MIN(id), MAX(id) FROM lp_messages";
+    private static final String MESSAGE_DELETE_EXPIRED = "DELETE FROM lp_messages WHERE `time`<?";
+
+    // How long messages are kept for, in milliseconds. Servers which fall further behind than this do a full sync instead.
+    private static final long MESSAGE_RETENTION = 60000L;
+
+    // The number of ids before the last message seen which are read again by each poll. Ids are allocated when a
+    // message is inserted, but become visible when it is committed, so messages can appear out of id order.
+    private static final long MESSAGE_WINDOW = 500L;
+
+    // The maximum number of parameters used in a single "IN" clause
+    private static final int MAX_IN_PARAMETERS = 500;
 
     protected static void close(AutoCloseable closeable) {
         if (closeable != null) {
@@ -92,15 +143,144 @@ abstract class SQLBacking extends AbstractBacking {
         }
     }
 
+    /**
+     * Returns a comma separated list of the given columns, for use in generated statements
+     */
+    static String columnList(String key, String... columns) {
+        StringBuilder sb = new StringBuilder("`").append(key).append("`");
+        for (String column : columns) {
+            sb.append(", `").append(column).append("`");
+        }
+        return sb.toString();
+    }
+
     private final Gson gson;
 
+    // If uuids are stored as binary, and the names in the actions table are interned. Only supported by MySQL.
+    @Getter(AccessLevel.PACKAGE)
+    private final boolean compactSchema;
+
+    // Dialect specific statements, built once by the implementation
+    private final String userUpsert;
+    private final String groupInsertIgnore;
+    private final String trackInsertIgnore;
+    private final String uuidCacheUpsert;
+
+    // Statements which read or write uuids, or the names of the actions table
+    private final String userSelectAll;
+    private final String userSelectMultiple;
+    private final String userDelete;
+    private final String userPermissionsSelectMultiple;
+    private final String userPermissionsInsert;
+    private final String userPermissionsDeleteSpecific;
+    private final String userPermissionsDelete;
+    private final String legacyUserSelect;
+    private final String legacyUserMarkMigrated;
+    private final String uuidCacheSelect;
+    private final String uuidCacheSelectName;
+    private final String actionInsert;
+    private final String actionSelectAll;
+
     SQLBacking(LuckPermsPlugin plugin, String name) {
+        this(plugin, name, false);
+    }
+
+    SQLBacking(LuckPermsPlugin plugin, String name, boolean compactSchema) {
         super(plugin, name);
+        this.compactSchema = compactSchema;
         gson = new Gson();
+        userUpsert = upsert("lp_users", "uuid", "name", "primary_group", "perms");
+        groupInsertIgnore = insertIgnore("lp_groups", "name", "perms");
+        trackInsertIgnore = insertIgnore("lp_tracks", "name", "groups");
+        uuidCacheUpsert = upsert("lp_uuid", "name", "uuid");
+
+        String uuid = param("uuid");
+        userSelectAll = "SELECT " + select("uuid") + " FROM lp_users";
+        userSelectMultiple = "SELECT " + select("uuid") + ", name, primary_group FROM lp_users WHERE uuid IN ";
+        userDelete = "DELETE FROM lp_users WHERE uuid=" + uuid;
+        userPermissionsSelectMultiple = "SELECT " + select("uuid") + ", permission, `value`, server, world, expiry, contexts FROM lp_user_permissions WHERE uuid IN ";
+        userPermissionsInsert = "INSERT INTO lp_user_permissions(uuid, permission, `value`, server, world, expiry, contexts) VALUES(" + uuid + ", ?, ?, ?, ?, ?, ?)";
+        userPermissionsDeleteSpecific = "DELETE FROM lp_user_permissions WHERE uuid=" + uuid + " AND permission=? AND `value`=? AND server=? AND world=? AND expiry=? AND contexts=?";
+        userPermissionsDelete = "DELETE FROM lp_user_permissions WHERE uuid=" + uuid;
+        legacyUserSelect = "SELECT " + select("uuid") + ", perms FROM lp_users WHERE perms<>'" + MIGRATED_PERMS + "'";
+        legacyUserMarkMigrated = "UPDATE lp_users SET perms='" + MIGRATED_PERMS + "' WHERE uuid=" + uuid;
+        uuidCacheSelect = "SELECT " + select("uuid") + " FROM lp_uuid WHERE name=?";
+        uuidCacheSelectName = "SELECT name FROM lp_uuid WHERE uuid=" + uuid;
+        actionInsert = "INSERT INTO lp_actions(`time`, `actor_uuid`, `actor_name`, `type`, `acted_uuid`, `acted_name`, `action`) VALUES(?, " +
+                param("actor_uuid") + ", " + param("actor_name") + ", ?, " + param("acted_uuid") + ", " + param("acted_name") + ", ?)";
+        actionSelectAll = "SELECT id, `time`, " + select("actor_uuid") + ", " + select("actor_name") + ", `type`, " +
+                select("acted_uuid") + ", " + select("acted_name") + ", `action` FROM lp_actions";
+    }
+
+    /**
+     * Returns the expression used in place of a parameter for the given column. Values are always bound as strings,
+     * so backings which store a column in another form convert them here.
+     *
+     * @param column the column
+     * @return the expression
+     */
+    String param(String column) {
+        return "?";
+    }
+
+    /**
+     * Returns the expression which reads the given column in the form its values are bound as.
+     *
+     * @param column the column
+     * @return the expression
+     * @see #param(String)
+     */
+    String column(String column) {
+        return column;
+    }
+
+    private String select(String column) {
+        String expression = column(column);
+        return expression.equals(column) ? column : expression + " AS " + column;
+    }
+
+    /**
+     * Returns a statement which inserts a row, or replaces the values of the existing row with the same key.
+     * Parameters are bound in the order the columns are given, starting with the key.
+     *
+     * @param table the table name
+     * @param key the primary key column
+     * @param columns the remaining columns
+     * @return the statement
+     */
+    abstract String upsert(String table, String key, String... columns);
+
+    /**
+     * Returns a statement which inserts a row, unless a row with the same key already exists.
+     * The update count of the statement is 0 if the row was not inserted.
+     *
+     * @param table the table name
+     * @param key the primary key column
+     * @param columns the remaining columns
+     * @return the statement
+     */
+    abstract String insertIgnore(String table, String key, String... columns);
+
+    /**
+     * Returns the statements which widen the node columns of a permissions table created by an earlier version,
+     * where the permission and contexts were limited to 200 characters, and the server and world to 36.
+     *
+     * @param table the permissions table
+     * @return the statements to run, or an empty array if the backing doesn't enforce column lengths
+     */
+    String[] widenNodeColumns(String table) {
+        return new String[0];
     }
 
     abstract Connection getConnection() throws SQLException;
 
+    /**
+     * Returns a connection obtained from {@link #getConnection()} once it is no longer needed.
+     *
+     * @param connection the connection
+     */
+    abstract void releaseConnection(Connection connection);
+
     abstract boolean runQuery(String query, QueryPS queryPS);
 
     abstract boolean runQuery(String query, QueryPS queryPS, QueryRS queryRS);
@@ -113,18 +293,470 @@ abstract class SQLBacking extends AbstractBacking {
         return runQuery(query, EMPTY_PS, queryRS);
     }
 
+    /**
+     * Runs a number of statements on a single connection, as one transaction.
+     * The transaction is rolled back if the function returns false, or throws an exception.
+     *
+     * @param queryTX the statements to run
+     * @return true if the transaction was committed
+     */
+    boolean runTransaction(QueryTX queryTX) {
+        boolean success = false;
+        Connection connection = null;
+
+        try {
+            connection = getConnection();
+            success = transact(connection, queryTX);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            releaseConnection(connection);
+        }
+        return success;
+    }
+
+    /**
+     * Runs a number of queries which only read from the database, as one transaction, so they see a
+     * consistent view of the data. Backings which keep separate connections for reads should override this.
+     *
+     * @param queryTX the queries to run
+     * @return true if the transaction completed
+     */
+    boolean runReadTransaction(QueryTX queryTX) {
+        return runTransaction(queryTX);
+    }
+
+    static boolean transact(Connection connection, QueryTX queryTX) throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            throw new IllegalStateException("SQL connection is null");
+        }
+
+        connection.setAutoCommit(false);
+        try {
+            boolean success = queryTX.onRun(connection);
+            if (success) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+            return success;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
     boolean setupTables(String... tableQueries) {
         boolean success = true;
         for (String q : tableQueries) {
             if (!runQuery(q)) success = false;
         }
 
-        return success && cleanupUsers();
+        return success && migrateSchema() && widenPermissionsTables() && migrateLegacyData() && cleanupUsers();
+    }
+
+    /**
+     * Converts existing tables to the schema used by this backing, if they were created with a different one.
+     * Called once the tables have been created.
+     *
+     * @return true if successful
+     */
+    boolean migrateSchema() {
+        return true;
+    }
+
+    /**
+     * Widens the node columns of the permissions tables, if they were created with fixed lengths too small to
+     * hold every node.
+     *
+     * @return true if successful
+     */
+    private boolean widenPermissionsTables() {
+        for (String table : new String[]{"lp_user_permissions", "lp_group_permissions"}) {
+            String[] statements = widenNodeColumns(table);
+            if (statements.length == 0) {
+                continue;
+            }
+
+            Set<String> narrow = new HashSet<>();
+            boolean success = runQuery("SELECT `permission`, `server`, `world`, `contexts` FROM `" + table + "` WHERE 1=0", resultSet -> {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    if (metaData.getPrecision(i) < NODE_COLUMN_LENGTH) {
+                        narrow.add(metaData.getColumnName(i));
+                    }
+                }
+                return true;
+            });
+
+            if (!success) {
+                return false;
+            }
+
+            if (narrow.isEmpty()) {
+                continue;
+            }
+
+            plugin.getLog().info("Widening the " + narrow + " columns of table " + table + "...");
+            for (String statement : statements) {
+                if (!runQuery(statement)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves nodes stored in the legacy "perms" column of the users and groups tables into the permissions tables.
+     *
+     * <p>Each holder is migrated in its own transaction, and is marked as migrated as part of it, so an
+     * interrupted migration is resumed on the next startup. Holders which can't be migrated are reported and
+     * left in place, without stopping the backing from starting.</p>
+     *
+     * @return false if the legacy data couldn't be read
+     */
+    private boolean migrateLegacyData() {
+        // users who only have the default group don't need to be migrated
+        boolean success = runQuery(LEGACY_USER_DELETE_ALL_DEFAULT, preparedStatement -> {
+            preparedStatement.setString(1, "{\"group.default\":true}");
+        });
+
+        if (!success) {
+            return false;
+        }
+
+        Map<String, String> users = new HashMap<>();
+        Map<String, String> groups = new HashMap<>();
+
+        success = runQuery(legacyUserSelect, resultSet -> {
+            while (resultSet.next()) {
+                users.put(resultSet.getString("uuid"), resultSet.getString("perms"));
+            }
+            return true;
+        });
+
+        success = success && runQuery(LEGACY_GROUP_SELECT, resultSet -> {
+            while (resultSet.next()) {
+                groups.put(resultSet.getString("name"), resultSet.getString("perms"));
+            }
+            return true;
+        });
+
+        if (!success) {
+            return false;
+        }
+
+        if (users.isEmpty() && groups.isEmpty()) {
+            return true;
+        }
+
+        plugin.getLog().info("Migrating " + users.size() + " users and " + groups.size() + " groups to the new permissions tables...");
+
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, String> e : groups.entrySet()) {
+            if (!migrateHolder("group " + e.getKey(), e.getKey(), e.getValue(), GROUP_PERMISSIONS_DELETE, GROUP_PERMISSIONS_INSERT, LEGACY_GROUP_MARK_MIGRATED)) {
+                failed.add("group " + e.getKey());
+            }
+        }
+
+        int migrated = 0;
+        for (Map.Entry<String, String> e : users.entrySet()) {
+            if (!migrateHolder("user " + e.getKey(), e.getKey(), e.getValue(), userPermissionsDelete, userPermissionsInsert, legacyUserMarkMigrated)) {
+                failed.add("user " + e.getKey());
+            }
+
+            if (++migrated % 1000 == 0) {
+                plugin.getLog().info("Migrated " + migrated + "/" + users.size() + " users.");
+            }
+        }
+
+        if (failed.isEmpty()) {
+            plugin.getLog().info("Migration complete.");
+        } else {
+            // one bad holder shouldn't stop everyone else from logging in
+            plugin.getLog().severe("Unable to migrate " + failed.size() + " users and groups: " + failed);
+            plugin.getLog().severe("Their legacy data has been logged above. It will be migrated again on the next startup, unless they are saved before then.");
+        }
+        return true;
+    }
+
+    /**
+     * Moves the legacy nodes of a single holder into the permissions tables, reporting why if they can't be.
+     *
+     * @param description a description of the holder
+     * @param holder the uuid or name of the holder
+     * @param json the holder's legacy data
+     * @return true if the holder was migrated
+     */
+    private boolean migrateHolder(String description, String holder, String json, String deleteQuery, String insertQuery, String markQuery) {
+        Set<NodeModel> nodes;
+        try {
+            nodes = parseLegacyNodes(json);
+        } catch (RuntimeException e) {
+            plugin.getLog().severe("Unable to read the legacy data of " + description + ": " + e + ". Legacy data: " + json);
+            return false;
+        }
+
+        if (runTransaction(connection -> {
+            replaceNodes(connection, deleteQuery, insertQuery, holder, nodes);
+            return execute(connection, markQuery, holder);
+        })) {
+            return true;
+        }
+
+        reportUnmigrated(description, nodes);
+        plugin.getLog().severe("Unable to migrate " + description + ". Legacy data: " + json);
+        return false;
+    }
+
+    /**
+     * Logs the nodes of a holder which couldn't be migrated that are too long for the node columns.
+     *
+     * @param holder a description of the holder
+     * @param nodes the holder's nodes
+     */
+    private void reportUnmigrated(String holder, Set<NodeModel> nodes) {
+        for (NodeModel node : nodes) {
+            int longest = Math.max(Math.max(node.getPermission().length(), serializeContexts(node.getContexts()).length()),
+                    Math.max(node.getServer().length(), node.getWorld().length()));
+            if (longest > NODE_COLUMN_LENGTH) {
+                plugin.getLog().severe("Node " + node.getPermission() + " of " + holder + " is too long to be stored.");
+            }
+        }
+    }
+
+    private Set<NodeModel> parseLegacyNodes(String json) {
+        Map<String, Boolean> legacy = gson.fromJson(json, NM_TYPE);
+        if (legacy == null) {
+            return new HashSet<>();
+        }
+
+        return legacy.entrySet().stream()
+                .map(e -> NodeModel.fromNode(NodeFactory.fromSerialisedNode(e.getKey(), e.getValue())))
+                .collect(Collectors.toSet());
+    }
+
+    private String serializeContexts(ContextSet contexts) {
+        Map<String, Set<String>> map = new TreeMap<>();
+        for (Map.Entry<String, String> e : contexts.toSet()) {
+            map.computeIfAbsent(e.getKey(), k -> new TreeSet<>()).add(e.getValue());
+        }
+
+        JsonObject object = new JsonObject();
+        for (Map.Entry<String, Set<String>> e : map.entrySet()) {
+            if (e.getValue().size() == 1) {
+                object.addProperty(e.getKey(), e.getValue().iterator().next());
+            } else {
+                JsonArray array = new JsonArray();
+                e.getValue().forEach(array::add);
+                object.add(e.getKey(), array);
+            }
+        }
+        return gson.toJson(object);
+    }
+
+    private ImmutableContextSet deserializeContexts(String json) {
+        if (json == null || json.equals("{}")) {
+            return ContextSet.empty();
+        }
+
+        MutableContextSet contexts = MutableContextSet.create();
+        for (Map.Entry<String, JsonElement> e : gson.fromJson(json, JsonObject.class).entrySet()) {
+            if (e.getValue().isJsonArray()) {
+                for (JsonElement value : e.getValue().getAsJsonArray()) {
+                    contexts.add(e.getKey(), value.getAsString());
+                }
+            } else {
+                contexts.add(e.getKey(), e.getValue().getAsString());
+            }
+        }
+        return contexts.makeImmutable();
+    }
+
+    private NodeModel readNode(ResultSet resultSet) throws SQLException {
+        return NodeModel.of(
+                resultSet.getString("permission"),
+                resultSet.getBoolean("value"),
+                resultSet.getString("server"),
+                resultSet.getString("world"),
+                resultSet.getLong("expiry"),
+                deserializeContexts(resultSet.getString("contexts"))
+        );
+    }
+
+    private void writeNode(PreparedStatement preparedStatement, String holder, NodeModel node) throws SQLException {
+        preparedStatement.setString(1, holder);
+        preparedStatement.setString(2, node.getPermission());
+        preparedStatement.setBoolean(3, node.isValue());
+        preparedStatement.setString(4, node.getServer());
+        preparedStatement.setString(5, node.getWorld());
+        preparedStatement.setLong(6, node.getExpiry());
+        preparedStatement.setString(7, serializeContexts(node.getContexts()));
+    }
+
+    private static Set<Node> toNodes(Collection<NodeModel> models) {
+        Set<Node> nodes = new HashSet<>(models.size());
+        for (NodeModel model : models) {
+            nodes.add(model.toNode());
+        }
+        return nodes;
+    }
+
+    private static Set<NodeModel> toModels(Collection<Node> nodes) {
+        Set<NodeModel> models = new HashSet<>(nodes.size());
+        for (Node node : nodes) {
+            models.add(NodeModel.fromNode(node));
+        }
+        return models;
+    }
+
+    private static boolean execute(Connection connection, String query, String param) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            ps.setString(1, param);
+            ps.execute();
+        }
+        return true;
+    }
+
+    private boolean loadNodes(String query, String holder, Set<NodeModel> accumulator) {
+        return runQuery(query, preparedStatement -> preparedStatement.setString(1, holder), resultSet -> {
+            while (resultSet.next()) {
+                accumulator.add(readNode(resultSet));
+            }
+            return true;
+        });
+    }
+
+    static String inClause(int size) {
+        return inClause(size, "?");
+    }
+
+    static String inClause(int size, String param) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "" : ", ").append(param);
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * Returns the values of an insert statement for the given columns, in the same order as {@link #columnList(String, String...)}
+     */
+    String valueList(String key, String... columns) {
+        StringBuilder sb = new StringBuilder("(").append(param(key));
+        for (String column : columns) {
+            sb.append(", ").append(param(column));
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * Runs a query ending in an "IN" clause for each partition of the given holders
+     *
+     * @param param the expression used for each holder in the clause
+     */
+    private static void queryIn(Connection connection, String query, String param, Collection<String> holders, QueryRS queryRS) throws SQLException {
+        for (List<String> partition : Iterables.partition(holders, MAX_IN_PARAMETERS)) {
+            try (PreparedStatement ps = connection.prepareStatement(query + inClause(partition.size(), param))) {
+                for (int i = 0; i < partition.size(); i++) {
+                    ps.setString(i + 1, partition.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    queryRS.onResult(rs);
+                }
+            }
+        }
+    }
+
+    private void insertNodes(Connection connection, String query, String holder, Collection<NodeModel> nodes) throws SQLException {
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            for (NodeModel node : nodes) {
+                writeNode(ps, holder, node);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void replaceNodes(Connection connection, String deleteQuery, String insertQuery, String holder, Collection<NodeModel> nodes) throws SQLException {
+        execute(connection, deleteQuery, holder);
+        insertNodes(connection, insertQuery, holder, nodes);
+    }
+
+    /**
+     * Updates the stored nodes of a number of holders to match the given sets, only inserting and deleting the
+     * rows which differ. The changes for all holders are sent in one batch.
+     *
+     * @param selectQuery a query selecting the holder name followed by the node columns, ending in an "IN" clause
+     * @param param the expression used for each holder in the "IN" clause
+     */
+    private void saveNodes(Connection connection, String selectQuery, String param, String deleteQuery, String insertQuery, Map<String, Set<NodeModel>> nodes) throws SQLException {
+        Map<String, Set<NodeModel>> existing = new HashMap<>();
+        queryIn(connection, selectQuery, param, nodes.keySet(), resultSet -> {
+            while (resultSet.next()) {
+                existing.computeIfAbsent(resultSet.getString(1), n -> new HashSet<>()).add(readNode(resultSet));
+            }
+            return true;
+        });
+
+        try (PreparedStatement delete = connection.prepareStatement(deleteQuery);
+             PreparedStatement insert = connection.prepareStatement(insertQuery)) {
+            int deletes = 0;
+            int inserts = 0;
+
+            for (Map.Entry<String, Set<NodeModel>> e : nodes.entrySet()) {
+                Set<NodeModel> stored = existing.getOrDefault(e.getKey(), Collections.emptySet());
+
+                for (NodeModel node : stored) {
+                    if (!e.getValue().contains(node)) {
+                        writeNode(delete, e.getKey(), node);
+                        delete.addBatch();
+                        deletes++;
+                    }
+                }
+
+                for (NodeModel node : e.getValue()) {
+                    if (!stored.contains(node)) {
+                        writeNode(insert, e.getKey(), node);
+                        insert.addBatch();
+                        inserts++;
+                    }
+                }
+            }
+
+            if (deletes != 0) {
+                delete.executeBatch();
+            }
+            if (inserts != 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private static void executeBatch(Connection connection, String query, Collection<String> params) throws SQLException {
+        if (params.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            for (String param : params) {
+                ps.setString(1, param);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
     }
 
     @Override
     public boolean logAction(LogEntry entry) {
-        return runQuery(ACTION_INSERT, preparedStatement -> {
+        return runQuery(actionInsert, preparedStatement -> {
             preparedStatement.setLong(1, entry.getTimestamp());
             preparedStatement.setString(2, entry.getActor().toString());
             preparedStatement.setString(3, entry.getActorName());
@@ -138,156 +770,285 @@ abstract class SQLBacking extends AbstractBacking {
     @Override
     public Log getLog() {
         final Log.Builder log = Log.builder();
-        boolean success = runQuery(ACTION_SELECT_ALL, resultSet -> {
+        boolean success = runQuery(actionSelectAll, resultSet -> {
             while (resultSet.next()) {
-                final String actedUuid = resultSet.getString("acted_uuid");
-                LogEntry e = new LogEntry(
-                        resultSet.getLong("time"),
-                        UUID.fromString(resultSet.getString("actor_uuid")),
-                        resultSet.getString("actor_name"),
-                        resultSet.getString("type").toCharArray()[0],
-                        actedUuid.equals("null") ? null : UUID.fromString(actedUuid),
-                        resultSet.getString("acted_name"),
-                        resultSet.getString("action")
-                );
-                log.add(e);
+                log.add(readLogEntry(resultSet));
             }
             return true;
         });
         return success ? log.build() : null;
     }
 
+    @Override
+    public int countLog(LogQuery query) {
+        List<Object> values = new ArrayList<>();
+        String filter = buildLogFilter(query, values);
+
+        final int[] count = {0};
+        boolean success = runQuery(ACTION_COUNT + filter, preparedStatement -> bind(preparedStatement, values), resultSet -> {
+            if (resultSet.next()) {
+                count[0] = resultSet.getInt(1);
+            }
+            return true;
+        });
+        return success ? count[0] : -1;
+    }
+
+    @Override
+    public LogPage queryLog(LogQuery query, int offset, int limit) {
+        List<Object> values = new ArrayList<>();
+        String filter = buildLogFilter(query, values);
+        values.add((long) limit);
+        values.add((long) offset);
+
+        String order = query.isOldestFirst() ? ACTION_ORDER_OLDEST : ACTION_ORDER_NEWEST;
+        ImmutableMap.Builder<LogQuery.Position, LogEntry> entries = ImmutableMap.builder();
+        boolean success = runQuery(actionSelectAll + filter + order + ACTION_PAGE, preparedStatement -> bind(preparedStatement, values), resultSet -> {
+            while (resultSet.next()) {
+                entries.put(LogQuery.Position.of(resultSet.getLong("time"), resultSet.getString("id")), readLogEntry(resultSet));
+            }
+            return true;
+        });
+        return success ? new LogPage(entries.build()) : null;
+    }
+
+    private static LogEntry readLogEntry(ResultSet resultSet) throws SQLException {
+        // stored as null by the compact schema
+        final String actedUuid = resultSet.getString("acted_uuid");
+        return new LogEntry(
+                resultSet.getLong("time"),
+                UUID.fromString(resultSet.getString("actor_uuid")),
+                resultSet.getString("actor_name"),
+                resultSet.getString("type").toCharArray()[0],
+                actedUuid == null || actedUuid.equals("null") ? null : UUID.fromString(actedUuid),
+                resultSet.getString("acted_name"),
+                resultSet.getString("action")
+        );
+    }
+
+    /**
+     * Builds the WHERE clause for a log query, adding the values to bind to the given list.
+     *
+     * @param query the query
+     * @param values the list to add values to
+     * @return the clause, or an empty string if the query doesn't filter anything
+     */
+    private String buildLogFilter(LogQuery query, List<Object> values) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getActor() != null) {
+            conditions.add("actor_uuid=" + param("actor_uuid"));
+            values.add(query.getActor().toString());
+        }
+        if (query.getActed() != null) {
+            conditions.add("acted_uuid=" + param("acted_uuid"));
+            values.add(query.getActed().toString());
+        }
+        if (query.getActedName() != null) {
+            conditions.add("acted_name=" + param("acted_name"));
+            values.add(query.getActedName());
+        }
+        if (query.getType() != null) {
+            conditions.add("`type`=?");
+            values.add(Character.toString(query.getType()));
+        }
+        if (query.getAfter() > 0L) {
+            conditions.add("`time`>=?");
+            values.add(query.getAfter());
+        }
+        if (query.getBefore() != Long.MAX_VALUE) {
+            conditions.add("`time`<?");
+            values.add(query.getBefore());
+        }
+        if (query.getFrom() != null) {
+            // the first condition lets the time indexes narrow the range
+            String op = query.isOldestFirst() ? ">" : "<";
+            conditions.add("`time`" + op + "=? AND (`time`" + op + "? OR id" + op + "?)");
+            values.add(query.getFrom().getTime());
+            values.add(query.getFrom().getTime());
+            values.add(Long.parseLong(query.getFrom().getId()));
+        }
+        if (query.getSearch() != null) {
+            conditions.add("(LOWER(" + column("actor_name") + ") LIKE ? ESCAPE '!' OR LOWER(" + column("acted_name") + ") LIKE ? ESCAPE '!' OR LOWER(`action`) LIKE ? ESCAPE '!')");
+            String pattern = "%" + query.getSearch().toLowerCase()
+                    .replace("!", "!!")
+                    .replace("%", "!%")
+                    .replace("_", "!_") + "%";
+            values.add(pattern);
+            values.add(pattern);
+            values.add(pattern);
+        }
+
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private static void bind(PreparedStatement preparedStatement, List<Object> values) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof Long) {
+                preparedStatement.setLong(i + 1, (Long) value);
+            } else {
+                preparedStatement.setString(i + 1, (String) value);
+            }
+        }
+    }
+
     @Override
     public boolean loadUser(UUID uuid, String username) {
-        User user = plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
-        user.getIoLock().lock();
+        return loadUsers(Collections.singletonList(UserIdentifier.of(uuid, username)));
+    }
+
+    @Override
+    public boolean loadUsers(Collection<UserIdentifier> identifiers) {
+        // lock in a consistent order, so concurrent batches can't deadlock
+        List<User> users = identifiers.stream()
+                .map(id -> plugin.getUserManager().getOrMake(id))
+                .distinct()
+                .sorted(Comparator.comparing(User::getUuid))
+                .collect(Collectors.toList());
+
+        users.forEach(u -> u.getIoLock().lock());
+
+        // users are only refreshed if their data changes
+        Map<User, Map.Entry<ImmutableSet<Node>, String>> snapshots = new HashMap<>();
+        users.forEach(u -> snapshots.put(u, u.getDataSnapshot()));
         try {
-            // screw "effectively final"
-            final String[] perms = new String[1];
-            final String[] pg = new String[1];
-            final String[] name = new String[1];
-            final boolean[] exists = {false};
+            Set<String> uuids = users.stream().map(u -> u.getUuid().toString()).collect(Collectors.toCollection(LinkedHashSet::new));
 
-            boolean s = runQuery(USER_SELECT,
-                    preparedStatement -> preparedStatement.setString(1, user.getUuid().toString()),
-                    resultSet -> {
-                        if (resultSet.next()) {
-                            // User exists.
-                            exists[0] = true;
-                            perms[0] = resultSet.getString("perms");
-                            pg[0] = resultSet.getString("primary_group");
-                            name[0] = resultSet.getString("name");
-                        }
-                        return true;
+            // uuid --> {name, primary group}
+            Map<String, String[]> data = new HashMap<>();
+            Map<String, Set<NodeModel>> nodes = new HashMap<>();
+
+            boolean s = runReadTransaction(connection -> {
+                queryIn(connection, userSelectMultiple, param("uuid"), uuids, resultSet -> {
+                    while (resultSet.next()) {
+                        data.put(resultSet.getString("uuid"), new String[]{resultSet.getString("name"), resultSet.getString("primary_group")});
                     }
-            );
+                    return true;
+                });
+                queryIn(connection, userPermissionsSelectMultiple, param("uuid"), uuids, resultSet -> {
+                    while (resultSet.next()) {
+                        nodes.computeIfAbsent(resultSet.getString("uuid"), u -> new HashSet<>()).add(readNode(resultSet));
+                    }
+                    return true;
+                });
+                return true;
+            });
 
             if (!s) {
                 return false;
             }
 
-            if (exists[0]) {
-                // User exists, let's load.
-                Map<String, Boolean> nodes = gson.fromJson(perms[0], NM_TYPE);
+            List<User> toSave = new ArrayList<>();
+            for (User user : users) {
+                String[] d = data.get(user.getUuid().toString());
 
-                user.setNodes(nodes);
-                user.setPrimaryGroup(pg[0]);
+                if (d != null) {
+                    // User exists, let's load.
+                    user.setNodes(toNodes(nodes.getOrDefault(user.getUuid().toString(), new HashSet<>())));
+                    user.setPrimaryGroup(d[1]);
 
-                boolean save = plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                    boolean save = plugin.getUserManager().giveDefaultIfNeeded(user, false);
 
-                if (user.getName() == null || user.getName().equalsIgnoreCase("null")) {
-                    user.setName(name[0]);
-                } else {
-                    if (!name[0].equals(user.getName())) {
-                        save = true;
+                    if (user.getName() == null || user.getName().equalsIgnoreCase("null")) {
+                        user.setName(d[0]);
+                    } else {
+                        if (!d[0].equals(user.getName())) {
+                            save = true;
+                        }
                     }
-                }
 
-                if (save) {
-                    String json = gson.toJson(exportToLegacy(user.getNodes()));
-                    runQuery(USER_UPDATE, preparedStatement -> {
-                        preparedStatement.setString(1, user.getName());
-                        preparedStatement.setString(2, user.getPrimaryGroup());
-                        preparedStatement.setString(3, json);
-                        preparedStatement.setString(4, user.getUuid().toString());
-                    });
-                }
+                    if (save) {
+                        toSave.add(user);
+                    }
 
-            } else {
-                if (GenericUserManager.shouldSave(user)) {
-                    user.clearNodes();
-                    user.setPrimaryGroup(null);
-                    plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                } else {
+                    if (GenericUserManager.shouldSave(user)) {
+                        user.clearNodes();
+                        user.setPrimaryGroup(null);
+                        plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                    }
                 }
             }
 
+            if (!toSave.isEmpty()) {
+                saveUsers(toSave);
+            }
+
             return true;
         } finally {
-            user.getIoLock().unlock();
-            user.getRefreshBuffer().requestDirectly();
+            for (User user : users) {
+                user.getIoLock().unlock();
+                if (!user.getDataSnapshot().equals(snapshots.get(user))) {
+                    user.getRefreshBuffer().requestDirectly();
+                }
+            }
         }
     }
 
     @Override
     public boolean saveUser(User user) {
-        if (!GenericUserManager.shouldSave(user)) {
-            user.getIoLock().lock();
-            try {
-                return runQuery(USER_DELETE, preparedStatement -> {
-                    preparedStatement.setString(1, user.getUuid().toString());
-                });
-            } finally {
-                user.getIoLock().unlock();
-            }
-        }
+        return saveUsers(Collections.singletonList(user));
+    }
+
+    @Override
+    public boolean saveUsers(Collection<User> users) {
+        // lock in a consistent order, so concurrent batches can't deadlock
+        List<User> sorted = new ArrayList<>(users);
+        sorted.sort(Comparator.comparing(User::getUuid));
 
-        user.getIoLock().lock();
+        sorted.forEach(u -> u.getIoLock().lock());
         try {
-            final boolean[] exists = {false};
-            boolean success = runQuery(USER_SELECT,
-                    preparedStatement -> preparedStatement.setString(1, user.getUuid().toString()),
-                    resultSet -> {
-                        if (resultSet.next()) {
-                            exists[0] = true;
-                        }
-                        return true;
-                    }
-            );
+            List<String> toDelete = new ArrayList<>();
+            Map<String, User> toSave = new LinkedHashMap<>();
+            Map<String, Set<NodeModel>> nodes = new HashMap<>();
 
-            if (!success) {
-                return false;
+            for (User user : sorted) {
+                String uuid = user.getUuid().toString();
+                if (GenericUserManager.shouldSave(user)) {
+                    toSave.put(uuid, user);
+                    nodes.put(uuid, toModels(user.getNodes()));
+                } else {
+                    toDelete.add(uuid);
+                }
             }
 
-            final String s = gson.toJson(exportToLegacy(user.getNodes()));
+            return runTransaction(connection -> {
+                executeBatch(connection, userPermissionsDelete, toDelete);
+                executeBatch(connection, userDelete, toDelete);
 
-            if (exists[0]) {
-                // User exists, let's update.
-                return runQuery(USER_UPDATE, preparedStatement -> {
-                    preparedStatement.setString(1, user.getName());
-                    preparedStatement.setString(2, user.getPrimaryGroup());
-                    preparedStatement.setString(3, s);
-                    preparedStatement.setString(4, user.getUuid().toString());
-                });
-            } else {
-                // Doesn't already exist, let's insert.
-                return runQuery(USER_INSERT, preparedStatement -> {
-                    preparedStatement.setString(1, user.getUuid().toString());
-                    preparedStatement.setString(2, user.getName());
-                    preparedStatement.setString(3, user.getPrimaryGroup());
-                    preparedStatement.setString(4, s);
-                });
-            }
+                if (toSave.isEmpty()) {
+                    return true;
+                }
 
+                try (PreparedStatement ps = connection.prepareStatement(userUpsert)) {
+                    for (Map.Entry<String, User> e : toSave.entrySet()) {
+                        ps.setString(1, e.getKey());
+                        ps.setString(2, e.getValue().getName());
+                        ps.setString(3, e.getValue().getPrimaryGroup());
+                        ps.setString(4, MIGRATED_PERMS);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
 
+                saveNodes(connection, userPermissionsSelectMultiple, param("uuid"), userPermissionsDeleteSpecific, userPermissionsInsert, nodes);
+                return true;
+            });
         } finally {
-            user.getIoLock().unlock();
+            sorted.forEach(u -> u.getIoLock().unlock());
         }
     }
 
     @Override
     public boolean cleanupUsers() {
-        return runQuery(USER_DELETE_ALL, preparedStatement -> {
-            preparedStatement.setString(1, "{\"group.default\":true}");
+        return runTransaction(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(USER_DELETE_ALL_DEFAULT)) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(USER_PERMISSIONS_DELETE_ORPHANED)) {
+                ps.execute();
+            }
+            return true;
         });
     }
 
@@ -295,7 +1056,7 @@ abstract class SQLBacking extends AbstractBacking {
     public Set<UUID> getUniqueUsers() {
         Set<UUID> uuids = new HashSet<>();
 
-        boolean success = runQuery(USER_SELECT_ALL, resultSet -> {
+        boolean success = runQuery(userSelectAll, resultSet -> {
             while (resultSet.next()) {
                 String uuid = resultSet.getString("uuid");
                 uuids.add(UUID.fromString(uuid));
@@ -311,19 +1072,21 @@ abstract class SQLBacking extends AbstractBacking {
         Group group = plugin.getGroupManager().getOrMake(name);
         group.getIoLock().lock();
         try {
+            Set<NodeModel> nodes = toModels(group.getNodes());
             final boolean[] exists = {false};
-            final String[] perms = new String[1];
 
-            boolean s = runQuery(GROUP_SELECT,
-                    preparedStatement -> preparedStatement.setString(1, group.getName()),
-                    resultSet -> {
-                        if (resultSet.next()) {
-                            exists[0] = true;
-                            perms[0] = resultSet.getString("perms");
-                        }
-                        return true;
-                    }
-            );
+            boolean s = runTransaction(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(groupInsertIgnore)) {
+                    ps.setString(1, group.getName());
+                    ps.setString(2, MIGRATED_PERMS);
+                    exists[0] = ps.executeUpdate() == 0;
+                }
+
+                if (!exists[0]) {
+                    insertNodes(connection, GROUP_PERMISSIONS_INSERT, group.getName(), nodes);
+                }
+                return true;
+            });
 
             if (!s) {
                 return false;
@@ -331,16 +1094,14 @@ abstract class SQLBacking extends AbstractBacking {
 
             if (exists[0]) {
                 // Group exists, let's load.
-                Map<String, Boolean> nodes = gson.fromJson(perms[0], NM_TYPE);
-                group.setNodes(nodes);
-                return true;
-            } else {
-                String json = gson.toJson(exportToLegacy(group.getNodes()));
-                return runQuery(GROUP_INSERT, preparedStatement -> {
-                    preparedStatement.setString(1, group.getName());
-                    preparedStatement.setString(2, json);
-                });
+                Set<NodeModel> loaded = new HashSet<>();
+                if (!loadNodes(GROUP_PERMISSIONS_SELECT, group.getName(), loaded)) {
+                    return false;
+                }
+
+                group.setNodes(toNodes(loaded));
             }
+            return true;
 
         } finally {
             group.getIoLock().unlock();
@@ -352,16 +1113,9 @@ abstract class SQLBacking extends AbstractBacking {
         Group group = plugin.getGroupManager().getOrMake(name);
         group.getIoLock().lock();
         try {
-            final String[] perms = new String[1];
             boolean s = runQuery(GROUP_SELECT,
                     preparedStatement -> preparedStatement.setString(1, name),
-                    resultSet -> {
-                        if (resultSet.next()) {
-                            perms[0] = resultSet.getString("perms");
-                            return true;
-                        }
-                        return false;
-                    }
+                    ResultSet::next
             );
 
             if (!s) {
@@ -369,8 +1123,12 @@ abstract class SQLBacking extends AbstractBacking {
             }
 
             // Group exists, let's load.
-            Map<String, Boolean> nodes = gson.fromJson(perms[0], NM_TYPE);
-            group.setNodes(nodes);
+            Set<NodeModel> nodes = new HashSet<>();
+            if (!loadNodes(GROUP_PERMISSIONS_SELECT, name, nodes)) {
+                return false;
+            }
+
+            group.setNodes(toNodes(nodes));
             return true;
 
         } finally {
@@ -393,32 +1151,60 @@ abstract class SQLBacking extends AbstractBacking {
             return false;
         }
 
-        for (String g : groups) {
-            if (!loadGroup(g)) {
-                b = false;
+        // load the nodes for all groups in one query
+        Map<String, Set<NodeModel>> nodes = new HashMap<>();
+        b = runQuery(GROUP_PERMISSIONS_SELECT_ALL, resultSet -> {
+            while (resultSet.next()) {
+                nodes.computeIfAbsent(resultSet.getString("name"), n -> new HashSet<>()).add(readNode(resultSet));
             }
+            return true;
+        });
+
+        if (!b) {
+            return false;
         }
 
-        if (b) {
-            GroupManager gm = plugin.getGroupManager();
-            gm.getAll().values().stream()
-                    .filter(g -> !groups.contains(g.getName()))
-                    .forEach(gm::unload);
+        for (String g : groups) {
+            Group group = plugin.getGroupManager().getOrMake(g);
+            group.getIoLock().lock();
+            try {
+                group.setNodes(toNodes(nodes.getOrDefault(g, new HashSet<>())));
+            } finally {
+                group.getIoLock().unlock();
+            }
         }
-        return b;
+
+        GroupManager gm = plugin.getGroupManager();
+        gm.getAll().values().stream()
+                .filter(g -> !groups.contains(g.getName()))
+                .forEach(gm::unload);
+        return true;
     }
 
     @Override
     public boolean saveGroup(Group group) {
-        group.getIoLock().lock();
+        return saveGroups(Collections.singletonList(group));
+    }
+
+    @Override
+    public boolean saveGroups(Collection<Group> groups) {
+        // lock in a consistent order, so concurrent batches can't deadlock
+        List<Group> sorted = new ArrayList<>(groups);
+        sorted.sort(Comparator.comparing(Group::getName));
+
+        sorted.forEach(g -> g.getIoLock().lock());
         try {
-            String json = gson.toJson(exportToLegacy(group.getNodes()));
-            return runQuery(GROUP_UPDATE, preparedStatement -> {
-                preparedStatement.setString(1, json);
-                preparedStatement.setString(2, group.getName());
+            Map<String, Set<NodeModel>> nodes = new HashMap<>();
+            for (Group group : sorted) {
+                nodes.put(group.getName(), toModels(group.getNodes()));
+            }
+
+            return runTransaction(connection -> {
+                saveNodes(connection, GROUP_PERMISSIONS_SELECT_MULTIPLE, "?", GROUP_PERMISSIONS_DELETE_SPECIFIC, GROUP_PERMISSIONS_INSERT, nodes);
+                return true;
             });
         } finally {
-            group.getIoLock().unlock();
+            sorted.forEach(g -> g.getIoLock().unlock());
         }
     }
 
@@ -427,8 +1213,9 @@ abstract class SQLBacking extends AbstractBacking {
         group.getIoLock().lock();
         boolean success;
         try {
-            success = runQuery(GROUP_DELETE, preparedStatement -> {
-                preparedStatement.setString(1, group.getName());
+            success = runTransaction(connection -> {
+                execute(connection, GROUP_PERMISSIONS_DELETE, group.getName());
+                return execute(connection, GROUP_DELETE, group.getName());
             });
         } finally {
             group.getIoLock().unlock();
@@ -443,35 +1230,38 @@ abstract class SQLBacking extends AbstractBacking {
         Track track = plugin.getTrackManager().getOrMake(name);
         track.getIoLock().lock();
         try {
-            final boolean[] exists = {false};
-            final String[] groups = new String[1];
+            String json = gson.toJson(track.getGroups());
+            final String[] groups = {null};
 
-            boolean s = runQuery(TRACK_SELECT,
-                    preparedStatement -> preparedStatement.setString(1, track.getName()),
-                    resultSet -> {
-                        if (resultSet.next()) {
-                            exists[0] = true;
-                            groups[0] = resultSet.getString("groups");
-                        }
+            boolean s = runTransaction(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(trackInsertIgnore)) {
+                    ps.setString(1, track.getName());
+                    ps.setString(2, json);
+                    if (ps.executeUpdate() != 0) {
                         return true;
                     }
-            );
+                }
+
+                // Track exists, let's load.
+                try (PreparedStatement ps = connection.prepareStatement(TRACK_SELECT)) {
+                    ps.setString(1, track.getName());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            groups[0] = rs.getString("groups");
+                        }
+                    }
+                }
+                return true;
+            });
 
             if (!s) {
                 return false;
             }
 
-            if (exists[0]) {
-                // Track exists, let's load.
+            if (groups[0] != null) {
                 track.setGroups(gson.fromJson(groups[0], T_TYPE));
-                return true;
-            } else {
-                String json = gson.toJson(track.getGroups());
-                return runQuery(TRACK_INSERT, preparedStatement -> {
-                    preparedStatement.setString(1, track.getName());
-                    preparedStatement.setString(2, json);
-                });
             }
+            return true;
 
         } finally {
             track.getIoLock().unlock();
@@ -570,32 +1360,10 @@ abstract class SQLBacking extends AbstractBacking {
     @Override
     public boolean saveUUIDData(String username, UUID uuid) {
         final String u = username.toLowerCase();
-        final boolean[] update = {false};
-        boolean s = runQuery(UUIDCACHE_SELECT,
-                preparedStatement -> preparedStatement.setString(1, u),
-                resultSet -> {
-                    if (resultSet.next()) {
-                        update[0] = true;
-                    }
-                    return true;
-                }
-        );
-
-        if (!s) {
-            return false;
-        }
-
-        if (update[0]) {
-            return runQuery(UUIDCACHE_UPDATE, preparedStatement -> {
-                preparedStatement.setString(1, uuid.toString());
-                preparedStatement.setString(2, u);
-            });
-        } else {
-            return runQuery(UUIDCACHE_INSERT, preparedStatement -> {
-                preparedStatement.setString(1, u);
-                preparedStatement.setString(2, uuid.toString());
-            });
-        }
+        return runQuery(uuidCacheUpsert, preparedStatement -> {
+            preparedStatement.setString(1, u);
+            preparedStatement.setString(2, uuid.toString());
+        });
     }
 
     @Override
@@ -603,7 +1371,7 @@ abstract class SQLBacking extends AbstractBacking {
         final String u = username.toLowerCase();
         final UUID[] uuid = {null};
 
-        boolean success = runQuery(UUIDCACHE_SELECT,
+        boolean success = runQuery(uuidCacheSelect,
                 preparedStatement -> preparedStatement.setString(1, u),
                 resultSet -> {
                     if (resultSet.next()) {
@@ -622,7 +1390,7 @@ abstract class SQLBacking extends AbstractBacking {
         final String u = uuid.toString();
         final String[] name = {null};
 
-        boolean success = runQuery(UUIDCACHE_SELECT_NAME,
+        boolean success = runQuery(uuidCacheSelectName,
                 preparedStatement -> preparedStatement.setString(1, u),
                 resultSet -> {
                     if (resultSet.next()) {
@@ -636,6 +1404,68 @@ abstract class SQLBacking extends AbstractBacking {
         return success ? name[0] : null;
     }
 
+    @Override
+    public boolean pushMessages(List<String> messages) {
+        final long now = System.currentTimeMillis();
+        return runTransaction(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(MESSAGE_INSERT)) {
+                for (String message : messages) {
+                    ps.setLong(1, now);
+                    ps.setString(2, message);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement(MESSAGE_DELETE_EXPIRED)) {
+                ps.setLong(1, now - MESSAGE_RETENTION);
+                ps.execute();
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public long pollMessages(long lastId, Consumer<String> consumer) {
+        final long[] range = {0, 0};
+        final boolean[] empty = {true};
+        boolean success = runQuery(MESSAGE_SELECT_ID_RANGE, resultSet -> {
+            if (resultSet.next()) {
+                range[0] = resultSet.getLong(1);
+                range[1] = resultSet.getLong(2);
+                empty[0] = resultSet.wasNull();
+            }
+            return true;
+        });
+
+        if (!success) {
+            return -1;
+        }
+
+        if (empty[0]) {
+            return Math.max(lastId, 0);
+        }
+
+        // the message after the last one seen has already been removed
+        if (lastId > 0 && lastId <= range[1] && range[0] > lastId + 1) {
+            consumer.accept(null);
+        }
+
+        // the ids have been reset since the last poll, so all of the stored messages are new
+        final long from = lastId < 0 || lastId > range[1] ? 0 : Math.max(lastId - MESSAGE_WINDOW, 0);
+        final long[] id = {lastId > range[1] ? 0 : Math.max(lastId, 0)};
+
+        success = runQuery(MESSAGE_SELECT, preparedStatement -> preparedStatement.setLong(1, from), resultSet -> {
+            while (resultSet.next()) {
+                id[0] = Math.max(id[0], resultSet.getLong("id"));
+                consumer.accept(resultSet.getString("msg"));
+            }
+            return true;
+        });
+
+        return success ? id[0] : -1;
+    }
+
     interface QueryPS {
         void onRun(PreparedStatement preparedStatement) throws SQLException;
     }
@@ -643,4 +1473,8 @@ abstract class SQLBacking extends AbstractBacking {
     interface QueryRS {
         boolean onResult(ResultSet resultSet) throws SQLException;
     }
+
+    interface QueryTX {
+        boolean onRun(Connection connection) throws SQLException;
+    }
 }
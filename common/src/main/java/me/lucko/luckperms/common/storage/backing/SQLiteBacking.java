@@ -27,21 +27,36 @@ import me.lucko.luckperms.common.LuckPermsPlugin;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
 
-public class SQLiteBacking extends SQLBacking {
+public class SQLiteBacking extends EmbeddedSQLBacking {
+
+    // How long to wait for a lock held by another connection, in milliseconds
+    private static final int BUSY_TIMEOUT = 5000;
+
+    // The flag passed to sqlite3_open_v2 to open a connection for reading only
+    private static final int SQLITE_OPEN_READONLY = 0x00000001;
 
     private static final String CREATETABLE_UUID = "CREATE TABLE IF NOT EXISTS `lp_uuid` (`name` VARCHAR(16) NOT NULL, `uuid` VARCHAR(36) NOT NULL, PRIMARY KEY (`name`));";
     private static final String CREATETABLE_USERS = "CREATE TABLE IF NOT EXISTS `lp_users` (`uuid` VARCHAR(36) NOT NULL, `name` VARCHAR(16) NOT NULL, `primary_group` VARCHAR(36) NOT NULL, `perms` TEXT NOT NULL, PRIMARY KEY (`uuid`));";
     private static final String CREATETABLE_GROUPS = "CREATE TABLE IF NOT EXISTS `lp_groups` (`name` VARCHAR(36) NOT NULL, `perms` TEXT NULL, PRIMARY KEY (`name`));";
+    private static final String CREATETABLE_USER_PERMISSIONS = "CREATE TABLE IF NOT EXISTS `lp_user_permissions` (`id` INTEGER PRIMARY KEY NOT NULL, `uuid` VARCHAR(36) NOT NULL, `permission` TEXT NOT NULL, `value` BOOL NOT NULL, `server` TEXT NOT NULL, `world` TEXT NOT NULL, `expiry` BIGINT NOT NULL, `contexts` TEXT NOT NULL);";
+    private static final String CREATETABLE_GROUP_PERMISSIONS = "CREATE TABLE IF NOT EXISTS `lp_group_permissions` (`id` INTEGER PRIMARY KEY NOT NULL, `name` VARCHAR(36) NOT NULL, `permission` TEXT NOT NULL, `value` BOOL NOT NULL, `server` TEXT NOT NULL, `world` TEXT NOT NULL, `expiry` BIGINT NOT NULL, `contexts` TEXT NOT NULL);";
+    private static final String CREATEINDEX_USER_PERMISSIONS_UUID = "CREATE INDEX IF NOT EXISTS `lp_user_permissions_uuid` ON `lp_user_permissions` (`uuid`);";
+    private static final String CREATEINDEX_USER_PERMISSIONS_PERMISSION = "CREATE INDEX IF NOT EXISTS `lp_user_permissions_permission` ON `lp_user_permissions` (`permission`);";
+    private static final String CREATEINDEX_GROUP_PERMISSIONS_NAME = "CREATE INDEX IF NOT EXISTS `lp_group_permissions_name` ON `lp_group_permissions` (`name`);";
+    private static final String CREATEINDEX_GROUP_PERMISSIONS_PERMISSION = "CREATE INDEX IF NOT EXISTS `lp_group_permissions_permission` ON `lp_group_permissions` (`permission`);";
     private static final String CREATETABLE_TRACKS = "CREATE TABLE IF NOT EXISTS `lp_tracks` (`name` VARCHAR(36) NOT NULL, `groups` TEXT NULL, PRIMARY KEY (`name`));";
     private static final String CREATETABLE_ACTION = "CREATE TABLE IF NOT EXISTS `lp_actions` (`id` INTEGER PRIMARY KEY NOT NULL, `time` BIG INT NOT NULL, `actor_uuid` VARCHAR(36) NOT NULL, `actor_name` VARCHAR(16) NOT NULL, `type` CHAR(1) NOT NULL, `acted_uuid` VARCHAR(36) NOT NULL, `acted_name` VARCHAR(36) NOT NULL, `action` VARCHAR(256) NOT NULL);";
+    private static final String CREATEINDEX_ACTIONS_TIME = "CREATE INDEX IF NOT EXISTS `lp_actions_time` ON `lp_actions` (`time`);";
+    private static final String CREATEINDEX_ACTIONS_ACTOR = "CREATE INDEX IF NOT EXISTS `lp_actions_actor` ON `lp_actions` (`actor_uuid`, `time`);";
+    private static final String CREATEINDEX_ACTIONS_ACTED = "CREATE INDEX IF NOT EXISTS `lp_actions_acted` ON `lp_actions` (`acted_uuid`, `time`);";
+    private static final String CREATEINDEX_ACTIONS_ACTED_NAME = "CREATE INDEX IF NOT EXISTS `lp_actions_acted_name` ON `lp_actions` (`type`, `acted_name`, `time`);";
+    private static final String CREATETABLE_MESSAGES = "CREATE TABLE IF NOT EXISTS `lp_messages` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `time` BIGINT NOT NULL, `msg` TEXT NOT NULL);";
 
     private final File file;
-    private final Object connectionLock = new Object();
-    private Connection connection = null;
 
     public SQLiteBacking(LuckPermsPlugin plugin, File file) {
         super(plugin, "SQLite");
@@ -50,7 +65,10 @@ public class SQLiteBacking extends SQLBacking {
 
     @Override
     public void init() {
-        if (!setupTables(CREATETABLE_UUID, CREATETABLE_USERS, CREATETABLE_GROUPS, CREATETABLE_TRACKS, CREATETABLE_ACTION)) {
+        if (!setupTables(CREATETABLE_UUID, CREATETABLE_USERS, CREATETABLE_USER_PERMISSIONS, CREATETABLE_GROUPS, CREATETABLE_GROUP_PERMISSIONS, CREATETABLE_TRACKS, CREATETABLE_ACTION, CREATETABLE_MESSAGES,
+                CREATEINDEX_USER_PERMISSIONS_UUID, CREATEINDEX_USER_PERMISSIONS_PERMISSION,
+                CREATEINDEX_GROUP_PERMISSIONS_NAME, CREATEINDEX_GROUP_PERMISSIONS_PERMISSION,
+                CREATEINDEX_ACTIONS_TIME, CREATEINDEX_ACTIONS_ACTOR, CREATEINDEX_ACTIONS_ACTED, CREATEINDEX_ACTIONS_ACTED_NAME)) {
             plugin.getLog().severe("Error occurred whilst initialising the database.");
             shutdown();
         } else {
@@ -59,81 +77,43 @@ public class SQLiteBacking extends SQLBacking {
     }
 
     @Override
-    boolean runQuery(String query, QueryPS queryPS) {
-        boolean success = false;
-
-        PreparedStatement preparedStatement = null;
-
-        try {
-            Connection connection = getConnection();
-            if (connection == null || connection.isClosed()) {
-                throw new IllegalStateException("SQL connection is null");
-            }
-
-            preparedStatement = connection.prepareStatement(query);
-            queryPS.onRun(preparedStatement);
-
-            preparedStatement.execute();
-            success = true;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(preparedStatement);
-        }
-        return success;
+    String upsert(String table, String key, String... columns) {
+        // the bundled driver predates ON CONFLICT ... DO UPDATE
+        return "INSERT OR REPLACE INTO " + table + " (" + columnList(key, columns) + ") VALUES" + inClause(columns.length + 1);
     }
 
     @Override
-    boolean runQuery(String query, QueryPS queryPS, QueryRS queryRS) {
-        boolean success = false;
-
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-
-        try {
-            Connection connection = getConnection();
-            if (connection == null || connection.isClosed()) {
-                throw new IllegalStateException("SQL connection is null");
-            }
-
-            preparedStatement = connection.prepareStatement(query);
-            queryPS.onRun(preparedStatement);
-
-            resultSet = preparedStatement.executeQuery();
-            success = queryRS.onResult(resultSet);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            close(resultSet);
-            close(preparedStatement);
-        }
-        return success;
+    String insertIgnore(String table, String key, String... columns) {
+        return "INSERT OR IGNORE INTO " + table + " (" + columnList(key, columns) + ") VALUES" + inClause(columns.length + 1);
     }
 
     @Override
-    public void shutdown() {
+    Connection openConnection(boolean write) throws SQLException {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException ignored) {
         }
-    }
 
-    @Override
-    Connection getConnection() throws SQLException {
-        synchronized (connectionLock) {
-            if (connection == null || connection.isClosed()) {
-                try {
-                    Class.forName("org.sqlite.JDBC");
-                } catch (ClassNotFoundException ignored) {
-                }
-
-                connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
-            }
+        Properties properties = new Properties();
+        if (!write) {
+            // SQLite only allows a connection to be made read only when it is opened
+            properties.setProperty("open_mode", Integer.toString(SQLITE_OPEN_READONLY));
         }
 
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath(), properties);
+        try (Statement statement = connection.createStatement()) {
+            // wait for locks held by other connections, rather than failing straight away
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT);
+
+            if (write) {
+                // in WAL mode readers don't block the writer, or each other. the journal mode is stored in the database file
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+            }
+        } catch (SQLException e) {
+            close(connection);
+            throw e;
+        }
         return connection;
     }
 }
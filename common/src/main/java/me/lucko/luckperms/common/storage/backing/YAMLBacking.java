@@ -24,6 +24,9 @@ package me.lucko.luckperms.common.storage.backing;
 
 import lombok.Cleanup;
 
+import com.google.common.collect.ImmutableSet;
+
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
@@ -37,11 +40,8 @@ import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -88,11 +88,10 @@ public class YAMLBacking extends FlatfileBacking {
 
     private boolean doWrite(File file, Map<String, Object> values) {
         try {
-            @Cleanup FileWriter fileWriter = new FileWriter(file);
-            @Cleanup BufferedWriter bufferedWriter = new BufferedWriter(fileWriter);
-            getYaml().dump(values, bufferedWriter);
-            bufferedWriter.flush();
-            return true;
+            return writeAtomically(file, writer -> {
+                getYaml().dump(values, writer);
+                return true;
+            });
         } catch (Throwable t) {
             t.printStackTrace();
             return false;
@@ -103,37 +102,47 @@ public class YAMLBacking extends FlatfileBacking {
     public boolean loadUser(UUID uuid, String username) {
         User user = plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
         user.getIoLock().lock();
+        Map.Entry<ImmutableSet<Node>, String> snapshot = user.getDataSnapshot();
         try {
             return call(() -> {
                 File userFile = new File(usersDir, uuid.toString() + ".yml");
                 if (userFile.exists()) {
-                    return doRead(userFile, values -> {
+                    final boolean[] save = {false};
+                    boolean success = doRead(userFile, values -> {
                         // User exists, let's load.
                         String name = (String) values.get("name");
                         user.setPrimaryGroup((String) values.get("primary-group"));
                         Map<String, Boolean> perms = (Map<String, Boolean>) values.get("perms");
                         user.setNodes(perms);
 
-                        boolean save = plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                        save[0] = plugin.getUserManager().giveDefaultIfNeeded(user, false);
 
                         if (user.getName() == null || user.getName().equalsIgnoreCase("null")) {
                             user.setName(name);
                         } else {
                             if (!name.equals(user.getName())) {
-                                save = true;
+                                save[0] = true;
                             }
                         }
-
-                        if (save) {
-                            Map<String, Object> data = new HashMap<>();
-                            data.put("uuid", user.getUuid().toString());
-                            data.put("name", user.getName());
-                            data.put("primary-group", user.getPrimaryGroup());
-                            data.put("perms", exportToLegacy(user.getNodes()));
-                            doWrite(userFile, data);
-                        }
                         return true;
                     });
+
+                    if (!success) {
+                        return false;
+                    }
+
+                    if (!GenericUserManager.shouldSave(user)) {
+                        // The user only has default data, so doesn't need a file.
+                        userFile.delete();
+                    } else if (save[0]) {
+                        Map<String, Object> data = new HashMap<>();
+                        data.put("uuid", user.getUuid().toString());
+                        data.put("name", user.getName());
+                        data.put("primary-group", user.getPrimaryGroup());
+                        data.put("perms", exportToLegacy(user.getNodes()));
+                        doWrite(userFile, data);
+                    }
+                    return true;
                 } else {
                     if (GenericUserManager.shouldSave(user)) {
                         user.clearNodes();
@@ -145,7 +154,9 @@ public class YAMLBacking extends FlatfileBacking {
             }, false);
         } finally {
             user.getIoLock().unlock();
-            user.getRefreshBuffer().requestDirectly();
+            if (!user.getDataSnapshot().equals(snapshot)) {
+                user.getRefreshBuffer().requestDirectly();
+            }
         }
     }
 
@@ -162,15 +173,6 @@ public class YAMLBacking extends FlatfileBacking {
                     return true;
                 }
 
-                if (!userFile.exists()) {
-                    try {
-                        userFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 Map<String, Object> values = new HashMap<>();
                 values.put("uuid", user.getUuid().toString());
                 values.put("name", user.getName());
@@ -237,13 +239,6 @@ public class YAMLBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     Map<String, Object> values = new HashMap<>();
                     values.put("name", group.getName());
                     values.put("perms", exportToLegacy(group.getNodes()));
@@ -282,7 +277,7 @@ public class YAMLBacking extends FlatfileBacking {
                 .map(s -> s.substring(0, s.length() - 4))
                 .collect(Collectors.toList());
 
-        groups.forEach(this::loadGroup);
+        loadInParallel(groups, this::loadGroup);
 
         GroupManager gm = plugin.getGroupManager();
         gm.getAll().values().stream()
@@ -297,14 +292,6 @@ public class YAMLBacking extends FlatfileBacking {
         try {
             return call(() -> {
                 File groupFile = new File(groupsDir, group.getName() + ".yml");
-                if (!groupFile.exists()) {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
 
                 Map<String, Object> values = new HashMap<>();
                 values.put("name", group.getName());
@@ -345,13 +332,6 @@ public class YAMLBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     Map<String, Object> values = new HashMap<>();
                     values.put("name", track.getName());
                     values.put("groups", track.getGroups());
@@ -404,14 +384,6 @@ public class YAMLBacking extends FlatfileBacking {
         try {
             return call(() -> {
                 File trackFile = new File(tracksDir, track.getName() + ".yml");
-                if (!trackFile.exists()) {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
 
                 Map<String, Object> values = new HashMap<>();
                 values.put("name", track.getName());
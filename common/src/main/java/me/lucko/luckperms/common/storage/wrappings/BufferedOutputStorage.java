@@ -34,6 +34,8 @@ import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.Buffer;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -54,6 +56,11 @@ public class BufferedOutputStorage implements Storage, Runnable {
         public Boolean dequeue(User user) {
             return backing.saveUser(user).join();
         }
+
+        @Override
+        protected List<Boolean> dequeueAll(List<User> users) {
+            return Collections.nCopies(users.size(), backing.saveUsers(users).join());
+        }
     };
 
     private final Buffer<Group, Boolean> groupOutputBuffer = new Buffer<Group, Boolean>() {
@@ -61,6 +68,11 @@ public class BufferedOutputStorage implements Storage, Runnable {
         public Boolean dequeue(Group group) {
             return backing.saveGroup(group).join();
         }
+
+        @Override
+        protected List<Boolean> dequeueAll(List<Group> groups) {
+            return Collections.nCopies(groups.size(), backing.saveGroups(groups).join());
+        }
     };
 
     private final Buffer<Track, Boolean> trackOutputBuffer = new Buffer<Track, Boolean>() {
@@ -90,7 +102,7 @@ public class BufferedOutputStorage implements Storage, Runnable {
         userOutputBuffer.flush(flushTime);
         groupOutputBuffer.flush(flushTime);
         trackOutputBuffer.flush(flushTime);
-        userOutputBuffer.flush(flushTime);
+        uuidDataOutputBuffer.flush(flushTime);
     }
 
     @Override
@@ -23,36 +23,135 @@
 package me.lucko.luckperms.common.storage.wrappings;
 
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Delegate;
 
 import me.lucko.luckperms.api.LogEntry;
+import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
+import me.lucko.luckperms.common.data.LogPage;
+import me.lucko.luckperms.common.data.LogQuery;
 import me.lucko.luckperms.common.storage.Storage;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
- * A Datastore wrapping that ensures all tasks are completed before {@link Storage#shutdown()} is called.
+ * A Datastore wrapping that tracks every operation until it completes, limits how many operations of each type
+ * run at once, and waits for all of them to finish before {@link Storage#shutdown()} is called.
  */
-@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class TolerantStorage implements Storage {
-    public static TolerantStorage wrap(Storage storage) {
-        return new TolerantStorage(storage);
+    public static TolerantStorage wrap(LuckPermsPlugin plugin, Storage storage) {
+        return new TolerantStorage(plugin, storage);
     }
 
+    // How long shutdown waits for pending operations, in milliseconds
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
     @Delegate(types = Delegated.class)
     private final Storage backing;
 
-    private final Phaser phaser = new Phaser();
+    private final LuckPermsPlugin plugin;
+
+    private final Map<OperationType, Limiter> limiters = new EnumMap<>(OperationType.class);
+
+    // The number of operations which have been submitted, but not yet completed
+    private int pending = 0;
+    private final Object pendingLock = new Object();
+
+    private TolerantStorage(LuckPermsPlugin plugin, Storage backing) {
+        this.plugin = plugin;
+        this.backing = backing;
+        for (OperationType type : OperationType.values()) {
+            limiters.put(type, new Limiter(type.getMaxRunning()));
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(OperationType type, Supplier<CompletableFuture<T>> operation) {
+        synchronized (pendingLock) {
+            pending++;
+        }
+
+        CompletableFuture<T> future = limiters.get(type).submit(operation);
+        future.whenComplete((r, t) -> {
+            synchronized (pendingLock) {
+                if (--pending == 0) {
+                    pendingLock.notifyAll();
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Gets the number of operations which are either running, or waiting to be run.
+     *
+     * @return the number of pending operations
+     */
+    public int getPending() {
+        synchronized (pendingLock) {
+            return pending;
+        }
+    }
+
+    /**
+     * Waits for all pending operations to complete.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if there are no pending operations
+     */
+    public boolean drain(long timeout, TimeUnit unit) {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        synchronized (pendingLock) {
+            while (pending != 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                try {
+                    pendingLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private String describeLimiters() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<OperationType, Limiter> e : limiters.entrySet()) {
+            Limiter l = e.getValue();
+            if (sb.length() != 0) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey().name().toLowerCase()).append(": ")
+                    .append(l.getRunning()).append(" running, ")
+                    .append(l.getQueued()).append(" queued, ")
+                    .append(l.getCompleted().get()).append(" completed, ")
+                    .append(l.getFailed().get()).append(" failed");
+        }
+        return sb.toString();
+    }
 
     @Override
     public Storage force() {
@@ -61,11 +160,18 @@ public class TolerantStorage implements Storage {
 
     @Override
     public void shutdown() {
-        // Wait for other threads to finish.
-        try {
-            phaser.awaitAdvanceInterruptibly(phaser.getPhase(), 5, TimeUnit.SECONDS);
-        } catch (InterruptedException | TimeoutException e) {
-            e.printStackTrace();
+        int count = getPending();
+        if (count != 0) {
+            plugin.getLog().info("Waiting for " + count + " storage operations to complete... (" + describeLimiters() + ")");
+        }
+
+        long start = System.currentTimeMillis();
+        if (drain(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            if (count != 0) {
+                plugin.getLog().info("Storage operations completed in " + (System.currentTimeMillis() - start) + "ms.");
+            }
+        } else {
+            plugin.getLog().severe("Timed out waiting for " + getPending() + " storage operations to complete. Their changes may be lost. (" + describeLimiters() + ")");
         }
 
         backing.shutdown();
@@ -73,191 +179,225 @@ public class TolerantStorage implements Storage {
 
     @Override
     public CompletableFuture<Boolean> logAction(LogEntry entry) {
-        phaser.register();
-        try {
-            return backing.logAction(entry);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.LOG, () -> backing.logAction(entry));
     }
 
     @Override
     public CompletableFuture<Log> getLog() {
-        phaser.register();
-        try {
-            return backing.getLog();
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.LOG, () -> backing.getLog());
+    }
+
+    @Override
+    public CompletableFuture<Integer> countLog(LogQuery query) {
+        return submit(OperationType.LOG, () -> backing.countLog(query));
+    }
+
+    @Override
+    public CompletableFuture<LogPage> queryLog(LogQuery query, int offset, int limit) {
+        return submit(OperationType.LOG, () -> backing.queryLog(query, offset, limit));
     }
 
     @Override
     public CompletableFuture<Boolean> loadUser(UUID uuid, String username) {
-        phaser.register();
-        try {
-            return backing.loadUser(uuid, username);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.READ, () -> backing.loadUser(uuid, username));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> loadUsers(Collection<UserIdentifier> users) {
+        return submit(OperationType.READ, () -> backing.loadUsers(users));
     }
 
     @Override
     public CompletableFuture<Boolean> saveUser(User user) {
-        phaser.register();
-        try {
-            return backing.saveUser(user);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.saveUser(user));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveUsers(Collection<User> users) {
+        return submit(OperationType.WRITE, () -> backing.saveUsers(users));
     }
 
     @Override
     public CompletableFuture<Boolean> cleanupUsers() {
-        phaser.register();
-        try {
-            return backing.cleanupUsers();
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.cleanupUsers());
     }
 
     @Override
     public CompletableFuture<Set<UUID>> getUniqueUsers() {
-        phaser.register();
-        try {
-            return backing.getUniqueUsers();
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.READ, () -> backing.getUniqueUsers());
     }
 
     @Override
     public CompletableFuture<Boolean> createAndLoadGroup(String name) {
-        phaser.register();
-        try {
-            return backing.createAndLoadGroup(name);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.createAndLoadGroup(name));
     }
 
     @Override
     public CompletableFuture<Boolean> loadGroup(String name) {
-        phaser.register();
-        try {
-            return backing.loadGroup(name);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.READ, () -> backing.loadGroup(name));
     }
 
     @Override
     public CompletableFuture<Boolean> loadAllGroups() {
-        phaser.register();
-        try {
-            return backing.loadAllGroups();
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.READ, () -> backing.loadAllGroups());
     }
 
     @Override
     public CompletableFuture<Boolean> saveGroup(Group group) {
-        phaser.register();
-        try {
-            return backing.saveGroup(group);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.saveGroup(group));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveGroups(Collection<Group> groups) {
+        return submit(OperationType.WRITE, () -> backing.saveGroups(groups));
     }
 
     @Override
     public CompletableFuture<Boolean> deleteGroup(Group group) {
-        phaser.register();
-        try {
-            return backing.deleteGroup(group);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.deleteGroup(group));
     }
 
     @Override
     public CompletableFuture<Boolean> createAndLoadTrack(String name) {
-        phaser.register();
-        try {
-            return backing.createAndLoadTrack(name);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.createAndLoadTrack(name));
     }
 
     @Override
     public CompletableFuture<Boolean> loadTrack(String name) {
-        phaser.register();
-        try {
-            return backing.loadTrack(name);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.READ, () -> backing.loadTrack(name));
     }
 
     @Override
     public CompletableFuture<Boolean> loadAllTracks() {
-        phaser.register();
-        try {
-            return backing.loadAllTracks();
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.READ, () -> backing.loadAllTracks());
     }
 
     @Override
     public CompletableFuture<Boolean> saveTrack(Track track) {
-        phaser.register();
-        try {
-            return backing.saveTrack(track);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.saveTrack(track));
     }
 
     @Override
     public CompletableFuture<Boolean> deleteTrack(Track track) {
-        phaser.register();
-        try {
-            return backing.deleteTrack(track);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.deleteTrack(track));
     }
 
     @Override
     public CompletableFuture<Boolean> saveUUIDData(String username, UUID uuid) {
-        phaser.register();
-        try {
-            return backing.saveUUIDData(username, uuid);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.WRITE, () -> backing.saveUUIDData(username, uuid));
     }
 
     @Override
     public CompletableFuture<UUID> getUUID(String username) {
-        phaser.register();
-        try {
-            return backing.getUUID(username);
-        } finally {
-            phaser.arriveAndDeregister();
-        }
+        return submit(OperationType.READ, () -> backing.getUUID(username));
     }
 
     @Override
     public CompletableFuture<String> getName(UUID uuid) {
-        phaser.register();
-        try {
-            return backing.getName(uuid);
-        } finally {
-            phaser.arriveAndDeregister();
+        return submit(OperationType.READ, () -> backing.getName(uuid));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> pushMessages(List<String> messages) {
+        return submit(OperationType.WRITE, () -> backing.pushMessages(messages));
+    }
+
+    @Override
+    public CompletableFuture<Long> pollMessages(long lastId, Consumer<String> consumer) {
+        return submit(OperationType.READ, () -> backing.pollMessages(lastId, consumer));
+    }
+
+    /**
+     * The kinds of operation which are limited separately, so that a backlog of one can't hold up the others
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private enum OperationType {
+        READ(8),
+        WRITE(4),
+        LOG(2);
+
+        private final int maxRunning;
+    }
+
+    /**
+     * Runs operations, queueing them once the maximum number are already running.
+     *
+     * <p>Queued operations are started by the thread which completes a running one, so callers are never blocked.</p>
+     */
+    private static final class Limiter {
+        private final int maxRunning;
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private int running = 0;
+
+        @Getter
+        private final AtomicLong completed = new AtomicLong(0);
+
+        @Getter
+        private final AtomicLong failed = new AtomicLong(0);
+
+        private Limiter(int maxRunning) {
+            this.maxRunning = maxRunning;
+        }
+
+        private synchronized int getRunning() {
+            return running;
+        }
+
+        private synchronized int getQueued() {
+            return queue.size();
+        }
+
+        private <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Runnable task = () -> start(operation, result);
+
+            synchronized (this) {
+                if (running >= maxRunning) {
+                    queue.add(task);
+                    return result;
+                }
+                running++;
+            }
+
+            task.run();
+            return result;
+        }
+
+        private <T> void start(Supplier<CompletableFuture<T>> operation, CompletableFuture<T> result) {
+            CompletableFuture<T> future;
+            try {
+                future = operation.get();
+            } catch (Throwable t) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(t);
+            }
+
+            future.whenComplete((r, t) -> {
+                if (t != null || Boolean.FALSE.equals(r)) {
+                    failed.incrementAndGet();
+                } else {
+                    completed.incrementAndGet();
+                }
+
+                Runnable next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null) {
+                        running--;
+                    }
+                }
+
+                if (next != null) {
+                    next.run();
+                }
+
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(r);
+                }
+            });
         }
     }
 
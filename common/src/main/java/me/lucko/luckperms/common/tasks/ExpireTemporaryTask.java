@@ -25,25 +25,42 @@ package me.lucko.luckperms.common.tasks;
 import lombok.AllArgsConstructor;
 
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.caching.handlers.HolderReference;
 import me.lucko.luckperms.common.core.model.Group;
+import me.lucko.luckperms.common.core.model.PermissionHolder;
 import me.lucko.luckperms.common.core.model.User;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 @AllArgsConstructor
 public class ExpireTemporaryTask implements Runnable {
     private final LuckPermsPlugin plugin;
 
     @Override
     public void run() {
+        Set<HolderReference> expired = plugin.getExpiryIndex().pollExpired(System.currentTimeMillis() / 1000L);
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        List<PermissionHolder> holders = new ArrayList<>();
+        for (HolderReference<?> ref : expired) {
+            ref.apply(plugin, holders::add);
+        }
+
         boolean groupChanges = false;
-        for (Group group : plugin.getGroupManager().getAll().values()) {
-            if (group.auditTemporaryPermissions()) {
-                plugin.getStorage().saveGroup(group);
+        for (PermissionHolder holder : holders) {
+            if (holder instanceof Group && holder.auditTemporaryPermissions()) {
+                plugin.getStorage().saveGroup((Group) holder);
                 groupChanges = true;
             }
         }
 
-        for (User user : plugin.getUserManager().getAll().values()) {
-            if (user.auditTemporaryPermissions()) {
+        for (PermissionHolder holder : holders) {
+            if (holder instanceof User && holder.auditTemporaryPermissions()) {
+                User user = (User) holder;
                 plugin.getStorage().saveUser(user);
                 if (!groupChanges) {
                     user.getRefreshBuffer().request();
@@ -55,4 +72,4 @@ public class ExpireTemporaryTask implements Runnable {
             plugin.getUpdateTaskBuffer().request();
         }
     }
-}
\ No newline at end of file
+}
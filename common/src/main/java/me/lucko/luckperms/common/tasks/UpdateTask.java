@@ -24,9 +24,22 @@ package me.lucko.luckperms.common.tasks;
 
 import lombok.AllArgsConstructor;
 
+import com.google.common.collect.ImmutableSet;
+
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.event.events.PostSyncEvent;
 import me.lucko.luckperms.api.event.events.PreSyncEvent;
 import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.caching.handlers.GroupReference;
+import me.lucko.luckperms.common.caching.handlers.HolderReference;
+import me.lucko.luckperms.common.core.model.Group;
+import me.lucko.luckperms.common.core.model.User;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @AllArgsConstructor
 public class UpdateTask implements Runnable {
@@ -41,17 +54,47 @@ public class UpdateTask implements Runnable {
         plugin.getApiProvider().fireEvent(event);
         if (event.isCancelled()) return;
 
-        // Reload all groups
-        plugin.getStorage().loadAllGroups().join();
+        // Copy the nodes of each group, so the groups which change can be found
+        Map<String, ImmutableSet<Node>> groupNodes = new HashMap<>();
+        for (Group group : plugin.getGroupManager().getAll().values()) {
+            groupNodes.put(group.getName(), ImmutableSet.copyOf(group.getNodes()));
+        }
+
+        // Reload all groups and tracks at the same time
+        CompletableFuture<Boolean> groups = plugin.getStorage().loadAllGroups();
+        CompletableFuture<Boolean> tracks = plugin.getStorage().loadAllTracks();
+
+        groups.join();
         String defaultGroup = plugin.getConfiguration().getDefaultGroupName();
         if (!plugin.getGroupManager().isLoaded(defaultGroup)) {
             plugin.getStorage().createAndLoadGroup(defaultGroup).join();
         }
 
-        // Reload all tracks
-        plugin.getStorage().loadAllTracks().join();
+        Set<String> changedGroups = new HashSet<>();
+        for (Group group : plugin.getGroupManager().getAll().values()) {
+            ImmutableSet<Node> nodes = groupNodes.remove(group.getName());
+            if (nodes == null || !nodes.equals(group.getNodes())) {
+                changedGroups.add(group.getName());
+            }
+        }
+
+        // any groups left were deleted
+        changedGroups.addAll(groupNodes.keySet());
+
+        // Recalculate the permissions of users inheriting from changed groups
+        for (String group : changedGroups) {
+            for (HolderReference ref : plugin.getCachedStateManager().getInheritances(GroupReference.of(group))) {
+                ref.apply(plugin, holder -> {
+                    if (holder instanceof User) {
+                        ((User) holder).getRefreshBuffer().request();
+                    }
+                });
+            }
+        }
+
+        tracks.join();
 
-        // Refresh all online users.
+        // Reload all online users. Users are only recalculated if their own data changed.
         plugin.getUserManager().updateAllUsers();
 
         plugin.getApiProvider().fireEvent(new PostSyncEvent());
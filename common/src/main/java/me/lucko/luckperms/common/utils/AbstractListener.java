@@ -22,8 +22,6 @@
 
 package me.lucko.luckperms.common.utils;
 
-import lombok.AllArgsConstructor;
-
 import me.lucko.luckperms.api.event.events.UserFirstLoginEvent;
 import me.lucko.luckperms.common.LuckPermsPlugin;
 import me.lucko.luckperms.common.core.UuidCache;
@@ -35,9 +33,14 @@ import java.util.UUID;
 /**
  * An abstract listener shared by Bukkit & Sponge.
  */
-@AllArgsConstructor
 public class AbstractListener {
     private final LuckPermsPlugin plugin;
+    protected final LoginCoalescer loginCoalescer;
+
+    public AbstractListener(LuckPermsPlugin plugin) {
+        this.plugin = plugin;
+        this.loginCoalescer = new LoginCoalescer(plugin);
+    }
 
     protected void onAsyncLogin(UUID u, String username) {
         final long startTime = System.currentTimeMillis();
@@ -63,7 +66,8 @@ public class AbstractListener {
             plugin.getStorage().force().saveUUIDData(username, u);
         }
 
-        plugin.getStorage().force().loadUser(cache.getUUID(u), username).join();
+        // logins arriving at the same time are loaded from the storage together
+        loginCoalescer.loadUser(cache.getUUID(u), username).join();
         User user = plugin.getUserManager().get(cache.getUUID(u));
         if (user == null) {
             plugin.getLog().warn("Failed to load user: " + username);
@@ -23,14 +23,15 @@
 package me.lucko.luckperms.common.utils;
 
 import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -45,24 +46,17 @@ public abstract class Buffer<T, R> implements Runnable {
     private static final long DEFAULT_FLUSH_TIME = 1000; // 1 second
 
     private final ReentrantLock lock = new ReentrantLock();
-    private final List<BufferedObject<T, R>> buffer = new LinkedList<>();
+
+    // Ordered by the time each object was last buffered
+    private final Map<T, BufferedObject<T, R>> buffer = new LinkedHashMap<>();
+
+    // Only one flush can process objects at a time, so that saves of the same object are never reordered
+    private final ReentrantLock flushLock = new ReentrantLock();
 
     public CompletableFuture<R> enqueue(@NonNull T t) {
         lock.lock();
         try {
-            ListIterator<BufferedObject<T, R>> it = buffer.listIterator();
-
-            BufferedObject<T, R> o = null;
-
-            while (it.hasNext()) {
-                BufferedObject<T, R> obj = it.next();
-
-                if (obj.getObject().equals(t)) {
-                    o = obj;
-                    it.remove();
-                    break;
-                }
-            }
+            BufferedObject<T, R> o = buffer.remove(t);
 
             if (o == null) {
                 o = new BufferedObject<>(System.currentTimeMillis(), t, new CompletableFuture<R>());
@@ -70,7 +64,7 @@ public abstract class Buffer<T, R> implements Runnable {
                 o.setBufferTime(System.currentTimeMillis());
             }
 
-            buffer.add(o);
+            buffer.put(t, o);
             return o.getFuture();
         } finally {
             lock.unlock();
@@ -79,27 +73,66 @@ public abstract class Buffer<T, R> implements Runnable {
 
     protected abstract R dequeue(T t);
 
-    public void flush(long flushTime) {
-        long time = System.currentTimeMillis();
+    /**
+     * Processes a batch of objects. By default, each object is processed individually.
+     *
+     * @param objects the objects to process
+     * @return the results, in the same order as the objects
+     */
+    protected List<R> dequeueAll(List<T> objects) {
+        List<R> results = new ArrayList<>(objects.size());
+        for (T t : objects) {
+            results.add(dequeue(t));
+        }
+        return results;
+    }
 
-        lock.lock();
+    public void flush(long flushTime) {
+        flushLock.lock();
         try {
-            ListIterator<BufferedObject<T, R>> it = buffer.listIterator(buffer.size());
+            long time = System.currentTimeMillis();
+            List<BufferedObject<T, R>> toFlush = new ArrayList<>();
+
+            lock.lock();
+            try {
+                Iterator<BufferedObject<T, R>> it = buffer.values().iterator();
+                while (it.hasNext()) {
+                    BufferedObject<T, R> obj = it.next();
+                    if (time - obj.getBufferTime() <= flushTime) {
+                        // everything after this was buffered more recently
+                        break;
+                    }
+
+                    toFlush.add(obj);
+                    it.remove();
+                }
+            } finally {
+                lock.unlock();
+            }
 
-            while (it.hasPrevious()) {
-                BufferedObject<T, R> obj = it.previous();
-                long bufferedTime = time - obj.getBufferTime();
+            if (toFlush.isEmpty()) {
+                return;
+            }
 
-                if (bufferedTime > flushTime) {
+            // Flush, without holding the lock, so objects can still be buffered in the meantime
+            List<T> objects = new ArrayList<>(toFlush.size());
+            for (BufferedObject<T, R> obj : toFlush) {
+                objects.add(obj.getObject());
+            }
 
-                    // Flush
-                    R r = dequeue(obj.getObject());
-                    obj.getFuture().complete(r);
-                    it.remove();
-                }
+            List<R> results;
+            try {
+                results = dequeueAll(objects);
+            } catch (Exception e) {
+                toFlush.forEach(obj -> obj.getFuture().completeExceptionally(e));
+                return;
+            }
+
+            for (int i = 0; i < toFlush.size(); i++) {
+                toFlush.get(i).getFuture().complete(results.get(i));
             }
         } finally {
-            lock.unlock();
+            flushLock.unlock();
         }
     }
 
@@ -109,7 +142,6 @@ public abstract class Buffer<T, R> implements Runnable {
     }
 
     @Getter
-    @EqualsAndHashCode(of = "object")
     @AllArgsConstructor
     private static class BufferedObject<T, R> {
 
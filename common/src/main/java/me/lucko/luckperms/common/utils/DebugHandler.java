@@ -37,18 +37,26 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 
 public class DebugHandler {
+    // The maximum number of checks held before they are handled. Once full, the oldest are overwritten.
+    private static final int BUFFER_SIZE = 1 << 12;
+
     private final String pluginVersion;
 
     @Setter
-    private boolean pasted = false;
+    private volatile boolean pasted = false;
+
+    // Only roughly 1 in every sampleRate checks is recorded
+    @Setter
+    private volatile int sampleRate = 1;
 
     @Setter
     private List<String> pastedFilters = ImmutableList.of();
@@ -56,16 +64,21 @@ public class DebugHandler {
     private final List<String> pastedList = Collections.synchronizedList(new ArrayList<>());
 
     private final Map<Receiver, List<String>> listeners;
-    private final Queue<Data> queue;
+
+    // A ring buffer of recorded checks. Writers claim a slot from the write sequence, and then publish the check
+    // to it, stamped with the sequence. The output thread follows behind, waiting at slots which haven't been
+    // published yet, and skipping ahead if it has been lapped.
+    private final AtomicReferenceArray<Data> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private final AtomicLong writeSequence = new AtomicLong(0);
+    private long readSequence = 0;
 
     public DebugHandler(Executor executor, String pluginVersion) {
         this.pluginVersion = "v" + pluginVersion;
         listeners = new ConcurrentHashMap<>();
-        queue = new ConcurrentLinkedQueue<>();
 
         executor.execute(() -> {
             while (true) {
-                for (Data e; (e = queue.poll()) != null; ) {
+                for (Data e; (e = poll()) != null; ) {
                     handleOutput(e.getChecked(), e.getNode(), e.getValue());
                 }
 
@@ -100,8 +113,57 @@ public class DebugHandler {
         }
     }
 
+    /**
+     * Gets if checks are currently being recorded
+     *
+     * @return true if anyone is listening to checks, or they are being pasted
+     */
+    public boolean isActive() {
+        return pasted || !listeners.isEmpty();
+    }
+
     public void offer(String checked, String node, Tristate value) {
-        queue.offer(new Data(checked, node, value));
+        if (!isActive()) {
+            return;
+        }
+
+        int rate = sampleRate;
+        if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) {
+            return;
+        }
+
+        long sequence = writeSequence.getAndIncrement();
+        buffer.set((int) (sequence & (BUFFER_SIZE - 1)), new Data(sequence, checked, node, value));
+    }
+
+    // only called by the output thread
+    private Data poll() {
+        long write = writeSequence.get();
+        if (write - readSequence > BUFFER_SIZE) {
+            // older checks have been overwritten
+            readSequence = write - BUFFER_SIZE;
+        }
+
+        while (readSequence < write) {
+            int index = (int) (readSequence & (BUFFER_SIZE - 1));
+            Data data = buffer.get(index);
+            if (data == null || data.getSequence() < readSequence) {
+                // claimed, but not published yet
+                return null;
+            }
+
+            if (data.getSequence() > readSequence) {
+                // overwritten by a later lap
+                readSequence++;
+                continue;
+            }
+
+            buffer.compareAndSet(index, data, null);
+            readSequence++;
+            return data;
+        }
+
+        return null;
     }
 
     public void register(Sender sender, List<String> filters) {
@@ -138,6 +200,7 @@ public class DebugHandler {
     @Getter
     @AllArgsConstructor
     private static final class Data {
+        private final long sequence;
         private final String checked;
         private final String node;
         private final Tristate value;
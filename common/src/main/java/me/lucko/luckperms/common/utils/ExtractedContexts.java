@@ -22,45 +22,80 @@
 
 package me.lucko.luckperms.common.utils;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.api.context.MutableContextSet;
 
+import java.util.Objects;
+
+/**
+ * Immutable, interned representation of a set of contexts, with the server and world values extracted.
+ *
+ * <p>Instances are used as keys for the inheritance caches in PermissionHolder, so equal contexts must always
+ * produce equal instances.</p>
+ */
 @Getter
-@ToString
-public class ExtractedContexts {
+@ToString(exclude = "hashCode")
+public final class ExtractedContexts {
+    private static final Interner<ExtractedContexts> INTERNER = Interners.newWeakInterner();
+
     public static ExtractedContexts generate(Contexts contexts) {
-        return new ExtractedContexts(contexts);
+        return INTERNER.intern(new ExtractedContexts(contexts));
     }
 
     public static ExtractedContexts generate(ContextSet contexts) {
-        return new ExtractedContexts(contexts);
+        return INTERNER.intern(new ExtractedContexts(contexts));
     }
 
-    private Contexts contexts;
-    private ContextSet contextSet;
-    private String server;
-    private String world;
+    private final Contexts contexts;
+    private final ContextSet contextSet;
+    private final String server;
+    private final String world;
+
+    @Getter(AccessLevel.NONE)
+    private final int hashCode;
 
     private ExtractedContexts(Contexts context) {
-        this.contexts = context;
-        setup(context.getContexts());
+        this(context, context.getContexts());
     }
 
     private ExtractedContexts(ContextSet contexts) {
-        setup(contexts);
+        this(null, contexts);
     }
 
-    private void setup(ContextSet contexts) {
+    private ExtractedContexts(Contexts context, ContextSet contexts) {
         MutableContextSet contextSet = MutableContextSet.fromSet(contexts);
-        server = contextSet.getValues("server").stream().findAny().orElse(null);
-        world = contextSet.getValues("world").stream().findAny().orElse(null);
+        this.contexts = context;
+        this.server = contextSet.getValues("server").stream().findAny().orElse(null);
+        this.world = contextSet.getValues("world").stream().findAny().orElse(null);
         contextSet.removeAll("server");
         contextSet.removeAll("world");
 
         this.contextSet = contextSet.makeImmutable();
+        this.hashCode = Objects.hash(this.contexts, this.contextSet, this.server, this.world);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof ExtractedContexts)) return false;
+        final ExtractedContexts other = (ExtractedContexts) o;
+        return this.hashCode == other.hashCode &&
+                Objects.equals(this.contexts, other.contexts) &&
+                this.contextSet.equals(other.contextSet) &&
+                Objects.equals(this.server, other.server) &&
+                Objects.equals(this.world, other.world);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.utils;
+
+import lombok.RequiredArgsConstructor;
+
+import me.lucko.luckperms.common.LuckPermsPlugin;
+import me.lucko.luckperms.common.core.UserIdentifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Groups user loads requested by concurrent logins into batched storage calls.
+ *
+ * <p>At most one drain task runs at a time. Any logins which arrive whilst a batch is being loaded are queued,
+ * and picked up together by the next batch.</p>
+ */
+@RequiredArgsConstructor
+public class LoginCoalescer {
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final LuckPermsPlugin plugin;
+
+    private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    /**
+     * Queues a user to be loaded
+     *
+     * @param uuid the uuid of the user
+     * @param username the username of the user
+     * @return a future which completes once the batch containing the user has been loaded
+     */
+    public CompletableFuture<Boolean> loadUser(UUID uuid, String username) {
+        Request request = new Request(UserIdentifier.of(uuid, username));
+        queue.add(request);
+        scheduleDrain();
+        return request.future;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            plugin.doAsync(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            List<Request> batch;
+            while (!(batch = poll()).isEmpty()) {
+                List<UserIdentifier> users = new ArrayList<>(batch.size());
+                for (Request request : batch) {
+                    users.add(request.user);
+                }
+
+                try {
+                    boolean success = plugin.getStorage().force().loadUsers(users).join();
+                    batch.forEach(r -> r.future.complete(success));
+                } catch (Throwable t) {
+                    batch.forEach(r -> r.future.completeExceptionally(t));
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // a request may have been queued after the last poll, but before the flag was cleared
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private List<Request> poll() {
+        List<Request> batch = new ArrayList<>();
+        Request request;
+        while (batch.size() < MAX_BATCH_SIZE && (request = queue.poll()) != null) {
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Request {
+        private final UserIdentifier user;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+    }
+}
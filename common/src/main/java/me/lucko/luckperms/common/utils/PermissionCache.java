@@ -27,6 +27,8 @@ import lombok.NonNull;
 
 import com.google.common.base.Splitter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -47,8 +49,13 @@ public class PermissionCache {
 
         executor.execute(() -> {
             while (true) {
+                List<String> batch = new ArrayList<>();
                 for (String e; (e = queue.poll()) != null; ) {
-                    insert(e.toLowerCase());
+                    batch.add(e);
+                }
+
+                if (!batch.isEmpty()) {
+                    insertAll(batch);
                 }
 
                 try {
@@ -60,20 +67,69 @@ public class PermissionCache {
     }
 
     public void offer(@NonNull String permission) {
-        queue.offer(permission);
-    }
+        permission = permission.toLowerCase();
 
-    private void insert(String permission) {
-        List<String> parts = Splitter.on('.').splitToList(permission);
+        // nearly every permission offered is already in the tree, so look before queueing it
+        if (!contains(permission)) {
+            queue.offer(permission);
+        }
+    }
 
+    private boolean contains(String permission) {
         Node current = rootNode;
-        for (String part : parts) {
-            current = current.getChildMap().computeIfAbsent(part, s -> new Node());
+        int start = 0;
+        while (true) {
+            Map<String, Node> children = current.children;
+            if (children == null) {
+                return false;
+            }
+
+            int end = permission.indexOf('.', start);
+            current = children.get(end == -1 ? permission.substring(start) : permission.substring(start, end));
+            if (current == null) {
+                return false;
+            }
+
+            if (end == -1) {
+                return true;
+            }
+            start = end + 1;
+        }
+    }
+
+    private void insertAll(List<String> permissions) {
+        List<String> sorted = new ArrayList<>(permissions);
+        Collections.sort(sorted);
+
+        // sorted permissions share a prefix with the one before them, so the path to the previous
+        // permission can be reused, rather than walking down from the root each time.
+        List<String> previousParts = Collections.emptyList();
+        List<Node> previousPath = new ArrayList<>();
+
+        for (String permission : sorted) {
+            List<String> parts = Splitter.on('.').splitToList(permission);
+
+            int shared = 0;
+            while (shared < parts.size() && shared < previousParts.size() && parts.get(shared).equals(previousParts.get(shared))) {
+                shared++;
+            }
+
+            while (previousPath.size() > shared) {
+                previousPath.remove(previousPath.size() - 1);
+            }
+
+            Node current = shared == 0 ? rootNode : previousPath.get(shared - 1);
+            for (int i = shared; i < parts.size(); i++) {
+                current = current.getChildMap().computeIfAbsent(parts.get(i), s -> new Node());
+                previousPath.add(current);
+            }
+
+            previousParts = parts;
         }
     }
 
     public static class Node {
-        private Map<String, Node> children = null;
+        private volatile Map<String, Node> children = null;
 
         // lazy init
         private synchronized Map<String, Node> getChildMap() {
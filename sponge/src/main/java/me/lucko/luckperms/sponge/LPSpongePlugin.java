@@ -40,12 +40,14 @@ import me.lucko.luckperms.common.config.LPConfiguration;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.contexts.ContextManager;
 import me.lucko.luckperms.common.contexts.ServerCalculator;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Importer;
 import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericTrackManager;
-import me.lucko.luckperms.common.messaging.RedisMessaging;
+import me.lucko.luckperms.common.messaging.AbstractMessagingService;
+import me.lucko.luckperms.common.messaging.MessagingFactory;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.storage.StorageFactory;
 import me.lucko.luckperms.common.tasks.ExpireTemporaryTask;
@@ -133,7 +135,7 @@ public class LPSpongePlugin implements LuckPermsPlugin {
     private SpongeGroupManager groupManager;
     private TrackManager trackManager;
     private Storage storage;
-    private RedisMessaging redisMessaging = null;
+    private AbstractMessagingService messagingService = null;
     private UuidCache uuidCache;
     private ApiProvider apiProvider;
     private me.lucko.luckperms.api.Logger log;
@@ -141,6 +143,7 @@ public class LPSpongePlugin implements LuckPermsPlugin {
     private LuckPermsService service;
     private LocaleManager localeManager;
     private CachedStateManager cachedStateManager;
+    private final ExpiryIndex expiryIndex = new ExpiryIndex();
     private ContextManager<Subject> contextManager;
     private CalculatorFactory calculatorFactory;
     private BufferedRequest<Void> updateTaskBuffer;
@@ -158,6 +161,7 @@ public class LPSpongePlugin implements LuckPermsPlugin {
 
         getLog().info("Loading configuration...");
         configuration = new SpongeConfig(this);
+        debugHandler.setSampleRate(configuration.getVerboseSampleRate());
 
         // register events
         game.getEventManager().registerListeners(this, new SpongeListener(this));
@@ -165,19 +169,8 @@ public class LPSpongePlugin implements LuckPermsPlugin {
         // initialise datastore
         storage = StorageFactory.getInstance(this, "h2");
 
-        // initialise redis
-        if (getConfiguration().isRedisEnabled()) {
-            getLog().info("Loading redis...");
-            redisMessaging = new RedisMessaging(this);
-            try {
-                redisMessaging.init(getConfiguration().getRedisAddress(), getConfiguration().getRedisPassword());
-                getLog().info("Loaded redis successfully...");
-            } catch (Exception e) {
-                getLog().info("Couldn't load redis...");
-                e.printStackTrace();
-                redisMessaging = null;
-            }
-        }
+        // initialise messaging
+        messagingService = MessagingFactory.getInstance(this);
 
         // setup the update task buffer
         updateTaskBuffer = new BufferedRequest<Void>(1000L, this::doAsync) {
@@ -249,7 +242,7 @@ public class LPSpongePlugin implements LuckPermsPlugin {
         updateTaskBuffer.requestDirectly();
 
         // register tasks
-        scheduler.createTaskBuilder().async().intervalTicks(60L).execute(new ExpireTemporaryTask(this)).submit(this);
+        scheduler.createTaskBuilder().async().intervalTicks(20L).execute(new ExpireTemporaryTask(this)).submit(this);
 
         getLog().info("Successfully loaded.");
     }
@@ -264,14 +257,14 @@ public class LPSpongePlugin implements LuckPermsPlugin {
 
     @Listener
     public void onDisable(GameStoppingServerEvent event) {
+        if (messagingService != null) {
+            getLog().info("Closing messaging service...");
+            messagingService.close();
+        }
+
         getLog().info("Closing datastore...");
         storage.shutdown();
 
-        if (redisMessaging != null) {
-            getLog().info("Closing redis...");
-            redisMessaging.shutdown();
-        }
-
         getLog().info("Unregistering API...");
         ApiHandler.unregisterProvider();
     }
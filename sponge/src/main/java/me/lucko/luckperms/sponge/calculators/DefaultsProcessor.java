@@ -27,6 +27,7 @@ import lombok.AllArgsConstructor;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
+import me.lucko.luckperms.common.calculators.PermissionTrie;
 import me.lucko.luckperms.sponge.service.LuckPermsService;
 
 import java.util.Map;
@@ -52,7 +53,7 @@ public class DefaultsProcessor implements PermissionProcessor {
     }
 
     @Override
-    public void updateBacking(Map<String, Boolean> map) {
+    public void updateBacking(Map<String, Boolean> map, PermissionTrie trie) {
         // Do nothing, this doesn't use the backing
     }
 }
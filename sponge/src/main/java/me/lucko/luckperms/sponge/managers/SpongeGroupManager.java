@@ -33,6 +33,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
+import me.lucko.luckperms.common.caching.handlers.HolderType;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.managers.GroupManager;
 import me.lucko.luckperms.common.utils.ArgumentChecker;
@@ -105,12 +106,14 @@ public class SpongeGroupManager implements GroupManager, LPSubjectCollection {
     public void unload(Group t) {
         if (t != null) {
             objects.invalidate(t.getId());
+            plugin.getExpiryIndex().unschedule(t.toReference());
         }
     }
 
     @Override
     public void unloadAll() {
         objects.invalidateAll();
+        plugin.getExpiryIndex().unscheduleAll(HolderType.GROUP);
     }
 
     /* ------------------------------------------
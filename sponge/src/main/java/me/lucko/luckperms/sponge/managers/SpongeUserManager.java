@@ -27,12 +27,12 @@ import lombok.NonNull;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
+import me.lucko.luckperms.common.caching.handlers.HolderType;
 import me.lucko.luckperms.common.commands.utils.Util;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.User;
@@ -52,9 +52,13 @@ import org.spongepowered.api.service.permission.PermissionService;
 import co.aikar.timings.Timing;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class SpongeUserManager implements UserManager, LPSubjectCollection {
     private final LPSpongePlugin plugin;
@@ -72,15 +76,25 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
                 }
             });
 
+    /**
+     * Lowercase username --> loaded user
+     */
+    private final Map<String, SpongeUser> usernames = new ConcurrentHashMap<>();
+
     public SpongeUserManager(LPSpongePlugin plugin) {
         this.plugin = plugin;
     }
 
     @Override
     public SpongeUser apply(UserIdentifier id) {
-        return id.getUsername() == null ?
+        SpongeUser user = id.getUsername() == null ?
                 new SpongeUser(id.getUuid(), plugin) :
                 new SpongeUser(id.getUuid(), id.getUsername(), plugin);
+
+        if (user.getName() != null) {
+            usernames.put(user.getName().toLowerCase(), user);
+        }
+        return user;
     }
 
     /* ------------------------------------------
@@ -89,7 +103,7 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
 
     @Override
     public Map<UserIdentifier, SpongeUser> getAll() {
-        return ImmutableMap.copyOf(objects.asMap());
+        return Collections.unmodifiableMap(objects.asMap());
     }
 
     @Override
@@ -112,12 +126,18 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
         // TODO override
         if (t != null) {
             objects.invalidate(t.getId());
+            plugin.getExpiryIndex().unschedule(t.toReference());
+            if (t.getName() != null) {
+                usernames.remove(t.getName().toLowerCase(), t);
+            }
         }
     }
 
     @Override
     public void unloadAll() {
         objects.invalidateAll();
+        usernames.clear();
+        plugin.getExpiryIndex().unscheduleAll(HolderType.USER);
     }
 
     /* ------------------------------------------
@@ -126,12 +146,20 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
 
     @Override
     public SpongeUser getByUsername(String name) {
-        for (SpongeUser user : getAll().values()) {
-            if (user.getName().equalsIgnoreCase(name)) {
-                return user;
-            }
+        return usernames.get(name.toLowerCase());
+    }
+
+    @Override
+    public void onRename(User user, String previous) {
+        if (previous != null) {
+            usernames.remove(previous.toLowerCase(), user);
+        }
+
+        // don't index users which aren't (or are no longer) held by this manager
+        SpongeUser loaded = getIfLoaded(user.getId());
+        if (user.getName() != null && loaded == user) {
+            usernames.put(user.getName().toLowerCase(), loaded);
         }
-        return null;
     }
 
     @Override
@@ -156,10 +184,10 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
         plugin.doSync(() -> {
             Set<UUID> players = plugin.getOnlinePlayers();
             plugin.doAsync(() -> {
-                for (UUID uuid : players) {
-                    UUID internal = plugin.getUuidCache().getUUID(uuid);
-                    plugin.getStorage().loadUser(internal, "null").join();
-                }
+                List<UserIdentifier> users = players.stream()
+                        .map(uuid -> UserIdentifier.of(plugin.getUuidCache().getUUID(uuid), "null"))
+                        .collect(Collectors.toList());
+                plugin.getStorage().loadUsers(users).join();
             });
         });
     }
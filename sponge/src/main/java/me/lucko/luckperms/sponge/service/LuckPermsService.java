@@ -35,14 +35,12 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.MapMaker;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
-import me.lucko.luckperms.api.context.ImmutableContextSet;
 import me.lucko.luckperms.common.utils.ImmutableCollectors;
 import me.lucko.luckperms.sponge.LPSpongePlugin;
 import me.lucko.luckperms.sponge.contexts.SpongeCalculatorLink;
@@ -51,11 +49,10 @@ import me.lucko.luckperms.sponge.managers.SpongeUserManager;
 import me.lucko.luckperms.sponge.service.base.LPSubject;
 import me.lucko.luckperms.sponge.service.base.LPSubjectCollection;
 import me.lucko.luckperms.sponge.service.base.LPSubjectData;
-import me.lucko.luckperms.sponge.service.calculated.OptionLookup;
-import me.lucko.luckperms.sponge.service.calculated.PermissionLookup;
 import me.lucko.luckperms.sponge.service.persisted.PersistedCollection;
+import me.lucko.luckperms.sponge.service.persisted.PersistedSubject;
+import me.lucko.luckperms.sponge.service.persisted.SubjectDependencyGraph;
 import me.lucko.luckperms.sponge.service.persisted.SubjectStorage;
-import me.lucko.luckperms.sponge.service.references.SubjectReference;
 import me.lucko.luckperms.sponge.timings.LPTiming;
 
 import org.spongepowered.api.plugin.PluginContainer;
@@ -70,7 +67,6 @@ import co.aikar.timings.Timing;
 
 import java.io.File;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -93,9 +89,7 @@ public class LuckPermsService implements PermissionService {
     private final PersistedCollection defaultSubjects;
     private final Set<PermissionDescription> descriptionSet;
 
-    private final Set<LoadingCache<PermissionLookup, Tristate>> localPermissionCaches;
-    private final Set<LoadingCache<ImmutableContextSet, Set<SubjectReference>>> localParentCaches;
-    private final Set<LoadingCache<OptionLookup, Optional<String>>> localOptionCaches;
+    private final SubjectDependencyGraph dependencyGraph;
 
     @Getter(value = AccessLevel.NONE)
     private final LoadingCache<String, LPSubjectCollection> collections = CacheBuilder.newBuilder()
@@ -114,9 +108,7 @@ public class LuckPermsService implements PermissionService {
     public LuckPermsService(LPSpongePlugin plugin) {
         this.plugin = plugin;
 
-        localPermissionCaches = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
-        localParentCaches = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
-        localOptionCaches = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+        dependencyGraph = new SubjectDependencyGraph();
 
         storage = new SubjectStorage(new File(plugin.getDataFolder(), "local"));
 
@@ -215,24 +207,20 @@ public class LuckPermsService implements PermissionService {
         );
     }
 
-    public void invalidatePermissionCaches() {
-        for (LoadingCache<PermissionLookup, Tristate> c : localPermissionCaches) {
-            c.invalidateAll();
-        }
+    public void invalidatePermissionCaches(LPSubject changed) {
+        dependencyGraph.invalidate(changed, PersistedSubject::invalidatePermissionCache);
     }
 
-    public void invalidateParentCaches() {
-        for (LoadingCache<ImmutableContextSet, Set<SubjectReference>> c : localParentCaches) {
-            c.invalidateAll();
-        }
-        invalidateOptionCaches();
-        invalidatePermissionCaches();
+    public void invalidateParentCaches(LPSubject changed) {
+        dependencyGraph.invalidate(changed, s -> {
+            s.invalidateParentCache();
+            s.invalidateOptionCache();
+            s.invalidatePermissionCache();
+        });
     }
 
-    public void invalidateOptionCaches() {
-        for (LoadingCache<OptionLookup, Optional<String>> c : localOptionCaches) {
-            c.invalidateAll();
-        }
+    public void invalidateOptionCaches(LPSubject changed) {
+        dependencyGraph.invalidate(changed, PersistedSubject::invalidateOptionCache);
     }
 
     @RequiredArgsConstructor
@@ -129,7 +129,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             permissions.put(e.getKey().makeImmutable(), new ConcurrentHashMap<>(e.getValue()));
         }
         permissionCache.invalidateAll();
-        service.invalidatePermissionCaches();
+        service.invalidatePermissionCaches(parentSubject);
     }
 
     public void replaceParents(Map<ContextSet, Set<SubjectReference>> map) {
@@ -139,7 +139,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             set.addAll(e.getValue());
             parents.put(e.getKey().makeImmutable(), set);
         }
-        service.invalidateParentCaches();
+        service.invalidateParentCaches(parentSubject);
     }
 
     public void replaceOptions(Map<ContextSet, Map<String, String>> map) {
@@ -147,7 +147,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         for (Map.Entry<ContextSet, Map<String, String>> e : map.entrySet()) {
             options.put(e.getKey().makeImmutable(), new ConcurrentHashMap<>(e.getValue()));
         }
-        service.invalidateOptionCaches();
+        service.invalidateOptionCaches(parentSubject);
     }
 
     @Override
@@ -176,7 +176,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         }
         if (b) {
             permissionCache.invalidateAll();
-            service.invalidatePermissionCaches();
+            service.invalidatePermissionCaches(parentSubject);
         }
         return b;
     }
@@ -188,7 +188,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         } else {
             permissions.clear();
             permissionCache.invalidateAll();
-            service.invalidatePermissionCaches();
+            service.invalidatePermissionCaches(parentSubject);
             return true;
         }
     }
@@ -203,7 +203,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         permissions.remove(contexts);
         if (!perms.isEmpty()) {
             permissionCache.invalidateAll();
-            service.invalidatePermissionCaches();
+            service.invalidatePermissionCaches(parentSubject);
             return true;
         }
         return false;
@@ -228,7 +228,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Set<SubjectReference> set = parents.computeIfAbsent(contexts.makeImmutable(), c -> ConcurrentHashMap.newKeySet());
         boolean b = set.add(parent);
         if (b) {
-            service.invalidateParentCaches();
+            service.invalidateParentCaches(parentSubject);
         }
         return b;
     }
@@ -238,7 +238,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Set<SubjectReference> set = parents.get(contexts);
         boolean b = set != null && set.remove(parent);
         if (b) {
-            service.invalidateParentCaches();
+            service.invalidateParentCaches(parentSubject);
         }
         return b;
     }
@@ -249,7 +249,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             return false;
         } else {
             parents.clear();
-            service.invalidateOptionCaches();
+            service.invalidateParentCaches(parentSubject);
             return true;
         }
     }
@@ -262,7 +262,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         }
 
         parents.remove(contexts);
-        service.invalidateParentCaches();
+        service.invalidateParentCaches(parentSubject);
         return !set.isEmpty();
     }
 
@@ -285,7 +285,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Map<String, String> options = this.options.computeIfAbsent(contexts.makeImmutable(), c -> new ConcurrentHashMap<>());
         boolean b = !stringEquals(options.put(key.toLowerCase(), value), value);
         if (b) {
-            service.invalidateOptionCaches();
+            service.invalidateOptionCaches(parentSubject);
         }
         return b;
     }
@@ -295,7 +295,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Map<String, String> options = this.options.get(contexts);
         boolean b = options != null && options.remove(key.toLowerCase()) != null;
         if (b) {
-            service.invalidateOptionCaches();
+            service.invalidateOptionCaches(parentSubject);
         }
         return b;
     }
@@ -306,7 +306,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             return false;
         } else {
             options.clear();
-            service.invalidateOptionCaches();
+            service.invalidateOptionCaches(parentSubject);
             return true;
         }
     }
@@ -319,7 +319,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         }
 
         options.remove(contexts);
-        service.invalidateOptionCaches();
+        service.invalidateOptionCaches(parentSubject);
         return !map.isEmpty();
     }
 
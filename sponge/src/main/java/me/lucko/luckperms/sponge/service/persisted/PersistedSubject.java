@@ -33,6 +33,7 @@ import com.google.common.collect.ImmutableSet;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.api.context.ImmutableContextSet;
+import me.lucko.luckperms.common.caching.CacheMetrics;
 import me.lucko.luckperms.common.utils.BufferedRequest;
 import me.lucko.luckperms.sponge.service.LuckPermsService;
 import me.lucko.luckperms.sponge.service.base.LPSubject;
@@ -65,13 +66,15 @@ public class PersistedSubject implements LPSubject {
     private final PersistedSubjectData subjectData;
     private final CalculatedSubjectData transientSubjectData;
 
-    private final LoadingCache<PermissionLookup, Tristate> permissionLookupCache = CacheBuilder.newBuilder()
+    // bounded by the total length of the cached permissions, plus the number of contexts in each lookup
+    private final LoadingCache<PermissionLookup, Tristate> permissionLookupCache = CacheMetrics.register("sponge-subject-permissions",
+            CacheMetrics.<PermissionLookup, Tristate>newBuilder(100000, (k, v) -> 1 + k.getNode().length() + k.getContexts().size())
             .build(new CacheLoader<PermissionLookup, Tristate>() {
                 @Override
                 public Tristate load(PermissionLookup lookup) {
                     return lookupPermissionValue(lookup.getContexts(), lookup.getNode());
                 }
-            });
+            }));
     private final LoadingCache<ImmutableContextSet, Set<SubjectReference>> parentLookupCache = CacheBuilder.newBuilder()
             .build(new CacheLoader<ImmutableContextSet, Set<SubjectReference>>() {
                 @Override
@@ -109,10 +112,26 @@ public class PersistedSubject implements LPSubject {
 
         this.subjectData = new PersistedSubjectData(service, "local:" + containingCollection.getIdentifier() + "/" + identifier + "(p)", this);
         this.transientSubjectData = new CalculatedSubjectData(this, service, "local:" + containingCollection.getIdentifier() + "/" + identifier + "(t)");
+    }
+
+    public void invalidatePermissionCache() {
+        permissionLookupCache.invalidateAll();
+    }
+
+    public void invalidateParentCache() {
+        parentLookupCache.invalidateAll();
+    }
+
+    public void invalidateOptionCache() {
+        optionLookupCache.invalidateAll();
+    }
 
-        service.getLocalPermissionCaches().add(permissionLookupCache);
-        service.getLocalParentCaches().add(parentLookupCache);
-        service.getLocalOptionCaches().add(optionLookupCache);
+    /**
+     * Records that this subject's cached lookups read from the given subject, and returns it
+     */
+    private LPSubject dependOn(LPSubject subject) {
+        service.getDependencyGraph().addDependency(this, subject);
+        return subject;
     }
 
     public void loadData(SubjectDataHolder dataHolder) {
@@ -156,7 +175,7 @@ public class PersistedSubject implements LPSubject {
         }
 
         for (SubjectReference parent : getParents(contexts)) {
-            res = parent.resolve(service).getPermissionValue(contexts, node);
+            res = dependOn(parent.resolve(service)).getPermissionValue(contexts, node);
             if (res != Tristate.UNDEFINED) {
                 return res;
             }
@@ -166,12 +185,12 @@ public class PersistedSubject implements LPSubject {
             return Tristate.UNDEFINED;
         }
 
-        res = getParentCollection().resolve(service).getDefaultSubject().resolve(service).getPermissionValue(contexts, node);
+        res = dependOn(getParentCollection().resolve(service).getDefaultSubject().resolve(service)).getPermissionValue(contexts, node);
         if (res != Tristate.UNDEFINED) {
             return res;
         }
 
-        res = service.getDefaults().getPermissionValue(contexts, node);
+        res = dependOn(service.getDefaults()).getPermissionValue(contexts, node);
         return res;
     }
 
@@ -181,8 +200,8 @@ public class PersistedSubject implements LPSubject {
         s.addAll(transientSubjectData.getParents(contexts));
 
         if (!getParentCollection().resolve(service).getIdentifier().equalsIgnoreCase("defaults")) {
-            s.addAll(getParentCollection().resolve(service).getDefaultSubject().resolve(service).getParents(contexts));
-            s.addAll(service.getDefaults().getParents(contexts));
+            s.addAll(dependOn(getParentCollection().resolve(service).getDefaultSubject().resolve(service)).getParents(contexts));
+            s.addAll(dependOn(service.getDefaults()).getParents(contexts));
         }
 
         return ImmutableSet.copyOf(s);
@@ -214,7 +233,7 @@ public class PersistedSubject implements LPSubject {
         }
 
         for (SubjectReference parent : getParents(contexts)) {
-            res = parent.resolve(service).getOption(contexts, key);
+            res = dependOn(parent.resolve(service)).getOption(contexts, key);
             if (res.isPresent()) {
                 return res;
             }
@@ -224,12 +243,12 @@ public class PersistedSubject implements LPSubject {
             return Optional.empty();
         }
 
-        res = getParentCollection().resolve(service).getDefaultSubject().resolve(service).getOption(contexts, key);
+        res = dependOn(getParentCollection().resolve(service).getDefaultSubject().resolve(service)).getOption(contexts, key);
         if (res.isPresent()) {
             return res;
         }
 
-        return service.getDefaults().getOption(contexts, key);
+        return dependOn(service.getDefaults()).getOption(contexts, key);
     }
 
     @Override
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.sponge.service.persisted;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
+
+import me.lucko.luckperms.sponge.service.base.LPSubject;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Tracks which persisted subjects have cached lookups that read from other subjects, so that a change to one subject
+ * only invalidates the caches of the subjects which inherit from it.
+ *
+ * <p>Dependencies are recorded as lookups are computed. They are never removed, which can only cause extra
+ * invalidations, never missed ones.</p>
+ */
+public class SubjectDependencyGraph {
+
+    /**
+     * Dependency --> the subjects whose cached lookups read from it
+     */
+    private final Map<LPSubject, Set<PersistedSubject>> dependents = new MapMaker().weakKeys().makeMap();
+
+    /**
+     * Records that the cached lookups of a subject read from another subject
+     *
+     * @param dependent the subject doing the lookup
+     * @param dependency the subject being read from
+     */
+    public void addDependency(PersistedSubject dependent, LPSubject dependency) {
+        if (dependent == dependency) {
+            return;
+        }
+
+        dependents.computeIfAbsent(dependency, s -> Collections.newSetFromMap(new MapMaker().weakKeys().makeMap())).add(dependent);
+    }
+
+    /**
+     * Applies an action to a subject which has changed, and to every persisted subject which transitively depends on it
+     *
+     * @param changed the subject which changed
+     * @param action the action to apply
+     */
+    public void invalidate(LPSubject changed, Consumer<PersistedSubject> action) {
+        Set<LPSubject> visited = Sets.newIdentityHashSet();
+        Deque<LPSubject> queue = new ArrayDeque<>();
+        queue.add(changed);
+        visited.add(changed);
+
+        LPSubject subject;
+        while ((subject = queue.poll()) != null) {
+            if (subject instanceof PersistedSubject) {
+                action.accept((PersistedSubject) subject);
+            }
+
+            Set<PersistedSubject> children = dependents.get(subject);
+            if (children == null) {
+                continue;
+            }
+
+            for (PersistedSubject child : children) {
+                if (visited.add(child)) {
+                    queue.add(child);
+                }
+            }
+        }
+    }
+}